@@ -0,0 +1,438 @@
+package com.training.admin.cache;
+
+import com.training.admin.vo.MenuVO;
+import com.training.admin.vo.ProfileVO;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 缓存值的紧凑二进制序列化器（带格式版本号）
+ *
+ * 格式：[魔数 0xB1][版本][标志][类型][数据]，标志第 0 位表示数据已压缩（Deflate，压缩前先写原始长度）。
+ * 1. 字段按固定顺序写入，不写字段名和类型信息（@class）
+ * 2. 整数使用变长编码（varint，负数 zigzag），字符串为 长度+1（0 表示 null）+ UTF-8
+ * 3. 时间写为 UTC 秒数 + 纳秒，不写 ISO 字符串
+ * 4. 超过 compressThreshold 字节的数据压缩，压缩后不更小时保留原始数据
+ *
+ * 支持的类型：字符串列表、Long 列表、ProfileVO、MenuVO 列表；其他类型交给 fallback（JSON）序列化器。
+ * 读取时不以魔数开头的数据（旧格式 JSON）同样交给 fallback，切换格式期间新旧数据均可读取。
+ * 修改字段布局时递增 VERSION，并保留旧版本的读取逻辑。
+ */
+public class BinaryCacheSerializer implements RedisSerializer<Object> {
+
+    private static final byte MAGIC = (byte) 0xB1;
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 3;
+    private static final byte FLAG_COMPRESSED = 1;
+
+    private static final byte TYPE_STRING_LIST = 1;
+    private static final byte TYPE_LONG_LIST = 2;
+    private static final byte TYPE_PROFILE = 3;
+    private static final byte TYPE_MENU_LIST = 4;
+
+    private final RedisSerializer<Object> fallback;
+    private final int compressThreshold;
+    private final boolean writeBinary;
+
+    /**
+     * @param fallback          不支持的类型和旧格式数据使用的序列化器
+     * @param compressThreshold 压缩阈值（字节），小于等于 0 表示不压缩
+     * @param writeBinary       是否以二进制格式写入（false 时只用 fallback 写入，但仍能读取二进制数据）
+     */
+    public BinaryCacheSerializer(RedisSerializer<Object> fallback, int compressThreshold, boolean writeBinary) {
+        this.fallback = fallback;
+        this.compressThreshold = compressThreshold;
+        this.writeBinary = writeBinary;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        byte type = writeBinary ? typeOf(value) : 0;
+        if (type == 0) {
+            return fallback.serialize(value);
+        }
+
+        Output out = new Output();
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(0);
+        out.writeByte(type);
+        writeValue(out, type, value);
+        byte[] bytes = out.toByteArray();
+
+        if (compressThreshold > 0 && bytes.length - HEADER_SIZE > compressThreshold) {
+            byte[] compressed = compress(bytes);
+            if (compressed.length < bytes.length) {
+                return compressed;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_SIZE + 1 || bytes[1] != VERSION) {
+            throw new SerializationException("不支持的缓存数据版本: " + (bytes.length > 1 ? bytes[1] : -1));
+        }
+        byte[] body = (bytes[2] & FLAG_COMPRESSED) != 0
+                ? decompress(bytes)
+                : Arrays.copyOfRange(bytes, HEADER_SIZE, bytes.length);
+
+        Input in = new Input(body);
+        byte type = in.readByte();
+        return switch (type) {
+            case TYPE_STRING_LIST -> readStrings(in);
+            case TYPE_LONG_LIST -> readLongs(in);
+            case TYPE_PROFILE -> readProfile(in);
+            case TYPE_MENU_LIST -> readMenus(in);
+            default -> throw new SerializationException("未知的缓存数据类型: " + type);
+        };
+    }
+
+    /**
+     * 判断值的类型，返回 0 表示不支持（使用 fallback）
+     */
+    private static byte typeOf(Object value) {
+        if (value instanceof ProfileVO) {
+            return TYPE_PROFILE;
+        }
+        if (!(value instanceof List<?> list)) {
+            return 0;
+        }
+        if (list.isEmpty() || list.stream().allMatch(e -> e == null || e instanceof String)) {
+            return TYPE_STRING_LIST;
+        }
+        if (list.stream().allMatch(e -> e instanceof Long)) {
+            return TYPE_LONG_LIST;
+        }
+        if (list.stream().allMatch(e -> e instanceof MenuVO)) {
+            return TYPE_MENU_LIST;
+        }
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(Output out, byte type, Object value) {
+        switch (type) {
+            case TYPE_STRING_LIST -> writeStrings(out, (List<String>) value);
+            case TYPE_LONG_LIST -> {
+                List<Long> longs = (List<Long>) value;
+                out.writeVarLong(longs.size());
+                longs.forEach(out::writeZigZag);
+            }
+            case TYPE_PROFILE -> writeProfile(out, (ProfileVO) value);
+            case TYPE_MENU_LIST -> writeMenus(out, (List<MenuVO>) value);
+            default -> throw new SerializationException("未知的缓存数据类型: " + type);
+        }
+    }
+
+    private static void writeProfile(Output out, ProfileVO profile) {
+        out.writeString(profile.getUsername());
+        out.writeString(profile.getNickname());
+        writeStrings(out, profile.getRoles());
+        writeStrings(out, profile.getPermissions());
+        writeMenus(out, profile.getMenus());
+    }
+
+    private static ProfileVO readProfile(Input in) {
+        ProfileVO profile = new ProfileVO();
+        profile.setUsername(in.readString());
+        profile.setNickname(in.readString());
+        profile.setRoles(readStrings(in));
+        profile.setPermissions(readStrings(in));
+        profile.setMenus(readMenus(in));
+        return profile;
+    }
+
+    /**
+     * 菜单列表：数量+1（0 表示 null），每个菜单递归写入子菜单
+     */
+    private static void writeMenus(Output out, List<MenuVO> menus) {
+        if (menus == null) {
+            out.writeVarLong(0);
+            return;
+        }
+        out.writeVarLong(menus.size() + 1L);
+        for (MenuVO menu : menus) {
+            out.writeNullableLong(menu.getId());
+            out.writeNullableLong(menu.getParentId());
+            out.writeString(menu.getName());
+            out.writeString(menu.getCode());
+            out.writeString(menu.getPath());
+            out.writeString(menu.getComponent());
+            out.writeString(menu.getIcon());
+            out.writeNullableLong(menu.getSort() == null ? null : menu.getSort().longValue());
+            out.writeNullableLong(menu.getStatus() == null ? null : menu.getStatus().longValue());
+            out.writeTime(menu.getCreateTime());
+            out.writeTime(menu.getUpdateTime());
+            writeMenus(out, menu.getChildren());
+        }
+    }
+
+    private static List<MenuVO> readMenus(Input in) {
+        int size = (int) in.readVarLong() - 1;
+        if (size < 0) {
+            return null;
+        }
+        List<MenuVO> menus = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            MenuVO menu = new MenuVO();
+            menu.setId(in.readNullableLong());
+            menu.setParentId(in.readNullableLong());
+            menu.setName(in.readString());
+            menu.setCode(in.readString());
+            menu.setPath(in.readString());
+            menu.setComponent(in.readString());
+            menu.setIcon(in.readString());
+            Long sort = in.readNullableLong();
+            menu.setSort(sort == null ? null : sort.intValue());
+            Long status = in.readNullableLong();
+            menu.setStatus(status == null ? null : status.intValue());
+            menu.setCreateTime(in.readTime());
+            menu.setUpdateTime(in.readTime());
+            menu.setChildren(readMenus(in));
+            menus.add(menu);
+        }
+        return menus;
+    }
+
+    /**
+     * 字符串列表：数量+1（0 表示 null）
+     */
+    private static void writeStrings(Output out, List<String> values) {
+        if (values == null) {
+            out.writeVarLong(0);
+            return;
+        }
+        out.writeVarLong(values.size() + 1L);
+        values.forEach(out::writeString);
+    }
+
+    private static List<String> readStrings(Input in) {
+        int size = (int) in.readVarLong() - 1;
+        if (size < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readString());
+        }
+        return values;
+    }
+
+    private static List<Long> readLongs(Input in) {
+        int size = (int) in.readVarLong();
+        List<Long> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readZigZag());
+        }
+        return values;
+    }
+
+    /**
+     * 压缩：保留原头部并设置压缩标志，头部之后依次为原始数据长度（varint）和压缩数据
+     */
+    private static byte[] compress(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+            deflater.finish();
+            Output out = new Output();
+            out.writeByte(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(FLAG_COMPRESSED);
+            out.writeVarLong(bytes.length - HEADER_SIZE);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] bytes) {
+        Input header = new Input(bytes);
+        header.skip(HEADER_SIZE);
+        int length = (int) header.readVarLong();
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, header.position(), bytes.length - header.position());
+            byte[] body = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(body, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new SerializationException("缓存数据解压失败: 长度不一致");
+            }
+            return body;
+        } catch (DataFormatException e) {
+            throw new SerializationException("缓存数据解压失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static final class Output {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+
+        void writeByte(int b) {
+            buffer.write(b);
+        }
+
+        void write(byte[] bytes, int length) {
+            buffer.write(bytes, 0, length);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.write((int) value);
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        /**
+         * 可空整数：0 表示 null，否则为 zigzag 编码后 +1
+         */
+        void writeNullableLong(Long value) {
+            if (value == null) {
+                writeVarLong(0);
+            } else {
+                writeVarLong(((value << 1) ^ (value >> 63)) + 1);
+            }
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            buffer.write(bytes, 0, bytes.length);
+        }
+
+        /**
+         * 时间：标志（0 null / 1 非 null）+ UTC 秒数（zigzag）+ 纳秒
+         */
+        void writeTime(LocalDateTime time) {
+            if (time == null) {
+                writeByte(0);
+                return;
+            }
+            writeByte(1);
+            writeZigZag(time.toEpochSecond(ZoneOffset.UTC));
+            writeVarLong(time.getNano());
+        }
+
+        byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+
+    private static final class Input {
+
+        private final byte[] bytes;
+        private int pos;
+
+        Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int position() {
+            return pos;
+        }
+
+        void skip(int n) {
+            pos += n;
+        }
+
+        byte readByte() {
+            if (pos >= bytes.length) {
+                throw new SerializationException("缓存数据不完整");
+            }
+            return bytes[pos++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("缓存数据格式错误: varint 过长");
+        }
+
+        long readZigZag() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        Long readNullableLong() {
+            long value = readVarLong();
+            if (value == 0) {
+                return null;
+            }
+            value -= 1;
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() {
+            int length = (int) readVarLong() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (pos + length > bytes.length) {
+                throw new SerializationException("缓存数据不完整");
+            }
+            String value = new String(bytes, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        LocalDateTime readTime() {
+            if (readByte() == 0) {
+                return null;
+            }
+            long seconds = readZigZag();
+            int nanos = (int) readVarLong();
+            return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.training.admin.cache;
+
+import org.springframework.data.redis.cache.CacheKeyPrefix;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 缓存命名空间代数（generation）
+ *
+ * 每个缓存名称在 Redis 中有一个代数计数器（cache:gen:{cacheName}），代数是每个 key 前缀的一部分：
+ * {cacheName}::{generation}::{key}。清空缓存只需一次原子 INCR，旧代数的 key 不再被访问，
+ * 由 TTL 自然过期，不需要 SCAN + DEL 遍历所有 key（不阻塞 Redis）。
+ *
+ * 代数在本地缓存：清空时通过失效通知同步到其他节点，另外每隔 refreshInterval 从 Redis 重新读取一次（通知丢失时兜底）。
+ * 前缀字符串随代数一起缓存，每次 L2 访问只需一次本地查找，不拼接字符串。
+ *
+ * 代数计数器丢失（Redis 重启且未持久化、被淘汰）时 INCR 会从 1 重新开始，已持有更大代数的节点会忽略之后的清空。
+ * 因此进入下一代用 Lua 脚本原子地设置为 max(Redis 中的代数, 本地代数) + 1，保证新代数大于清空节点见过的任何代数；
+ * 定期从 Redis 读取时以 Redis 为准（计数器存在时接受任何不同的值），落后或超前的节点在 refreshInterval 内回到同一命名空间。
+ * 清空通知可能乱序到达，只增不减。
+ */
+public class CacheGenerations implements CacheKeyPrefix {
+
+    private static final String KEY_PREFIX = "cache:gen:";
+
+    /**
+     * KEYS[1] 代数计数器，ARGV[1] 本地代数：设置为二者较大值 + 1 并返回
+     */
+    private static final DefaultRedisScript<Long> NEXT_SCRIPT = new DefaultRedisScript<>("""
+            local next = math.max(tonumber(redis.call('GET', KEYS[1]) or '0'), tonumber(ARGV[1])) + 1
+            redis.call('SET', KEYS[1], next)
+            return next
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker breaker;
+    private final long refreshIntervalNanos;
+    private final ConcurrentMap<String, Generation> generations = new ConcurrentHashMap<>();
+
+    public CacheGenerations(StringRedisTemplate redisTemplate, RedisCircuitBreaker breaker, Duration refreshInterval) {
+        this.redisTemplate = redisTemplate;
+        this.breaker = breaker;
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+    }
+
+    /**
+     * 计算 key 前缀（RedisCache 每次访问 key 时调用）
+     */
+    @Override
+    public String compute(String cacheName) {
+        return load(cacheName).prefix;
+    }
+
+    /**
+     * 当前代数
+     */
+    public long current(String cacheName) {
+        return load(cacheName).value;
+    }
+
+    private Generation load(String cacheName) {
+        Generation generation = generation(cacheName);
+        long now = System.nanoTime();
+        if (!generation.loaded || now - generation.checkedAt > refreshIntervalNanos) {
+            refresh(cacheName, generation, now);
+        }
+        return generation;
+    }
+
+    private Generation generation(String cacheName) {
+        Generation generation = generations.get(cacheName);
+        return generation != null ? generation : generations.computeIfAbsent(cacheName, Generation::new);
+    }
+
+    /**
+     * 进入下一代（清空缓存），返回新代数
+     * Redis 不可用（熔断）时返回 -1，并把缓存标记为脏，恢复后再清空
+     */
+    public long next(String cacheName) {
+        long local = generation(cacheName).value;
+        Long value = breaker.call(() -> redisTemplate.execute(NEXT_SCRIPT, List.of(KEY_PREFIX + cacheName),
+                String.valueOf(local)), () -> null);
+        if (value == null) {
+            breaker.markDirty(cacheName);
+            return -1;
+        }
+        advance(cacheName, value);
+        return value;
+    }
+
+    /**
+     * 收到其他节点的清空通知时更新本地代数（只增不减）
+     */
+    public void advance(String cacheName, long value) {
+        Generation generation = generation(cacheName);
+        synchronized (generation) {
+            if (value > generation.value) {
+                set(cacheName, generation, value);
+            }
+        }
+    }
+
+    private static void set(String cacheName, Generation generation, long value) {
+        generation.prefix = prefix(cacheName, value);
+        generation.value = value;
+    }
+
+    private void refresh(String cacheName, Generation generation, long now) {
+        // Redis 不可用（熔断）或计数器不存在时沿用本地代数（计数器丢失后由下一次 next 以本地代数为起点重建）
+        Optional<String> value = breaker.call(
+                () -> Optional.ofNullable(redisTemplate.opsForValue().get(KEY_PREFIX + cacheName)), () -> null);
+        if (value != null && value.isPresent()) {
+            long current = Long.parseLong(value.get());
+            synchronized (generation) {
+                if (current != generation.value) {
+                    // 通常是错过了清空通知；小于本地代数说明计数器丢失后被重新创建，同样以 Redis 为准
+                    set(cacheName, generation, current);
+                }
+            }
+        }
+        generation.checkedAt = now;
+        generation.loaded = true;
+    }
+
+    private static String prefix(String cacheName, long value) {
+        return cacheName + SEPARATOR + value + SEPARATOR;
+    }
+
+    private static final class Generation {
+        private volatile long value;
+        private volatile String prefix;
+        private volatile long checkedAt;
+        private volatile boolean loaded;
+
+        Generation(String cacheName) {
+            this.prefix = CacheGenerations.prefix(cacheName, 0);
+        }
+    }
+}
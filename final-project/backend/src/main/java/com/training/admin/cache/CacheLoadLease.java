@@ -0,0 +1,128 @@
+package com.training.admin.cache;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * 集群级缓存加载租约（防缓存击穿）
+ *
+ * 同一个 key 在 L2 未命中时，只有拿到 Redis 租约（SET NX PX）的节点执行加载（拿到租约后先再查一次 L2），其他节点轮询 L2 等待结果；
+ * 最多等待 maxWait（不超过租约时间），持有者仍未写入时等待方自行加载（租约只是优化，不影响正确性）。
+ * Redis 不可用（熔断）时直接加载。
+ * 节点内的单飞（single-flight）由 TwoLevelCache 保证。
+ */
+public class CacheLoadLease {
+
+    private static final String KEY_PREFIX = "cache:lease:";
+
+    /**
+     * tryLoad 未拿到租约（其他节点正在加载）
+     */
+    static final Object SKIPPED = new Object();
+
+    /**
+     * 只释放自己持有的租约
+     */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker breaker;
+    private final Duration leaseTime;
+    private final Duration pollInterval;
+    private final long maxWaitNanos;
+
+    public CacheLoadLease(StringRedisTemplate redisTemplate, RedisCircuitBreaker breaker,
+                          Duration leaseTime, Duration pollInterval, Duration maxWait) {
+        this.redisTemplate = redisTemplate;
+        this.breaker = breaker;
+        this.leaseTime = leaseTime;
+        this.pollInterval = pollInterval;
+        this.maxWaitNanos = Math.min(maxWait.toNanos(), leaseTime.toNanos());
+    }
+
+    /**
+     * 在租约保护下加载
+     *
+     * @param leaseKey     租约 key（缓存名 + key）
+     * @param remoteLookup 等待期间查询 L2 的结果，返回 null 表示尚未写入
+     * @param loader       加载并写入 L2
+     */
+    public Object load(String leaseKey, Supplier<Object> remoteLookup, Callable<Object> loader) throws Exception {
+        String redisKey = KEY_PREFIX + leaseKey;
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = breaker.call(
+                () -> redisTemplate.opsForValue().setIfAbsent(redisKey, token, leaseTime), () -> null);
+        if (acquired == null) {
+            return loader.call();
+        }
+
+        if (acquired) {
+            try {
+                // 再查一次 L2：上一个持有者可能在本节点查询 L2 之后写入并释放了租约
+                Object value = remoteLookup.get();
+                return value != null ? value : loader.call();
+            } finally {
+                release(redisKey, token);
+            }
+        }
+
+        // 其他节点正在加载：轮询 L2，最多等待 maxWait
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(pollInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (breaker.isOpen()) {
+                break;
+            }
+            Object value = remoteLookup.get();
+            if (value != null) {
+                return value;
+            }
+        }
+        return loader.call();
+    }
+
+    /**
+     * 只在拿到租约时加载（提前刷新用，其他节点正在加载时不等待）
+     * Redis 不可用（熔断）时直接加载
+     *
+     * @return 加载结果；未拿到租约时返回 SKIPPED
+     */
+    public Object tryLoad(String leaseKey, Callable<Object> loader) throws Exception {
+        String redisKey = KEY_PREFIX + leaseKey;
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = breaker.call(
+                () -> redisTemplate.opsForValue().setIfAbsent(redisKey, token, leaseTime), () -> null);
+        if (acquired == null) {
+            return loader.call();
+        }
+        if (!acquired) {
+            return SKIPPED;
+        }
+        try {
+            return loader.call();
+        } finally {
+            release(redisKey, token);
+        }
+    }
+
+    private void release(String redisKey, String token) {
+        // 释放失败时租约按过期时间自动失效
+        breaker.run(() -> redisTemplate.execute(RELEASE_SCRIPT, List.of(redisKey), token), () -> { });
+    }
+}
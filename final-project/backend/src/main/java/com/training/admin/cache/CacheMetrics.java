@@ -0,0 +1,121 @@
+package com.training.admin.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个二级缓存的指标（按缓存名称打 cache 标签）
+ *
+ * - cache.gets：result=hit/miss，level=l1/offheap/l2（命中所在层级，未命中为 none）
+ * - cache.puts：写入次数
+ * - cache.evictions：cause=key（单个 key）/ all（清空）/ batch（批量清除，按 key 数计）/ remote（其他节点通知清除 L1）
+ * - cache.load：加载方法耗时（直方图），result=success/failure，包含提前刷新
+ * - cache.refresh.skipped：刷新线程池已满而跳过的提前刷新次数
+ * - cache.local.size：L1 估算条目数
+ *
+ * 序列化后的值大小见 MeteredRedisSerializer（cache.value.size）。
+ */
+final class CacheMetrics {
+
+    private final Counter l1Hits;
+    private final Counter offHeapHits;
+    private final Counter l2Hits;
+    private final Counter misses;
+    private final Counter puts;
+    private final Counter keyEvictions;
+    private final Counter allEvictions;
+    private final Counter batchEvictions;
+    private final Counter remoteEvictions;
+    private final Timer loadSuccess;
+    private final Timer loadFailure;
+    private final Counter refreshSkipped;
+
+    CacheMetrics(MeterRegistry registry, String cacheName, com.github.benmanes.caffeine.cache.Cache<?, ?> local) {
+        this.l1Hits = gets(registry, cacheName, "hit", "l1");
+        this.offHeapHits = gets(registry, cacheName, "hit", "offheap");
+        this.l2Hits = gets(registry, cacheName, "hit", "l2");
+        this.misses = gets(registry, cacheName, "miss", "none");
+        this.puts = Counter.builder("cache.puts").tag("cache", cacheName).register(registry);
+        this.keyEvictions = evictions(registry, cacheName, "key");
+        this.allEvictions = evictions(registry, cacheName, "all");
+        this.batchEvictions = evictions(registry, cacheName, "batch");
+        this.remoteEvictions = evictions(registry, cacheName, "remote");
+        this.loadSuccess = load(registry, cacheName, "success");
+        this.loadFailure = load(registry, cacheName, "failure");
+        this.refreshSkipped = Counter.builder("cache.refresh.skipped").tag("cache", cacheName).register(registry);
+        Gauge.builder("cache.local.size", local, c -> c.estimatedSize())
+                .tag("cache", cacheName)
+                .register(registry);
+    }
+
+    void hitLocal() {
+        l1Hits.increment();
+    }
+
+    void hitOffHeap() {
+        offHeapHits.increment();
+    }
+
+    void hitRemote() {
+        l2Hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    void put() {
+        puts.increment();
+    }
+
+    void evictKey() {
+        keyEvictions.increment();
+    }
+
+    void refreshSkipped() {
+        refreshSkipped.increment();
+    }
+
+    void evictAll() {
+        allEvictions.increment();
+    }
+
+    void evictBatch(int keys) {
+        batchEvictions.increment(keys);
+    }
+
+    void evictRemote(int keys) {
+        remoteEvictions.increment(keys);
+    }
+
+    void load(long nanos, boolean success) {
+        (success ? loadSuccess : loadFailure).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Counter gets(MeterRegistry registry, String cacheName, String result, String level) {
+        return Counter.builder("cache.gets")
+                .tag("cache", cacheName)
+                .tag("result", result)
+                .tag("level", level)
+                .register(registry);
+    }
+
+    private static Counter evictions(MeterRegistry registry, String cacheName, String cause) {
+        return Counter.builder("cache.evictions")
+                .tag("cache", cacheName)
+                .tag("cause", cause)
+                .register(registry);
+    }
+
+    private static Timer load(MeterRegistry registry, String cacheName, String result) {
+        return Timer.builder("cache.load")
+                .tag("cache", cacheName)
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,120 @@
+package com.training.admin.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 经过熔断器访问的 L2 缓存（RedisCache）
+ *
+ * 读取失败或熔断打开时按未命中处理；写入和清除失败或被跳过时把缓存标记为脏（见 RedisCircuitBreaker）。
+ * 目标缓存为 RawValueCache 时同时返回序列化字节，否则字节为 null。
+ */
+class CircuitBreakingCache implements RawValueCache {
+
+    private final Cache target;
+    private final RedisCircuitBreaker breaker;
+
+    CircuitBreakingCache(Cache target, RedisCircuitBreaker breaker) {
+        this.target = target;
+        this.breaker = breaker;
+    }
+
+    Cache getTarget() {
+        return target;
+    }
+
+    @Override
+    public String getName() {
+        return target.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return target.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return breaker.call(() -> target.get(key), () -> null);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return breaker.call(() -> target.get(key, type), () -> null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public Serialized getSerialized(Object key) {
+        if (target instanceof RawValueCache raw) {
+            return breaker.call(() -> raw.getSerialized(key), () -> null);
+        }
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        return value != null ? new Serialized(value, null) : null;
+    }
+
+    @Override
+    public byte[] putSerialized(Object key, Object value) {
+        if (target instanceof RawValueCache raw) {
+            return breaker.call(() -> raw.putSerialized(key, value), () -> {
+                markDirty();
+                return null;
+            });
+        }
+        put(key, value);
+        return null;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        breaker.run(() -> target.put(key, value), this::markDirty);
+    }
+
+    @Override
+    public void evict(Object key) {
+        breaker.run(() -> target.evict(key), this::markDirty);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return breaker.call(() -> target.evictIfPresent(key), () -> {
+            markDirty();
+            return false;
+        });
+    }
+
+    @Override
+    public void clear() {
+        breaker.run(target::clear, this::markDirty);
+    }
+
+    @Override
+    public boolean invalidate() {
+        return breaker.call(target::invalidate, () -> {
+            markDirty();
+            return false;
+        });
+    }
+
+    private void markDirty() {
+        breaker.markDirty(getName());
+    }
+}
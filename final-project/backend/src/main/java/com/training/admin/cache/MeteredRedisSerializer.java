@@ -0,0 +1,39 @@
+package com.training.admin.cache;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * 记录序列化后大小的值序列化器（cache.value.size，单位字节，按缓存名称打 cache 标签）
+ * 只在写入时记录，读取直接委托
+ */
+public class MeteredRedisSerializer implements RedisSerializer<Object> {
+
+    private final RedisSerializer<Object> delegate;
+    private final DistributionSummary valueSize;
+
+    public MeteredRedisSerializer(RedisSerializer<Object> delegate, MeterRegistry registry, String cacheName) {
+        this.delegate = delegate;
+        this.valueSize = DistributionSummary.builder("cache.value.size")
+                .baseUnit("bytes")
+                .tag("cache", cacheName)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        if (bytes != null) {
+            valueSize.record(bytes.length);
+        }
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        return delegate.deserialize(bytes);
+    }
+}
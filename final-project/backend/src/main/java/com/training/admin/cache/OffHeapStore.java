@@ -0,0 +1,213 @@
+package com.training.admin.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 堆外本地缓存（保存序列化后的值）
+ *
+ * 大量 ProfileVO（嵌套菜单和权限字符串）常驻堆内会推高老年代占用、拉长 GC 停顿。开启后（app.cache.local.{name}.off-heap-size）
+ * 该缓存的 L1 不再保存对象，改为把序列化后的字节写入一块直接内存（DirectByteBuffer），读取时才反序列化：
+ * 1. 环形日志结构：按写入顺序追加，写到末尾时回到开头，被覆盖的条目按写入顺序（FIFO）淘汰，总大小固定
+ * 2. 索引在堆内，每个条目只有 key 和位置信息，与值大小无关
+ * 3. 条目按写入时间过期（与 L1 的 ttl 一致）
+ * 4. 读写锁：读取只在锁内复制字节，反序列化在锁外进行
+ * 5. 值来自 L2（读取或写入）时直接复制 L2 的字节（putBytes），只有 L2 不可用时才自行序列化；
+ *    序列化器不包装计量，cache.value.size 只在写入 L2 时记录
+ *
+ * 直接内存受 -XX:MaxDirectMemorySize 限制，容量需计入该限制。
+ * 指标：cache.offheap.entries / cache.offheap.used（字节）/ cache.offheap.capacity（字节）
+ */
+class OffHeapStore {
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final long ttlNanos;
+    private final RedisSerializationContext.SerializationPair<Object> serializer;
+
+    private final Map<String, Slot> index = new HashMap<>();
+    private final ArrayDeque<Slot> order = new ArrayDeque<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 下一次写入的绝对位置（单调递增，取模得到缓冲区内偏移）
+     */
+    private long head;
+    private long usedBytes;
+
+    OffHeapStore(String cacheName, int capacity, Duration ttl,
+                 RedisSerializationContext.SerializationPair<Object> serializer, MeterRegistry registry) {
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+        this.capacity = capacity;
+        this.ttlNanos = ttl.toNanos();
+        this.serializer = serializer;
+        Gauge.builder("cache.offheap.entries", this, OffHeapStore::size)
+                .tag("cache", cacheName)
+                .register(registry);
+        Gauge.builder("cache.offheap.used", this, OffHeapStore::usedBytes)
+                .tag("cache", cacheName)
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("cache.offheap.capacity", this, s -> s.capacity)
+                .tag("cache", cacheName)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * 读取并反序列化，未命中或已过期返回 null
+     */
+    Object get(String key) {
+        byte[] bytes;
+        lock.readLock().lock();
+        try {
+            Slot slot = index.get(key);
+            if (slot == null || System.nanoTime() - slot.writtenAt() > ttlNanos) {
+                return null;
+            }
+            bytes = new byte[slot.length()];
+            buffer.get(offset(slot.position()), bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return serializer.read(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * 序列化并写入，超过总容量的值不缓存
+     */
+    void put(String key, Object value) {
+        write(key, serializer.write(value));
+    }
+
+    /**
+     * 写入已序列化的字节（L2 读到或写入的字节，格式与 serializer 相同），超过总容量的值不缓存
+     */
+    void putBytes(String key, byte[] bytes) {
+        write(key, ByteBuffer.wrap(bytes));
+    }
+
+    private void write(String key, ByteBuffer data) {
+        int length = data.remaining();
+        if (length == 0 || length > capacity) {
+            remove(key);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // 剩余空间不足时跳到缓冲区开头，条目不跨越末尾
+            int offset = offset(head);
+            if (offset + length > capacity) {
+                head += capacity - offset;
+            }
+            long position = head;
+            head += length;
+            evictOverwritten();
+
+            buffer.put(offset(position), data, data.position(), length);
+            Slot slot = new Slot(key, position, length, System.nanoTime());
+            Slot previous = index.put(key, slot);
+            if (previous != null) {
+                usedBytes -= previous.length();
+            }
+            usedBytes += length;
+            order.addLast(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            Slot slot = index.remove(key);
+            if (slot != null) {
+                usedBytes -= slot.length();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void removeAll(Collection<String> keys) {
+        lock.writeLock().lock();
+        try {
+            for (String key : keys) {
+                Slot slot = index.remove(key);
+                if (slot != null) {
+                    usedBytes -= slot.length();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            order.clear();
+            usedBytes = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 淘汰将被本次写入覆盖的条目（绝对位置早于 head - capacity），已被删除或替换的条目只出队
+     */
+    private void evictOverwritten() {
+        long validFrom = head - capacity;
+        while (!order.isEmpty() && order.peekFirst().position() < validFrom) {
+            Slot slot = order.pollFirst();
+            if (index.get(slot.key()) == slot) {
+                index.remove(slot.key());
+                usedBytes -= slot.length();
+            }
+        }
+    }
+
+    private int offset(long position) {
+        return (int) (position % capacity);
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long usedBytes() {
+        lock.readLock().lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 条目位置
+     *
+     * @param key       缓存 key
+     * @param position  写入时的绝对位置
+     * @param length    序列化后的字节数
+     * @param writtenAt 写入时间（System.nanoTime）
+     */
+    private record Slot(String key, long position, int length, long writtenAt) {
+    }
+}
@@ -0,0 +1,31 @@
+package com.training.admin.cache;
+
+import org.springframework.cache.Cache;
+
+/**
+ * 读写时同时提供序列化字节的 L2 缓存
+ *
+ * 开启堆外层的缓存直接复制 L2 读到或写入的字节，不再为堆外层重新序列化一次（也不会重复记录 cache.value.size）。
+ */
+interface RawValueCache extends Cache {
+
+    /**
+     * 读取值和 Redis 中的原始字节
+     *
+     * @return 未命中时返回 null；字节不可用时 bytes 为 null
+     */
+    Serialized getSerialized(Object key);
+
+    /**
+     * 序列化一次并写入
+     *
+     * @return 写入的字节；未写入（如熔断跳过）时返回 null
+     */
+    byte[] putSerialized(Object key, Object value);
+
+    /**
+     * 值及其序列化字节
+     */
+    record Serialized(Object value, byte[] bytes) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.training.admin.cache;
+
+import org.springframework.data.redis.cache.RedisCache;
+
+/**
+ * 提供原始字节的 RedisCache（用于开启堆外层的缓存）
+ *
+ * key 转换、值序列化和 TTL 与 RedisCache 相同，读写直接通过 RedisCacheWriter 完成，字节交给堆外层复制。
+ */
+class RawValueRedisCache extends RedisCache implements RawValueCache {
+
+    RawValueRedisCache(RedisCache cache) {
+        super(cache.getName(), cache.getNativeCache(), cache.getCacheConfiguration());
+    }
+
+    @Override
+    public Serialized getSerialized(Object key) {
+        byte[] bytes = getCacheWriter().get(getName(), serializeCacheKey(createCacheKey(key)));
+        if (bytes == null) {
+            return null;
+        }
+        Object value = deserializeCacheValue(bytes);
+        return value != null ? new Serialized(value, bytes) : null;
+    }
+
+    @Override
+    public byte[] putSerialized(Object key, Object value) {
+        byte[] bytes = serializeCacheValue(value);
+        getCacheWriter().put(getName(), serializeCacheKey(createCacheKey(key)), bytes,
+                getCacheConfiguration().getTtlFunction().getTimeToLive(key, value));
+        return bytes;
+    }
+}
@@ -0,0 +1,234 @@
+package com.training.admin.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Redis 熔断器（缓存层和认证链路共用）
+ *
+ * Redis 变慢或不可用时，每次访问都要等到命令超时（spring.data.redis.timeout）才失败。熔断器：
+ * 1. 连续 failureThreshold 次失败或慢调用（超过 slowCallThreshold）后打开
+ * 2. 打开期间不访问 Redis：缓存读取只用 L1 或直接加载，写入和清除跳过；认证链路执行各自的降级逻辑
+ * 3. 后台每隔 probeInterval 执行一次 PING，成功后关闭
+ * 4. 打开期间跳过（或失败）的写入/清除会把缓存标记为脏，关闭时由 recoveryHandler 清空这些缓存（递增代数），
+ *    避免 Redis 恢复后读到过期数据；其他需要在恢复后补做的操作通过 addCloseListener 注册
+ * 5. 探测成功后先在探测线程中执行关闭回调和脏缓存清空（只有探测线程能访问 Redis），全部成功后才关闭：
+ *    其他请求在脏缓存清空之前不会重新读到 L2 中的旧条目；恢复期间 Redis 再次失败则保持打开，等待下次探测
+ *
+ * 慢调用只能在调用返回后识别，单次调用的最长耗时由命令超时决定，
+ * 因此 spring.data.redis.timeout 应不大于 slowCallThreshold（CacheConfig 启动时检查）。
+ *
+ * 指标：cache.redis.circuit.state（0 关闭 / 1 打开）、cache.redis.circuit.failures（type=error/slow）、
+ * cache.redis.circuit.bypassed、cache.redis.circuit.transitions（state=open/closed）
+ */
+@Slf4j
+public class RedisCircuitBreaker {
+
+    private final StringRedisTemplate redisTemplate;
+    private final int failureThreshold;
+    private final long slowCallNanos;
+    private final Duration probeInterval;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final Set<String> dirtyCaches = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "redis-circuit-probe");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean open;
+    /**
+     * 正在执行恢复（关闭回调、脏缓存清空）的探测线程：熔断打开期间只有它可以访问 Redis
+     */
+    private volatile Thread recoveryThread;
+    private volatile Consumer<String> recoveryHandler = name -> { };
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
+    private final Counter errors;
+    private final Counter slowCalls;
+    private final Counter bypassed;
+    private final Counter opened;
+    private final Counter closed;
+
+    public RedisCircuitBreaker(StringRedisTemplate redisTemplate, TwoLevelCacheProperties.CircuitBreaker config,
+                               MeterRegistry registry) {
+        this.redisTemplate = redisTemplate;
+        this.failureThreshold = Math.max(config.getFailureThreshold(), 1);
+        this.slowCallNanos = config.getSlowCallThreshold().toNanos();
+        this.probeInterval = config.getProbeInterval();
+        this.errors = Counter.builder("cache.redis.circuit.failures").tag("type", "error").register(registry);
+        this.slowCalls = Counter.builder("cache.redis.circuit.failures").tag("type", "slow").register(registry);
+        this.bypassed = Counter.builder("cache.redis.circuit.bypassed").register(registry);
+        this.opened = Counter.builder("cache.redis.circuit.transitions").tag("state", "open").register(registry);
+        this.closed = Counter.builder("cache.redis.circuit.transitions").tag("state", "closed").register(registry);
+        Gauge.builder("cache.redis.circuit.state", this, b -> b.open ? 1 : 0).register(registry);
+    }
+
+    /**
+     * 执行 Redis 操作：熔断打开或操作失败时返回 fallback 的结果
+     */
+    public <T> T call(Supplier<T> action, Supplier<T> fallback) {
+        if (open && Thread.currentThread() != recoveryThread) {
+            bypassed.increment();
+            return fallback.get();
+        }
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            errors.increment();
+            log.warn("Redis 操作失败: {}", e.getMessage());
+            recordFailure();
+            return fallback.get();
+        }
+        if (System.nanoTime() - start > slowCallNanos) {
+            slowCalls.increment();
+            recordFailure();
+        } else {
+            consecutiveFailures.set(0);
+        }
+        return result;
+    }
+
+    /**
+     * 执行无返回值的 Redis 操作：熔断打开或操作失败时执行 fallback
+     */
+    public void run(Runnable action, Runnable fallback) {
+        call(() -> {
+            action.run();
+            return Boolean.TRUE;
+        }, () -> {
+            fallback.run();
+            return Boolean.FALSE;
+        });
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * 标记缓存的 L2 或其他节点的 L1 可能过期（写入/清除未送达 Redis），恢复后清空
+     */
+    public void markDirty(String cacheName) {
+        dirtyCaches.add(cacheName);
+    }
+
+    /**
+     * 设置恢复处理：熔断关闭时对每个脏缓存调用一次
+     */
+    public void setRecoveryHandler(Consumer<String> recoveryHandler) {
+        this.recoveryHandler = recoveryHandler;
+    }
+
+    /**
+     * 注册熔断关闭时的回调（在探测线程中、熔断关闭之前执行，用于补做熔断期间未能执行的 Redis 操作）
+     */
+    public void addCloseListener(Runnable listener) {
+        closeListeners.add(listener);
+    }
+
+    public void shutdown() {
+        prober.shutdownNow();
+    }
+
+    private void recordFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            tripOpen();
+        }
+    }
+
+    private synchronized void tripOpen() {
+        if (open) {
+            return;
+        }
+        open = true;
+        opened.increment();
+        log.warn("Redis 熔断打开：连续 {} 次失败或慢调用，缓存暂时只使用本地 L1", consecutiveFailures.get());
+        scheduleProbe();
+    }
+
+    private void scheduleProbe() {
+        prober.schedule(this::probe, probeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void probe() {
+        long start = System.nanoTime();
+        try {
+            redisTemplate.execute((RedisCallback<String>) RedisConnection::ping);
+            if (System.nanoTime() - start <= slowCallNanos && close()) {
+                return;
+            }
+        } catch (Exception e) {
+            log.debug("Redis 探测失败: {}", e.getMessage());
+        }
+        scheduleProbe();
+    }
+
+    /**
+     * 恢复并关闭熔断：先补做熔断期间的操作、清空脏缓存，再允许其他线程访问 Redis
+     *
+     * @return 是否已关闭（恢复期间 Redis 再次失败时保持打开）
+     */
+    private synchronized boolean close() {
+        consecutiveFailures.set(0);
+        recoveryThread = Thread.currentThread();
+        try {
+            // 先补做熔断期间未能执行的操作（如授权图变更通知），再清空脏缓存：补做之前回填的旧数据随清空一并失效
+            for (Runnable listener : closeListeners) {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    log.warn("熔断关闭回调执行失败: {}", e.getMessage());
+                }
+            }
+            recoverDirtyCaches();
+        } finally {
+            recoveryThread = null;
+        }
+        if (consecutiveFailures.get() > 0) {
+            log.warn("Redis 恢复期间再次失败，熔断保持打开");
+            return false;
+        }
+        open = false;
+        closed.increment();
+        // 恢复期间其他请求跳过写入而新标记的脏缓存：此时已无请求被熔断，清空一次即可
+        recoverDirtyCaches();
+        return true;
+    }
+
+    private void recoverDirtyCaches() {
+        List<String> dirty = List.copyOf(dirtyCaches);
+        if (dirty.isEmpty()) {
+            return;
+        }
+        log.info("Redis 熔断关闭，清空熔断期间未同步的缓存: {}", dirty);
+        for (String cacheName : dirty) {
+            dirtyCaches.remove(cacheName);
+            try {
+                recoveryHandler.accept(cacheName);
+            } catch (Exception e) {
+                dirtyCaches.add(cacheName);
+                log.warn("清空缓存 {} 失败: {}", cacheName, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,516 @@
+package com.training.admin.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 二级缓存：一级为进程内 Caffeine（有界、按写入过期），二级为 Redis（集群共享）
+ *
+ * 读：L1 命中直接返回（不经网络、不做反序列化）；未命中读 L2 并回填 L1。
+ * 写/清除：先写 L2，再更新本地 L1，最后通过 Redis 发布/订阅通知其他节点清除各自的 L1。
+ * 清空：L2 递增命名空间代数（一次 INCR，见 CacheGenerations），不遍历删除 key。
+ *
+ * 防击穿（@Cacheable(sync = true) 走 get(key, valueLoader)）：
+ * 1. 节点内单飞：同一个 key 只有一个线程加载，其他线程等待该次加载的结果。
+ *    加载（租约轮询 + 数据库）不在 Caffeine 的计算锁内执行，不会阻塞同一哈希桶内其他 key 的读写
+ * 2. 集群内单飞：L2 未命中时通过 CacheLoadLease 获取 Redis 租约，只有一个节点访问数据库
+ * 3. 提前刷新（XFetch）：热点 key 在 L1 过期前按概率在专用的有界线程池中重新加载，避免集中过期；
+ *    只有拿到租约的节点刷新，线程池满时跳过
+ *
+ * 加载结果的写入以加载前的版本（key 的写入/清除次数 + 清空次数 + 命名空间代数）为条件：加载期间 key 被写入、清除或缓存被清空时
+ * 丢弃结果，不会把加载前读到的旧数据写回 L1/L2。
+ *
+ * 堆外层（可选，OffHeapStore）：开启时 L1 不保存对象，L1 未命中先读堆外的序列化数据，再读 L2；
+ * 写入堆外层的字节直接复制自 L2 读到或写入的字节（RawValueCache），不重复序列化。
+ *
+ * L1 以 key 的字符串形式存储，与 RedisCache 的 key 转换保持一致，便于按通知中的 key 清除。
+ * 注意：L1 中保存的是对象引用，调用方不应修改缓存返回的对象。
+ */
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private static final int MODIFICATION_STRIPES = 256;
+
+    private final String name;
+    private final Cache<String, Entry> local;
+    private final long localTtlNanos;
+    private final org.springframework.cache.Cache remote;
+    private final CacheGenerations generations;
+    private final CacheLoadLease lease;
+    private final TwoLevelCacheProperties.EarlyRefresh earlyRefresh;
+    private final TwoLevelCacheManager.InvalidationPublisher publisher;
+    private final CacheMetrics metrics;
+
+    /**
+     * 堆外层，未开启时为 null
+     */
+    private final OffHeapStore offHeap;
+
+    /**
+     * 提前刷新线程池（有界，各缓存共享）
+     */
+    private final Executor refreshExecutor;
+
+    /**
+     * 正在提前刷新的 key（每个 key 同时只刷新一次）
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 正在同步加载的 key（节点内单飞）
+     */
+    private final ConcurrentMap<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * 按 key 分段的写入/清除次数，在修改 L1/L2 之前递增；加载前后不一致说明加载期间该 key 可能已变更
+     * （同一分段的其他 key 变更也会使加载结果被丢弃，只影响命中率，不影响正确性）
+     */
+    private final AtomicLongArray modifications = new AtomicLongArray(MODIFICATION_STRIPES);
+
+    /**
+     * 清空次数（本节点清空或收到其他节点的清空通知）
+     */
+    private final AtomicLong clears = new AtomicLong();
+
+    TwoLevelCache(String name, Cache<String, Entry> local, Duration localTtl, org.springframework.cache.Cache remote,
+                  CacheGenerations generations, CacheLoadLease lease, TwoLevelCacheProperties.EarlyRefresh earlyRefresh,
+                  TwoLevelCacheManager.InvalidationPublisher publisher, CacheMetrics metrics, OffHeapStore offHeap,
+                  Executor refreshExecutor) {
+        // 与 Redis 配置一致：不缓存 null
+        super(false);
+        this.name = name;
+        this.local = local;
+        this.localTtlNanos = localTtl.toNanos();
+        this.remote = remote;
+        this.generations = generations;
+        this.lease = lease;
+        this.earlyRefresh = earlyRefresh;
+        this.publisher = publisher;
+        this.metrics = metrics;
+        this.offHeap = offHeap;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = localKey(key);
+        Entry entry = local.getIfPresent(localKey);
+        if (entry != null) {
+            metrics.hitLocal();
+            return entry.value();
+        }
+        Object value = offHeapGet(localKey);
+        if (value != null) {
+            return value;
+        }
+        Version version = version(localKey);
+        RawValueCache.Serialized remoteValue = remoteGet(key);
+        if (remoteValue == null) {
+            metrics.miss();
+            return null;
+        }
+        metrics.hitRemote();
+        putLocalIfUnchanged(localKey, newEntry(remoteValue.value(), earlyRefresh.getDefaultDelta().toNanos()),
+                remoteValue.bytes(), version);
+        return remoteValue.value();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = localKey(key);
+        Entry entry = local.getIfPresent(localKey);
+        if (entry == null) {
+            entry = loadOnce(key, localKey, valueLoader);
+        } else {
+            metrics.hitLocal();
+            if (shouldRefreshEarly(entry)) {
+                refreshAsync(key, localKey, valueLoader);
+            }
+        }
+        return entry != null ? (T) entry.value() : null;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        modifying(localKey(key));
+        byte[] bytes = remotePut(key, value);
+        local.put(localKey(key), newEntry(value, earlyRefresh.getDefaultDelta().toNanos()));
+        offHeapPut(localKey(key), value, bytes);
+        metrics.put();
+        publisher.evict(name, localKey(key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        modifying(localKey(key));
+        remote.evict(key);
+        local.invalidate(localKey(key));
+        offHeapRemove(List.of(localKey(key)));
+        metrics.evictKey();
+        publisher.evict(name, localKey(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        modifying(localKey(key));
+        boolean present = remote.evictIfPresent(key);
+        local.invalidate(localKey(key));
+        offHeapRemove(List.of(localKey(key)));
+        metrics.evictKey();
+        publisher.evict(name, localKey(key));
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        clears.incrementAndGet();
+        long generation = generations.next(name);
+        local.invalidateAll();
+        if (offHeap != null) {
+            offHeap.clear();
+        }
+        metrics.evictAll();
+        if (generation > 0) {
+            publisher.clear(name, generation);
+        }
+    }
+
+    @Override
+    public boolean invalidate() {
+        clear();
+        return true;
+    }
+
+    /**
+     * 节点内单飞：同一个 key 只有一个线程执行 load，其他线程等待它的结果（不持有 Caffeine 的计算锁）
+     */
+    private Entry loadOnce(Object key, String localKey, Callable<?> valueLoader) {
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> inFlight = loading.putIfAbsent(localKey, mine);
+        if (inFlight != null) {
+            metrics.hitLocal();
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            Entry entry = load(key, localKey, valueLoader);
+            mine.complete(entry);
+            return entry;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(localKey, mine);
+        }
+    }
+
+    /**
+     * L1 未命中：读 L2，仍未命中时在租约保护下调用加载方法并写入 L2
+     */
+    private Entry load(Object key, String localKey, Callable<?> valueLoader) {
+        Version version = version(localKey);
+        Object value = offHeapGet(localKey);
+        if (value != null) {
+            // 堆外层命中：开启堆外层时 L1 不保留对象，无需回填
+            return newEntry(value, earlyRefresh.getDefaultDelta().toNanos());
+        }
+        RawValueCache.Serialized remoteValue = remoteGet(key);
+        if (remoteValue != null) {
+            metrics.hitRemote();
+            Entry entry = newEntry(remoteValue.value(), earlyRefresh.getDefaultDelta().toNanos());
+            putLocalIfUnchanged(localKey, entry, remoteValue.bytes(), version);
+            return entry;
+        }
+
+        metrics.miss();
+        long start = System.nanoTime();
+        RawValueCache.Serialized loaded;
+        try {
+            // 租约等待期间读到的 L2 值和本节点加载的值都带上序列化字节
+            loaded = (RawValueCache.Serialized) lease.load(name + "::" + localKey, () -> remoteGet(key),
+                    () -> loadAndStore(key, localKey, valueLoader, version));
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        if (loaded == null) {
+            return null;
+        }
+        Entry entry = newEntry(loaded.value(), System.nanoTime() - start);
+        if (!putLocalIfUnchanged(localKey, entry, loaded.bytes(), version)) {
+            // 加载期间被清除：L2 中可能是在清除之后写入的旧值
+            remote.evict(key);
+        }
+        return entry;
+    }
+
+    /**
+     * 加载前的版本仍然有效时写入 L1 和堆外层
+     * 写入后再次检查：期间发生的清除可能已先于本次写入清理过 L1，此时撤销本次写入
+     *
+     * @param bytes L2 中的序列化字节（堆外层直接复制），不可用时为 null
+     * @return 是否写入
+     */
+    private boolean putLocalIfUnchanged(String localKey, Entry entry, byte[] bytes, Version version) {
+        if (!version.equals(version(localKey))) {
+            return false;
+        }
+        local.put(localKey, entry);
+        offHeapPut(localKey, entry.value(), bytes);
+        if (!version.equals(version(localKey))) {
+            local.invalidate(localKey);
+            offHeapRemove(List.of(localKey));
+            return false;
+        }
+        return true;
+    }
+
+    private Version version(String localKey) {
+        return new Version(modifications.get(stripe(localKey)), clears.get(), generations.current(name));
+    }
+
+    private void modifying(String localKey) {
+        modifications.incrementAndGet(stripe(localKey));
+    }
+
+    private static int stripe(String localKey) {
+        int h = localKey.hashCode();
+        return (h ^ (h >>> 16)) & (MODIFICATION_STRIPES - 1);
+    }
+
+    /**
+     * XFetch：剩余时间越少、加载越慢，越可能提前刷新
+     * 条件：now - delta * beta * ln(random) >= expiresAt
+     */
+    private boolean shouldRefreshEarly(Entry entry) {
+        if (earlyRefresh.getBeta() <= 0 || entry.delta() <= 0) {
+            return false;
+        }
+        double random = ThreadLocalRandom.current().nextDouble();
+        long gap = (long) (-entry.delta() * earlyRefresh.getBeta() * Math.log(random));
+        return System.nanoTime() + gap - entry.expiresAt() >= 0;
+    }
+
+    private void refreshAsync(Object key, String localKey, Callable<?> valueLoader) {
+        if (!refreshing.add(localKey)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refresh(key, localKey, valueLoader);
+                } catch (Exception e) {
+                    log.warn("缓存 {} 提前刷新 {} 失败: {}", name, localKey, e.getMessage());
+                } finally {
+                    refreshing.remove(localKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 刷新线程池已满：跳过，条目过期后按正常流程加载
+            refreshing.remove(localKey);
+            metrics.refreshSkipped();
+        }
+    }
+
+    /**
+     * 提前刷新：只有拿到租约的节点加载（其他节点正在刷新时跳过），加载期间 key 被写入、清除或缓存被清空时丢弃结果
+     */
+    private void refresh(Object key, String localKey, Callable<?> valueLoader) throws Exception {
+        Version version = version(localKey);
+        long start = System.nanoTime();
+        Object result = lease.tryLoad(name + "::" + localKey,
+                () -> loadAndStore(key, localKey, valueLoader, version));
+        if (!(result instanceof RawValueCache.Serialized loaded)) {
+            return;
+        }
+        if (!putLocalIfUnchanged(localKey, newEntry(loaded.value(), System.nanoTime() - start), loaded.bytes(),
+                version)) {
+            remote.evict(key);
+        }
+    }
+
+    /**
+     * 调用加载方法，版本未变时写入 L2
+     *
+     * @return 加载结果及写入 L2 的字节；加载结果为 null 时返回 null
+     */
+    private RawValueCache.Serialized loadAndStore(Object key, String localKey, Callable<?> valueLoader,
+                                                  Version version) throws Exception {
+        Object loaded = callLoader(valueLoader);
+        if (loaded == null) {
+            return null;
+        }
+        byte[] bytes = version.equals(version(localKey)) ? remotePut(key, loaded) : null;
+        return new RawValueCache.Serialized(loaded, bytes);
+    }
+
+    /**
+     * 调用加载方法并记录耗时
+     */
+    private Object callLoader(Callable<?> valueLoader) throws Exception {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Object value = valueLoader.call();
+            success = true;
+            return value;
+        } finally {
+            metrics.load(System.nanoTime() - start, success);
+        }
+    }
+
+    private Object offHeapGet(String localKey) {
+        if (offHeap == null) {
+            return null;
+        }
+        Object value = offHeap.get(localKey);
+        if (value != null) {
+            metrics.hitOffHeap();
+        }
+        return value;
+    }
+
+    /**
+     * 写入堆外层：有 L2 的字节时直接复制，否则（L2 未写入或不可用）自行序列化
+     */
+    private void offHeapPut(String localKey, Object value, byte[] bytes) {
+        if (offHeap == null) {
+            return;
+        }
+        if (bytes != null) {
+            offHeap.putBytes(localKey, bytes);
+        } else {
+            offHeap.put(localKey, value);
+        }
+    }
+
+    private void offHeapRemove(Collection<String> localKeys) {
+        if (offHeap != null) {
+            offHeap.removeAll(localKeys);
+        }
+    }
+
+    /**
+     * 读 L2；开启堆外层时同时取回序列化字节
+     */
+    private RawValueCache.Serialized remoteGet(Object key) {
+        if (offHeap != null && remote instanceof RawValueCache raw) {
+            return raw.getSerialized(key);
+        }
+        ValueWrapper wrapper = remote.get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        return value != null ? new RawValueCache.Serialized(value, null) : null;
+    }
+
+    /**
+     * 写 L2；开启堆外层时返回写入的字节（只序列化一次）
+     */
+    private byte[] remotePut(Object key, Object value) {
+        if (offHeap != null && remote instanceof RawValueCache raw) {
+            return raw.putSerialized(key, value);
+        }
+        remote.put(key, value);
+        return null;
+    }
+
+    private Entry newEntry(Object value, long delta) {
+        return new Entry(value, System.nanoTime() + localTtlNanos, delta);
+    }
+
+    /**
+     * 收到其他节点的失效通知时，只清除本地 L1
+     */
+    void evictLocal(Collection<String> localKeys) {
+        localKeys.forEach(this::modifying);
+        local.invalidateAll(localKeys);
+        offHeapRemove(localKeys);
+        metrics.evictRemote(localKeys.size());
+    }
+
+    /**
+     * 批量清除（TwoLevelCacheManager.evictAll）删除 L2 之前调用：使正在进行的加载丢弃结果
+     */
+    void beforeBatchEvict(Collection<String> localKeys) {
+        localKeys.forEach(this::modifying);
+    }
+
+    /**
+     * 批量清除（TwoLevelCacheManager.evictAll）后清除 L1
+     */
+    void evictBatch(Collection<String> localKeys) {
+        localKeys.forEach(this::modifying);
+        local.invalidateAll(localKeys);
+        offHeapRemove(localKeys);
+        metrics.evictBatch(localKeys.size());
+    }
+
+    org.springframework.cache.Cache getRemote() {
+        return remote;
+    }
+
+    void clearLocal() {
+        clears.incrementAndGet();
+        local.invalidateAll();
+        if (offHeap != null) {
+            offHeap.clear();
+        }
+        metrics.evictRemote(1);
+    }
+
+    static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    /**
+     * L1 条目
+     *
+     * @param value     缓存值
+     * @param expiresAt L1 过期时间（System.nanoTime）
+     * @param delta     加载耗时（纳秒），用于 XFetch 提前刷新
+     */
+    record Entry(Object value, long expiresAt, long delta) {
+    }
+
+    /**
+     * 加载开始时的缓存版本
+     *
+     * @param modifications key 所在分段的写入/清除次数
+     * @param clears        清空次数
+     * @param generation    命名空间代数
+     */
+    private record Version(long modifications, long clears, long generation) {
+    }
+}
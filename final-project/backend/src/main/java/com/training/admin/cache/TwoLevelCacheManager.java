@@ -0,0 +1,253 @@
+package com.training.admin.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 二级缓存管理器：每个缓存由 Caffeine（L1）+ RedisCache（L2）组成
+ *
+ * 1. L1 容量和过期时间按缓存名称配置（TwoLevelCacheProperties），maxSize 为 0 的缓存不在本地保留数据；
+ *    配置 offHeapSize 的缓存在直接内存中保存序列化后的值（OffHeapStore），字节复制自 L2 的读写（RawValueRedisCache）
+ * 2. 任一节点写入/清除缓存后，通过 Redis 频道广播失效通知，其他节点清除自己的 L1
+ * 3. 支持事务：事务内的写入和清除在提交后执行（与原 RedisCacheManager.transactionAware 行为一致）
+ * 4. 清空缓存为 O(1)：递增命名空间代数（CacheGenerations），旧 key 由 TTL 过期
+ * 5. 每个缓存注册命中/未命中、加载耗时、清除次数等指标（CacheMetrics）
+ * 6. Redis 熔断（RedisCircuitBreaker）：Redis 变慢或不可用时只使用 L1 或直接加载，恢复后清空未同步的缓存
+ * 7. 防击穿：sync 加载在节点内单飞，并通过 Redis 租约（CacheLoadLease）保证集群内只有一个节点回源；
+ *    提前刷新在有界的专用线程池中执行（app.cache.early-refresh.threads / queue-capacity）
+ *
+ * 通知格式：{类型}|{节点ID}|{缓存名}|{参数}，类型 E=清除 key（参数为 key，批量清除时多个 key 以 \u001f 分隔），
+ * C=清空缓存（参数为新代数）；忽略本节点发出的通知。
+ */
+@Slf4j
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager implements DisposableBean {
+
+    /**
+     * 批量清除时每条 DEL 命令的最大 key 数
+     */
+    private static final int EVICT_BATCH_SIZE = 1000;
+    private static final String KEY_SEPARATOR = "\u001f";
+
+    private final RedisCacheManager redisCacheManager;
+    private final TwoLevelCacheProperties properties;
+    private final StringRedisTemplate redisTemplate;
+    private final CacheGenerations generations;
+    private final CacheLoadLease lease;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RedisSerializer<Object>> valueSerializers;
+    private final RedisCircuitBreaker breaker;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final InvalidationPublisher publisher = new InvalidationPublisher();
+    private final ThreadPoolExecutor refreshExecutor;
+
+    /**
+     * @param redisCacheManager L2 缓存管理器（不要开启 transactionAware，事务由本管理器统一处理；
+     *                          key 前缀需使用同一个 CacheGenerations 计算）
+     * @param valueSerializers  按缓存名称的值序列化器（与 L2 格式相同、不记录 cache.value.size），
+     *                          堆外层在 L2 不可用时用它自行序列化；未提供的缓存不开启堆外层
+     */
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager, TwoLevelCacheProperties properties,
+                                Map<String, RedisSerializer<Object>> valueSerializers,
+                                CacheGenerations generations, RedisCircuitBreaker breaker,
+                                StringRedisTemplate redisTemplate, RedisMessageListenerContainer listenerContainer,
+                                MeterRegistry meterRegistry) {
+        this.redisCacheManager = redisCacheManager;
+        this.valueSerializers = valueSerializers;
+        this.properties = properties;
+        this.generations = generations;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.breaker = breaker;
+        this.lease = new CacheLoadLease(redisTemplate, breaker, properties.getLeaseTime(), properties.getLeasePoll(),
+                properties.getLeaseWait());
+        TwoLevelCacheProperties.EarlyRefresh earlyRefresh = properties.getEarlyRefresh();
+        int threads = Math.max(earlyRefresh.getThreads(), 1);
+        AtomicInteger seq = new AtomicInteger();
+        this.refreshExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(earlyRefresh.getQueueCapacity(), 1)),
+                r -> {
+                    Thread t = new Thread(r, "cache-refresh-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        // Redis 恢复后清空熔断期间写入/清除未同步的缓存（递增代数并通知各节点清除 L1）
+        breaker.setRecoveryHandler(name -> {
+            Cache cache = getCache(name);
+            if (cache != null) {
+                cache.clear();
+            }
+        });
+        listenerContainer.addMessageListener((message, pattern) ->
+                onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(properties.getInvalidationChannel()));
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        return List.of();
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        Cache redisCache = redisCacheManager.getCache(name);
+        if (redisCache == null) {
+            return null;
+        }
+        TwoLevelCacheProperties.LocalSpec spec = properties.localSpec(name);
+        RedisSerializer<Object> offHeapSerializer = valueSerializers.get(name);
+        long offHeapBytes = offHeapSerializer != null && redisCache instanceof RedisCache
+                ? spec.getOffHeapSize().toBytes() : 0;
+        long maxSize = offHeapBytes > 0 ? 0 : Math.max(spec.getMaxSize(), 0);
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(spec.getTtl());
+        if (maxSize == 0) {
+            // 不使用 L1：同步淘汰，写入后立即移除
+            builder.executor(Runnable::run);
+        }
+        // 堆外层复制 L2 读写的字节（L2 序列化一次、只记录一次值大小），L2 不可用时用未计量的序列化器
+        OffHeapStore offHeap = null;
+        if (offHeapBytes > 0) {
+            redisCache = new RawValueRedisCache((RedisCache) redisCache);
+            offHeap = new OffHeapStore(name, (int) Math.min(offHeapBytes, Integer.MAX_VALUE), spec.getTtl(),
+                    RedisSerializationContext.SerializationPair.fromSerializer(offHeapSerializer), meterRegistry);
+        }
+        Cache remote = new CircuitBreakingCache(redisCache, breaker);
+        log.info("初始化二级缓存: {} (L1 maxSize={}, ttl={}, offHeap={})", name, maxSize, spec.getTtl(), spec.getOffHeapSize());
+        com.github.benmanes.caffeine.cache.Cache<String, TwoLevelCache.Entry> local = builder.build();
+        return new TwoLevelCache(name, local, spec.getTtl(), remote, generations, lease,
+                properties.getEarlyRefresh(), publisher, new CacheMetrics(meterRegistry, name, local), offHeap,
+                refreshExecutor);
+    }
+
+    @Override
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 批量清除缓存（不经过事务同步，调用方负责在事务提交后调用）
+     * L2 使用流水线发送多 key DEL（每条命令最多 1000 个 key），L1 本地清除，其他节点只收到一条通知
+     *
+     * @param cacheName 缓存名称
+     * @param keys      缓存 key
+     */
+    public void evictAll(String cacheName, Collection<?> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        Cache target = unwrap(getCache(cacheName));
+        if (target == null) {
+            return;
+        }
+        Cache remote = target instanceof TwoLevelCache twoLevelCache ? twoLevelCache.getRemote() : target;
+        if (remote instanceof CircuitBreakingCache circuitBreakingCache) {
+            remote = circuitBreakingCache.getTarget();
+        }
+        List<String> localKeys = keys.stream().map(TwoLevelCache::localKey).toList();
+        if (target instanceof TwoLevelCache twoLevelCache) {
+            twoLevelCache.beforeBatchEvict(localKeys);
+        }
+
+        if (remote instanceof RedisCache redisCache) {
+            String prefix = redisCache.getCacheConfiguration().getKeyPrefixFor(cacheName);
+            List<String> redisKeys = localKeys.stream().map(key -> prefix + key).toList();
+            breaker.run(() -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (int i = 0; i < redisKeys.size(); i += EVICT_BATCH_SIZE) {
+                    conn.del(redisKeys.subList(i, Math.min(i + EVICT_BATCH_SIZE, redisKeys.size()))
+                            .toArray(String[]::new));
+                }
+                return null;
+            }), () -> breaker.markDirty(cacheName));
+        } else {
+            keys.forEach(remote::evict);
+        }
+
+        if (target instanceof TwoLevelCache twoLevelCache) {
+            twoLevelCache.evictBatch(localKeys);
+            publisher.evict(cacheName, String.join(KEY_SEPARATOR, localKeys));
+        }
+    }
+
+    private void onInvalidation(String body) {
+        String[] parts = body.split("\\|", 4);
+        if (parts.length < 3 || nodeId.equals(parts[1])) {
+            return;
+        }
+        TwoLevelCache cache = lookupTwoLevelCache(parts[2]);
+        if (cache == null) {
+            return;
+        }
+        if ("C".equals(parts[0])) {
+            if (parts.length == 4) {
+                generations.advance(parts[2], Long.parseLong(parts[3]));
+            }
+            cache.clearLocal();
+        } else if (parts.length == 4) {
+            cache.evictLocal(List.of(parts[3].split(KEY_SEPARATOR)));
+        }
+    }
+
+    private TwoLevelCache lookupTwoLevelCache(String name) {
+        // 只处理本节点已创建的缓存，未创建说明本地没有 L1 数据
+        if (!getCacheNames().contains(name)) {
+            return null;
+        }
+        return unwrap(lookupCache(name)) instanceof TwoLevelCache twoLevelCache ? twoLevelCache : null;
+    }
+
+    private static Cache unwrap(Cache cache) {
+        while (cache instanceof TransactionAwareCacheDecorator decorator) {
+            cache = decorator.getTargetCache();
+        }
+        return cache;
+    }
+
+    /**
+     * 失效通知发布器（发布失败只记录日志，L1 过期时间是兜底）
+     */
+    final class InvalidationPublisher {
+
+        void evict(String cacheName, String key) {
+            publish(cacheName, "E|" + nodeId + "|" + cacheName + "|" + key);
+        }
+
+        void clear(String cacheName, long generation) {
+            publish(cacheName, "C|" + nodeId + "|" + cacheName + "|" + generation);
+        }
+
+        /**
+         * 发布失败（或熔断）时其他节点的 L1 可能过期，标记为脏，Redis 恢复后清空
+         */
+        private void publish(String cacheName, String message) {
+            breaker.run(() -> redisTemplate.convertAndSend(properties.getInvalidationChannel(), message),
+                    () -> breaker.markDirty(cacheName));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.training.admin.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 二级缓存配置（app.cache）
+ *
+ * 一级缓存（进程内 Caffeine）按缓存名称配置容量和过期时间，未单独配置的缓存使用 defaults。
+ * 一级缓存的过期时间应小于 Redis 中的 TTL。
+ */
+@Data
+@ConfigurationProperties(prefix = "app.cache")
+public class TwoLevelCacheProperties {
+
+    /**
+     * 缓存失效通知的 Redis 频道
+     */
+    private String invalidationChannel = "cache:invalidate";
+
+    /**
+     * 本地缓存的命名空间代数从 Redis 重新读取的间隔（失效通知丢失时的兜底）
+     */
+    private Duration generationRefresh = Duration.ofSeconds(5);
+
+    /**
+     * Redis TTL 的随机抖动比例（0.1 表示 ±10%），避免同一批写入的 key 同时过期
+     */
+    private double ttlJitter = 0.1;
+
+    /**
+     * 缓存加载租约的持有时间（加载方法的最长预期耗时）
+     */
+    private Duration leaseTime = Duration.ofSeconds(5);
+
+    /**
+     * 未拿到租约时轮询 L2 的间隔
+     */
+    private Duration leasePoll = Duration.ofMillis(50);
+
+    /**
+     * 未拿到租约时最多等待其他节点写入 L2 的时间（不超过 leaseTime），超时后自行加载；
+     * 同一 key 在本节点的其他请求也在等待这次加载，应保持较短
+     */
+    private Duration leaseWait = Duration.ofSeconds(1);
+
+    /**
+     * 一级缓存提前刷新配置
+     */
+    private EarlyRefresh earlyRefresh = new EarlyRefresh();
+
+    /**
+     * Redis 缓存值的序列化格式
+     */
+    private Codec codec = new Codec();
+
+    /**
+     * Redis 熔断配置
+     */
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    /**
+     * 一级缓存默认配置
+     */
+    private LocalSpec defaults = new LocalSpec();
+
+    /**
+     * 按缓存名称的一级缓存配置
+     */
+    private Map<String, LocalSpec> local = new LinkedHashMap<>();
+
+    public LocalSpec localSpec(String cacheName) {
+        return local.getOrDefault(cacheName, defaults);
+    }
+
+    @Data
+    public static class LocalSpec {
+
+        /**
+         * 最大条目数，0 表示不使用一级缓存（仍使用 O(1) 命名空间清空）
+         */
+        private long maxSize = 10000;
+
+        /**
+         * 写入后过期时间
+         */
+        private Duration ttl = Duration.ofMinutes(5);
+
+        /**
+         * 堆外层容量，大于 0 时 L1 改为在直接内存中保存序列化后的值（maxSize 不再生效），见 OffHeapStore
+         */
+        private DataSize offHeapSize = DataSize.ofBytes(0);
+    }
+
+    @Data
+    public static class Codec {
+
+        /**
+         * 写入格式：binary-紧凑二进制（BinaryCacheSerializer），json-Jackson JSON
+         * 两种格式写入的数据均可读取，可随时切换
+         */
+        private String format = "binary";
+
+        /**
+         * 二进制格式的压缩阈值（字节），0 表示不压缩
+         */
+        private int compressThreshold = 1024;
+    }
+
+    @Data
+    public static class CircuitBreaker {
+
+        /**
+         * 连续失败或慢调用次数达到该值时打开熔断
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * 超过该耗时的 Redis 调用视为慢调用
+         */
+        private Duration slowCallThreshold = Duration.ofMillis(200);
+
+        /**
+         * 熔断打开后探测 Redis 的间隔
+         */
+        private Duration probeInterval = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class EarlyRefresh {
+
+        /**
+         * XFetch 系数，越大越早刷新，0 表示关闭提前刷新
+         */
+        private double beta = 1.0;
+
+        /**
+         * 未测得加载耗时（从 L2 回填）时使用的默认耗时
+         */
+        private Duration defaultDelta = Duration.ofMillis(100);
+
+        /**
+         * 提前刷新线程数（各缓存共享）
+         */
+        private int threads = 2;
+
+        /**
+         * 提前刷新等待队列长度，队列满时跳过刷新
+         */
+        private int queueCapacity = 100;
+    }
+}
@@ -0,0 +1,44 @@
+package com.training.admin.common;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * 基于 {@link PermissionSet} 的已认证用户
+ *
+ * 与 UsernamePasswordAuthenticationToken 不同，不复制权限列表，
+ * 直接返回缓存的权限集合（成员判断 O(1)）
+ */
+public class PermissionAuthenticationToken extends AbstractAuthenticationToken {
+
+    private final String username;
+    private final PermissionSet permissions;
+
+    public PermissionAuthenticationToken(String username, PermissionSet permissions) {
+        super(null);
+        this.username = username;
+        this.permissions = permissions;
+        setAuthenticated(true);
+    }
+
+    public PermissionSet getPermissions() {
+        return permissions;
+    }
+
+    @Override
+    public Collection<GrantedAuthority> getAuthorities() {
+        return permissions;
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public Object getPrincipal() {
+        return username;
+    }
+}
@@ -4,8 +4,6 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.List;
-
 /**
  * 权限变更通知
  * 用于通知前端权限已变更，需要重新加载权限信息
@@ -30,9 +28,9 @@ public class PermissionChangeNotification {
     private Long permissionId;
     
     /**
-     * 受影响的用户ID列表
+     * 受影响的用户数
      */
-    private List<Long> affectedUserIds;
+    private Long affectedUserCount;
     
     /**
      * 提示消息
@@ -41,17 +39,18 @@ public class PermissionChangeNotification {
     
     /**
      * 是否需要重新登录
+     * 权限版本机制下无需重新登录：受影响用户的下一次请求会通过 X-Refreshed-Token 响应头拿到新 Token
      */
     private boolean requireRelogin;
     
-    public static PermissionChangeNotification rolePermissionChanged(Long roleId, List<Long> affectedUserIds) {
+    public static PermissionChangeNotification rolePermissionChanged(Long roleId, long affectedUserCount) {
         return new PermissionChangeNotification(
                 "ROLE_PERMISSION_CHANGED",
                 roleId,
                 null,
-                affectedUserIds,
-                String.format("角色权限已变更，%d 个用户受影响，请重新登录以获取最新权限", affectedUserIds.size()),
-                true
+                affectedUserCount,
+                String.format("角色权限已变更，%d 个用户受影响，新权限将在其下一次请求时自动生效", affectedUserCount),
+                false
         );
     }
     
@@ -61,8 +60,8 @@ public class PermissionChangeNotification {
                 null,
                 permissionId,
                 null,
-                "权限信息已更新，请重新登录以获取最新权限",
-                true
+                "权限信息已更新，新权限将在下一次请求时自动生效",
+                false
         );
     }
 }
@@ -0,0 +1,116 @@
+package com.training.admin.common;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 紧凑的权限集合（不可变）
+ *
+ * 以权限字典下标为位的 bitset 存储，成员判断为 O(1)；
+ * 迭代返回的是权限字典中共享的 GrantedAuthority 实例，不为每个权限创建新对象。
+ * 直接作为 Authentication 的 authorities 使用。
+ */
+public final class PermissionSet extends AbstractSet<GrantedAuthority> {
+
+    public static final PermissionSet EMPTY = new PermissionSet(new BitSet(), new GrantedAuthority[0], Map.of(), Map.of());
+
+    private final BitSet bits;
+
+    /**
+     * 按下标排列的共享 GrantedAuthority（来自权限字典快照）
+     */
+    private final GrantedAuthority[] authorities;
+
+    /**
+     * 权限编码 -> 下标（来自权限字典快照）
+     */
+    private final Map<String, Integer> indexes;
+
+    /**
+     * 字典中不存在的编码（仅在新旧字典交替期间出现，通常为空）
+     */
+    private final Map<String, GrantedAuthority> extras;
+
+    private final int size;
+
+    public PermissionSet(BitSet bits, GrantedAuthority[] authorities, Map<String, Integer> indexes,
+                         Map<String, GrantedAuthority> extras) {
+        this.bits = bits;
+        this.authorities = authorities;
+        this.indexes = indexes;
+        this.extras = extras;
+        this.size = bits.cardinality() + extras.size();
+    }
+
+    /**
+     * 是否拥有指定权限编码（O(1)）
+     */
+    public boolean hasAuthority(String code) {
+        Integer index = indexes.get(code);
+        if (index != null && bits.get(index)) {
+            return true;
+        }
+        return !extras.isEmpty() && extras.containsKey(code);
+    }
+
+    /**
+     * 权限编码列表（按字典下标排序）
+     */
+    public List<String> codes() {
+        List<String> codes = new ArrayList<>(size);
+        for (GrantedAuthority authority : this) {
+            codes.add(authority.getAuthority());
+        }
+        return codes;
+    }
+
+    /**
+     * 按字典下标的 bitset 副本（用于编码）
+     */
+    public BitSet toBitSet() {
+        return (BitSet) bits.clone();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof GrantedAuthority authority && hasAuthority(authority.getAuthority());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<GrantedAuthority> iterator() {
+        return new Iterator<>() {
+            private int next = bits.nextSetBit(0);
+            private final Iterator<GrantedAuthority> extraIterator = extras.values().iterator();
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0 || extraIterator.hasNext();
+            }
+
+            @Override
+            public GrantedAuthority next() {
+                if (next >= 0) {
+                    GrantedAuthority authority = authorities[next];
+                    next = bits.nextSetBit(next + 1);
+                    return authority;
+                }
+                if (extraIterator.hasNext()) {
+                    return extraIterator.next();
+                }
+                throw new NoSuchElementException();
+            }
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package com.training.admin.common;
+
+import lombok.Getter;
+
+/**
+ * 已验签的 Token 声明
+ * 一次解析得到用户名、权限和过期时间，可被缓存复用（不可变对象）
+ */
+@Getter
+public class TokenClaims {
+
+    /**
+     * 权限声明无法按当前权限字典解码时使用的版本号：与任何用户的当前版本都不相等，
+     * SecurityFilter 会按版本落后处理，重新加载权限并下发新 Token
+     */
+    public static final long UNKNOWN_PERMISSION_VERSION = -1L;
+
+    /**
+     * 用户ID（旧版 Token 中没有，为 null）
+     */
+    private final Long userId;
+
+    private final String username;
+
+    /**
+     * 权限集合，直接作为 Authentication 的 authorities 使用
+     */
+    private final PermissionSet permissions;
+
+    /**
+     * 签发时的用户权限版本号
+     */
+    private final long permissionVersion;
+
+    /**
+     * 过期时间（毫秒时间戳）
+     */
+    private final long expiresAt;
+
+    public TokenClaims(Long userId, String username, PermissionSet permissions, long permissionVersion, long expiresAt) {
+        this.userId = userId;
+        this.username = username;
+        this.permissions = permissions;
+        this.permissionVersion = permissionVersion;
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+}
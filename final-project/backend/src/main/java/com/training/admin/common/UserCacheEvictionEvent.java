@@ -0,0 +1,25 @@
+package com.training.admin.common;
+
+import java.util.List;
+
+/**
+ * 用户缓存清除事件
+ * 角色权限、角色菜单或权限本身变更后发布，事务提交后由 UserCacheEvictionListener 异步分批清除
+ * 拥有这些角色的用户的个人信息缓存，权限变更时同时递增其权限版本
+ *
+ * 事件只携带角色ID，受影响用户在监听器中按用户ID游标分批查询，不在内存中保存完整的用户列表
+ *
+ * @param roleIds     变更的角色ID
+ * @param reason      变更原因（用于日志）
+ * @param bumpVersion 是否递增权限版本（仅菜单变更时不需要刷新 Token）
+ */
+public record UserCacheEvictionEvent(List<Long> roleIds, String reason, boolean bumpVersion) {
+
+    public static UserCacheEvictionEvent permissionsChanged(List<Long> roleIds, String reason) {
+        return new UserCacheEvictionEvent(roleIds, reason, true);
+    }
+
+    public static UserCacheEvictionEvent menusChanged(List<Long> roleIds, String reason) {
+        return new UserCacheEvictionEvent(roleIds, reason, false);
+    }
+}
@@ -0,0 +1,15 @@
+package com.training.admin.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/**
+ * 异步任务配置
+ *
+ * 启用 @Async，使用 Spring Boot 自动配置的 applicationTaskExecutor（spring.task.execution）
+ * 用于事务提交后的缓存批量清除等不需要阻塞 HTTP 响应的操作
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+}
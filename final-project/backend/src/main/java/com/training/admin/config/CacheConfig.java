@@ -3,77 +3,181 @@ package com.training.admin.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.training.admin.cache.BinaryCacheSerializer;
+import com.training.admin.cache.CacheGenerations;
+import com.training.admin.cache.MeteredRedisSerializer;
+import com.training.admin.cache.RedisCircuitBreaker;
+import com.training.admin.cache.TwoLevelCacheManager;
+import com.training.admin.cache.TwoLevelCacheProperties;
 import com.training.admin.vo.ProfileVO;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * Redis 缓存配置（分布式缓存，支持集群）
+ * 二级缓存配置：进程内 Caffeine（L1）+ Redis（L2，分布式缓存，支持集群）
  * 
- * 缓存策略：
- * - 用户权限缓存：cacheName = "userPermissions", key = "#userId", TTL = 30分钟
- * - 用户个人信息缓存：cacheName = "userProfile", key = "#username", TTL = 30分钟
+ * 缓存策略（Redis TTL，L1 容量和过期时间见 app.cache 配置）：
  * - 角色权限缓存：cacheName = "rolePermissions", key = "#roleId", TTL = 30分钟
+ * - 用户角色缓存：cacheName = "userRoles", key = "#userId", TTL = 30分钟
+ * - 角色组合权限集合：cacheName = "permissionSets", key = 角色组合签名, TTL = 30分钟
+ * - 角色组合菜单树：cacheName = "menuTrees", key = 角色组合签名, TTL = 30分钟
+ *   （用户权限 = 其角色组合的权限集合，相同角色组合的用户共用一份）
+ * - 用户个人信息缓存：cacheName = "userProfile", key = "#username", TTL = 30分钟
  * 
  * 优势：
  * - 支持集群部署（所有节点共享缓存）
  * - 缓存一致性更好
  * - 支持缓存失效通知
  * - 精确的缓存清除策略（只清除受影响用户）
+ * - 热点数据命中 L1，不经网络和反序列化；清除时通过 Redis 发布/订阅通知所有节点清除 L1
+ * - key 格式为 {cacheName}::{代数}::{key}，清空缓存（allEntries）只递增代数，不扫描删除 key
+ * - 值默认使用紧凑二进制格式（app.cache.codec），比 JSON 少字段名、@class 和 ISO 时间字符串
+ * - 每个缓存的命中率、加载耗时、清除次数和值大小通过 /actuator/metrics 查看（cache.gets、cache.load、cache.evictions、cache.value.size）
+ * - Redis 变慢或不可用时熔断（app.cache.circuit-breaker），缓存只使用本地 L1 或直接加载，不等待命令超时
+ * - TTL 带随机抖动（app.cache.ttl-jitter），避免同一时刻写入的 key 集中过期
  */
 @Configuration
+@Slf4j
 @EnableCaching
+@EnableConfigurationProperties(TwoLevelCacheProperties.class)
 public class CacheConfig {
 
+    /**
+     * Redis 熔断器（缓存层和认证链路共用，Redis 变慢或不可用时快速降级）
+     * 慢调用在返回后才能识别，命令超时大于慢调用阈值时单次调用可能阻塞到超时，启动时给出警告
+     */
+    @Bean(destroyMethod = "shutdown")
+    public RedisCircuitBreaker redisCircuitBreaker(StringRedisTemplate redisTemplate,
+                                                   TwoLevelCacheProperties properties,
+                                                   RedisProperties redisProperties,
+                                                   MeterRegistry meterRegistry) {
+        Duration slowCallThreshold = properties.getCircuitBreaker().getSlowCallThreshold();
+        Duration timeout = redisProperties.getTimeout();
+        if (timeout == null || timeout.compareTo(slowCallThreshold) > 0) {
+            log.warn("spring.data.redis.timeout（{}）大于熔断慢调用阈值（{}），Redis 卡顿时单次调用最长阻塞到命令超时",
+                    timeout, slowCallThreshold);
+        }
+        return new RedisCircuitBreaker(redisTemplate, properties.getCircuitBreaker(), meterRegistry);
+    }
+
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     TwoLevelCacheProperties properties,
+                                     StringRedisTemplate redisTemplate,
+                                     RedisMessageListenerContainer listenerContainer,
+                                     RedisCircuitBreaker circuitBreaker,
+                                     MeterRegistry meterRegistry) {
         // 配置 ObjectMapper，支持 Java 8 时间类型
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());  // 启用 Java 8 时间支持
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);  // 禁用时间戳格式，使用 ISO-8601 格式
         
-        // 为 ProfileVO 创建专用的序列化器（类型安全）
+        // 为 ProfileVO 创建专用的 JSON 序列化器（类型安全）
         // 使用 Jackson2JsonRedisSerializer 显式指定类型，避免反序列化为 LinkedHashMap
-        Jackson2JsonRedisSerializer<ProfileVO> profileSerializer = new Jackson2JsonRedisSerializer<>(ProfileVO.class);
-        profileSerializer.setObjectMapper(objectMapper);
+        Jackson2JsonRedisSerializer<Object> profileSerializer =
+                new Jackson2JsonRedisSerializer<>(objectMapper, objectMapper.constructType(ProfileVO.class));
+        
+        // 命名空间代数：作为 key 前缀的一部分，清空缓存时一次 INCR
+        CacheGenerations generations = new CacheGenerations(redisTemplate, circuitBreaker, properties.getGenerationRefresh());
+        
+        // TTL 抖动：30 分钟 ±ttlJitter，同一批写入的 key 错开过期时间
+        RedisCacheWriter.TtlFunction ttl = jitteredTtl(Duration.ofMinutes(30), properties.getTtlJitter());
         
         // 为其他缓存创建通用序列化器（用于 List<String> 等简单类型）
         GenericJackson2JsonRedisSerializer defaultSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
         
-        // 配置默认缓存策略（用于 userPermissions 等简单类型）
+        // 紧凑二进制格式（无字段名和 @class，超过阈值时压缩），JSON 作为不支持类型和旧数据的兜底
+        TwoLevelCacheProperties.Codec codec = properties.getCodec();
+        boolean writeBinary = "binary".equalsIgnoreCase(codec.getFormat());
+        BinaryCacheSerializer defaultValueSerializer =
+                new BinaryCacheSerializer(defaultSerializer, codec.getCompressThreshold(), writeBinary);
+        BinaryCacheSerializer profileValueSerializer =
+                new BinaryCacheSerializer(profileSerializer, codec.getCompressThreshold(), writeBinary);
+        
+        // 配置默认缓存策略（用于 rolePermissions、userRoles 等简单类型）
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(30))  // 默认 TTL：30 分钟
+                .entryTtl(ttl)  // 默认 TTL：30 分钟 ± 抖动（旧代数的 key 也依靠 TTL 过期）
+                .computePrefixWith(generations)  // Key 前缀：{cacheName}::{代数}::
                 .serializeKeysWith(RedisSerializationContext.SerializationPair
                         .fromSerializer(new StringRedisSerializer()))  // Key 序列化：String
                 .serializeValuesWith(RedisSerializationContext.SerializationPair
-                        .fromSerializer(defaultSerializer))  // Value 序列化：JSON（支持 Java 8 时间）
+                        .fromSerializer(defaultValueSerializer))  // Value 序列化：二进制（兜底 JSON，支持 Java 8 时间）
                 .disableCachingNullValues();  // 不缓存 null 值
         
         // 配置 userProfile 缓存的专用策略（使用类型安全的序列化器）
         RedisCacheConfiguration profileConfig = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(30))  // TTL：30 分钟
+                .entryTtl(ttl)  // TTL：30 分钟 ± 抖动
+                .computePrefixWith(generations)  // Key 前缀：{cacheName}::{代数}::
                 .serializeKeysWith(RedisSerializationContext.SerializationPair
                         .fromSerializer(new StringRedisSerializer()))  // Key 序列化：String
                 .serializeValuesWith(RedisSerializationContext.SerializationPair
-                        .fromSerializer(profileSerializer))  // Value 序列化：ProfileVO（类型安全）
+                        .fromSerializer(profileValueSerializer))  // Value 序列化：二进制（兜底 ProfileVO JSON，类型安全）
                 .disableCachingNullValues();  // 不缓存 null 值
 
-        // 创建缓存管理器，为不同缓存配置不同的序列化器
-        return RedisCacheManager.builder(connectionFactory)
+        // 已配置的缓存（app.cache.local 和 userProfile）包装序列化器，按缓存名称记录值大小（cache.value.size）
+        // 堆外层使用未包装的序列化器（字节格式相同，值大小只在写入 L2 时记录一次）
+        Map<String, RedisCacheConfiguration> cacheConfigs = new LinkedHashMap<>();
+        Map<String, RedisSerializer<Object>> valueSerializers = new LinkedHashMap<>();
+        Set<String> cacheNames = new LinkedHashSet<>(properties.getLocal().keySet());
+        cacheNames.add("userProfile");
+        for (String name : cacheNames) {
+            boolean profile = "userProfile".equals(name);
+            RedisCacheConfiguration config = profile ? profileConfig : defaultConfig;
+            BinaryCacheSerializer valueSerializer = profile ? profileValueSerializer : defaultValueSerializer;
+            cacheConfigs.put(name, config.serializeValuesWith(RedisSerializationContext.SerializationPair
+                    .fromSerializer(new MeteredRedisSerializer(valueSerializer, meterRegistry, name))));
+            valueSerializers.put(name, valueSerializer);
+        }
+
+        // 创建 Redis 缓存管理器（L2），为不同缓存配置不同的序列化器
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(defaultConfig)  // 设置默认配置（用于简单类型）
-                .withCacheConfiguration("userProfile", profileConfig)  // userProfile 使用专用配置
-                .transactionAware()  // 支持事务
+                .withInitialCacheConfigurations(cacheConfigs)  // userProfile 使用专用配置，各缓存记录值大小
                 .build();
+        redisCacheManager.initializeCaches();
+
+        // 二级缓存管理器（事务支持在这一层统一处理）
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(
+                redisCacheManager, properties, valueSerializers, generations, circuitBreaker, redisTemplate,
+                listenerContainer, meterRegistry);
+        cacheManager.setTransactionAware(true);  // 支持事务
+        return cacheManager;
+    }
+
+    /**
+     * 带随机抖动的 TTL：base × (1 ± jitter)
+     */
+    private static RedisCacheWriter.TtlFunction jitteredTtl(Duration base, double jitter) {
+        if (jitter <= 0) {
+            return RedisCacheWriter.TtlFunction.just(base);
+        }
+        return (key, value) -> {
+            double factor = 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+            return Duration.ofMillis((long) (base.toMillis() * factor));
+        };
     }
 }
@@ -20,6 +20,8 @@ public class CorsConfig {
         config.addAllowedOriginPattern("*");
         config.addAllowedHeader("*");
         config.addAllowedMethod("*");
+        // 允许前端读取权限变更后下发的新 Token
+        config.addExposedHeader(SecurityFilter.REFRESHED_TOKEN_HEADER);
         config.setAllowCredentials(true);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
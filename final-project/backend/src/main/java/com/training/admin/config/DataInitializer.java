@@ -28,6 +28,8 @@ public class DataInitializer implements CommandLineRunner {
     private final UserRoleRepository userRoleRepository;
     private final RolePermissionRepository rolePermissionRepository;
     private final RoleMenuRepository roleMenuRepository;
+    private final PermissionClosureRepository permissionClosureRepository;
+    private final MenuClosureRepository menuClosureRepository;
     private final PasswordUtil passwordUtil;
     
     private static final String DEFAULT_PASSWORD = "password123";
@@ -35,6 +37,19 @@ public class DataInitializer implements CommandLineRunner {
     @Override
     public void run(String... args) {
         initDefaultData();
+        initClosureTables();
+    }
+    
+    /**
+     * 闭包表为空时（首次初始化或升级前的数据）按 parent_id 重建
+     */
+    private void initClosureTables() {
+        if (permissionClosureRepository.count() == 0 && permissionRepository.count() > 0) {
+            log.info("重建权限闭包表，链接数: {}", permissionClosureRepository.rebuild());
+        }
+        if (menuClosureRepository.count() == 0 && menuRepository.count() > 0) {
+            log.info("重建菜单闭包表，链接数: {}", menuClosureRepository.rebuild());
+        }
     }
     
     private void initDefaultData() {
@@ -0,0 +1,152 @@
+package com.training.admin.config;
+
+import com.training.admin.common.PermissionAuthenticationToken;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionOperations;
+import org.springframework.security.core.Authentication;
+
+import java.util.function.Supplier;
+
+/**
+ * @PreAuthorize 表达式处理器
+ *
+ * 默认的 hasAuthority 每次校验都会把全部权限复制成 HashSet 再判断；
+ * 当前用户为 {@link PermissionAuthenticationToken} 时，直接在其权限集合上做 O(1) 判断，
+ * 其他表达式（hasRole、isAuthenticated 等）仍交给默认实现。
+ */
+public class PermissionSetExpressionHandler extends DefaultMethodSecurityExpressionHandler {
+
+    @Override
+    public EvaluationContext createEvaluationContext(Supplier<Authentication> authentication, MethodInvocation mi) {
+        EvaluationContext ctx = super.createEvaluationContext(authentication, mi);
+        MethodSecurityExpressionOperations root = (MethodSecurityExpressionOperations) ctx.getRootObject().getValue();
+        ((StandardEvaluationContext) ctx).setRootObject(new PermissionSetExpressionRoot(root));
+        return ctx;
+    }
+
+    @Override
+    protected MethodSecurityExpressionOperations createSecurityExpressionRoot(Authentication authentication,
+                                                                             MethodInvocation invocation) {
+        return new PermissionSetExpressionRoot(super.createSecurityExpressionRoot(authentication, invocation));
+    }
+
+    /**
+     * 包装默认表达式根对象，仅替换权限判断
+     */
+    static class PermissionSetExpressionRoot implements MethodSecurityExpressionOperations {
+
+        private final MethodSecurityExpressionOperations delegate;
+
+        PermissionSetExpressionRoot(MethodSecurityExpressionOperations delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasAuthority(String authority) {
+            if (getAuthentication() instanceof PermissionAuthenticationToken token) {
+                return token.getPermissions().hasAuthority(authority);
+            }
+            return delegate.hasAuthority(authority);
+        }
+
+        @Override
+        public boolean hasAnyAuthority(String... authorities) {
+            if (getAuthentication() instanceof PermissionAuthenticationToken token) {
+                for (String authority : authorities) {
+                    if (token.getPermissions().hasAuthority(authority)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return delegate.hasAnyAuthority(authorities);
+        }
+
+        @Override
+        public Authentication getAuthentication() {
+            return delegate.getAuthentication();
+        }
+
+        public Object getPrincipal() {
+            return getAuthentication().getPrincipal();
+        }
+
+        @Override
+        public boolean hasRole(String role) {
+            return delegate.hasRole(role);
+        }
+
+        @Override
+        public boolean hasAnyRole(String... roles) {
+            return delegate.hasAnyRole(roles);
+        }
+
+        @Override
+        public boolean permitAll() {
+            return delegate.permitAll();
+        }
+
+        @Override
+        public boolean denyAll() {
+            return delegate.denyAll();
+        }
+
+        @Override
+        public boolean isAnonymous() {
+            return delegate.isAnonymous();
+        }
+
+        @Override
+        public boolean isAuthenticated() {
+            return delegate.isAuthenticated();
+        }
+
+        @Override
+        public boolean isRememberMe() {
+            return delegate.isRememberMe();
+        }
+
+        @Override
+        public boolean isFullyAuthenticated() {
+            return delegate.isFullyAuthenticated();
+        }
+
+        @Override
+        public boolean hasPermission(Object target, Object permission) {
+            return delegate.hasPermission(target, permission);
+        }
+
+        @Override
+        public boolean hasPermission(Object targetId, String targetType, Object permission) {
+            return delegate.hasPermission(targetId, targetType, permission);
+        }
+
+        @Override
+        public void setFilterObject(Object filterObject) {
+            delegate.setFilterObject(filterObject);
+        }
+
+        @Override
+        public Object getFilterObject() {
+            return delegate.getFilterObject();
+        }
+
+        @Override
+        public void setReturnObject(Object returnObject) {
+            delegate.setReturnObject(returnObject);
+        }
+
+        @Override
+        public Object getReturnObject() {
+            return delegate.getReturnObject();
+        }
+
+        @Override
+        public Object getThis() {
+            return delegate.getThis();
+        }
+    }
+}
@@ -3,12 +3,15 @@ package com.training.admin.config;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 /**
@@ -19,6 +22,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
  * 2. 配置 JWT 认证过滤器
  * 3. 禁用 Session（使用 JWT 无状态认证）
  * 4. 配置接口访问权限
+ * 5. 权限判断直接基于 PermissionSet（不在每次校验时复制权限列表）
  */
 @Configuration
 @EnableWebSecurity
@@ -36,10 +40,12 @@ public class SecurityConfig {
                 
                 // 配置请求授权
                 .authorizeHttpRequests(auth -> auth
-                        // 允许登录接口无需认证
-                        .requestMatchers("/api/auth/login").permitAll()
+                        // 允许登录、刷新令牌和退出接口无需认证（访问令牌过期后仍可刷新或退出）
+                        .requestMatchers("/api/auth/login", "/api/auth/refresh", "/api/auth/logout").permitAll()
                         // 允许错误页面访问
                         .requestMatchers("/error").permitAll()
+                        // 健康检查和就绪探针（负载均衡器调用，不返回详细信息）
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
                         // 其他所有接口都需要认证
                         .anyRequest().authenticated()
                 )
@@ -49,10 +55,21 @@ public class SecurityConfig {
                         session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
                 
+                // 未认证（Token 缺失或过期）返回 401，前端据此使用刷新令牌续期
+                .exceptionHandling(ex -> ex.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+                
                 // 添加自定义 JWT 过滤器（在 UsernamePasswordAuthenticationFilter 之前执行）
                 .addFilterBefore(securityFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
+
+    /**
+     * @PreAuthorize 表达式处理器：hasAuthority 直接在 PermissionSet 上做 O(1) 判断
+     */
+    @Bean
+    static MethodSecurityExpressionHandler methodSecurityExpressionHandler() {
+        return new PermissionSetExpressionHandler();
+    }
 }
 
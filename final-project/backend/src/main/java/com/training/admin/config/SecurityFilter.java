@@ -1,13 +1,20 @@
 package com.training.admin.config;
 
-import com.training.admin.util.JwtUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.admin.common.PermissionAuthenticationToken;
+import com.training.admin.common.Result;
+import com.training.admin.common.TokenClaims;
+import com.training.admin.service.PermissionCacheService;
+import com.training.admin.service.PermissionVersionService;
+import com.training.admin.service.TokenService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -15,22 +22,36 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- * Security Filter - 解析 JWT 并设置 Spring Security 上下文
+ * Security Filter - 解析 Token 并设置 Spring Security 上下文
  * 
  * 功能：
- * 1. 从请求头提取 JWT Token
- * 2. 解析 Token 获取用户名和权限列表
+ * 1. 从请求头提取 Token（JWT 或引用令牌）
+ * 2. 解析 Token 获取用户名和权限列表（JWT 只验签一次，结果按摘要缓存；引用令牌查本地缓存 -> Redis）
  * 3. 创建 Authentication 对象
  * 4. 设置到 SecurityContextHolder（供 @PreAuthorize 使用）
+ * 5. 用户权限版本落后时自动刷新权限，新 Token 通过 X-Refreshed-Token 响应头返回；
+ *    刷新失败时不沿用旧权限（可能刚被收回），返回 503 + Retry-After
  */
 @Component
 @RequiredArgsConstructor
 public class SecurityFilter extends OncePerRequestFilter {
 
-    private final JwtUtil jwtUtil;
+    /**
+     * 权限变更后下发新 Token 的响应头
+     */
+    public static final String REFRESHED_TOKEN_HEADER = "X-Refreshed-Token";
+
+    /**
+     * 权限刷新失败时建议客户端的重试间隔（秒）
+     */
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final TokenService tokenService;
+    private final PermissionVersionService permissionVersionService;
+    private final PermissionCacheService permissionCacheService;
+    private final ObjectMapper objectMapper;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -40,38 +61,98 @@ public class SecurityFilter extends OncePerRequestFilter {
         if (StringUtils.hasText(auth) && auth.startsWith("Bearer ")) {
             String token = auth.substring(7);
             
+            TokenClaims claims = null;
             try {
-                // 验证 Token 有效性
-                if (jwtUtil.validateToken(token)) {
-                    // 提取用户名和权限
-                    String username = jwtUtil.getUsernameFromToken(token);
-                    List<String> permissions = jwtUtil.getPermissionsFromToken(token);
-                    
-                    if (username != null) {
-                        // 将权限字符串转换为 Spring Security 的 GrantedAuthority
-                        List<SimpleGrantedAuthority> authorities = permissions.stream()
-                                .map(SimpleGrantedAuthority::new)
-                                .collect(Collectors.toList());
-                        
-                        // 创建 Authentication 对象
-                        UsernamePasswordAuthenticationToken authentication = 
-                                new UsernamePasswordAuthenticationToken(username, null, authorities);
-                        
-                        // 设置到 SecurityContextHolder（关键步骤！）
-                        SecurityContextHolder.getContext().setAuthentication(authentication);
-                        
-                        // 兼容旧代码：继续设置 request attribute
-                        request.setAttribute("currentUsername", username);
-                    }
+                // 一次解析得到用户名和权限（命中缓存时无需重复验签或访问 Redis）
+                claims = tokenService.resolve(token);
+                if (claims != null && claims.getUsername() != null) {
+                    // 权限版本落后时重新加载权限并下发新 Token（无需重新登录）
+                    claims = refreshIfStale(token, claims, response);
                 }
+            } catch (PermissionRefreshException e) {
+                // 已知权限过期但无法刷新：失败即拒绝，不按可能已被收回的旧权限鉴权
+                logger.warn("刷新用户权限失败: userId=" + e.userId, e.getCause());
+                writeUnavailable(response);
+                return;
             } catch (Exception e) {
                 // Token 解析失败，继续执行（不设置认证信息）
                 // Spring Security 会判断为未认证用户
+                claims = null;
+            }
+            
+            if (claims != null && claims.getUsername() != null) {
+                String username = claims.getUsername();
+                
+                // 创建 Authentication 对象（直接使用缓存的权限集合，不逐个创建 GrantedAuthority）
+                PermissionAuthenticationToken authentication = 
+                        new PermissionAuthenticationToken(username, claims.getPermissions());
+                
+                // 设置到 SecurityContextHolder（关键步骤！）
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+                
+                // 兼容旧代码：继续设置 request attribute
+                request.setAttribute("currentUsername", username);
             }
         }
         
         filterChain.doFilter(request, response);
     }
-}
 
+    /**
+     * 检查 Token 中的权限版本号，落后时：
+     * 1. 通过 PermissionCacheService 重新加载权限
+     * 2. JWT 签发新 Token（保持原过期时间），通过响应头 X-Refreshed-Token 返回给前端；
+     *    引用令牌在 Redis 中原地更新，令牌串不变
+     * 3. 本次请求即按新权限鉴权
+     *
+     * @return 刷新后的声明；Token 已失效（如引用令牌已吊销）时返回 null
+     * @throws PermissionRefreshException 版本已知落后但重新加载权限失败
+     */
+    private TokenClaims refreshIfStale(String token, TokenClaims claims, HttpServletResponse response) {
+        Long userId = claims.getUserId();
+        if (userId == null) {
+            return claims;
+        }
+        Long currentVersion = permissionVersionService.currentVersion(userId);
+        if (currentVersion == null || currentVersion == claims.getPermissionVersion()) {
+            return claims;
+        }
 
+        TokenService.Refreshed refreshed;
+        try {
+            List<String> permissionCodes = permissionCacheService.getUserPermissionCodes(userId);
+            refreshed = tokenService.refresh(token, claims, permissionCodes, currentVersion);
+        } catch (Exception e) {
+            throw new PermissionRefreshException(userId, e);
+        }
+        if (refreshed == null) {
+            return null;
+        }
+        if (refreshed.newToken() != null) {
+            response.setHeader(REFRESHED_TOKEN_HEADER, refreshed.newToken());
+        }
+        return refreshed.claims();
+    }
+
+    private void writeUnavailable(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getOutputStream(),
+                Result.error(HttpStatus.SERVICE_UNAVAILABLE.value(), "权限刷新失败，请稍后重试"));
+    }
+
+    /**
+     * 权限版本已知落后但刷新失败
+     */
+    private static final class PermissionRefreshException extends RuntimeException {
+
+        private final Long userId;
+
+        PermissionRefreshException(Long userId, Throwable cause) {
+            super(cause);
+            this.userId = userId;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.training.admin.controller;
 
 import com.training.admin.common.Result;
 import com.training.admin.dto.LoginDTO;
+import com.training.admin.dto.RefreshTokenDTO;
 import com.training.admin.service.AuthService;
 import com.training.admin.vo.LoginVO;
 import com.training.admin.vo.ProfileVO;
@@ -23,11 +24,25 @@ public class AuthController {
     private final AuthService authService;
     
     @PostMapping("/login")
-    public Result<LoginVO> login(@Validated @RequestBody LoginDTO loginDTO) {
-        LoginVO loginVO = authService.login(loginDTO);
+    public Result<LoginVO> login(@Validated @RequestBody LoginDTO loginDTO, HttpServletRequest request) {
+        LoginVO loginVO = authService.login(loginDTO, request.getRemoteAddr());
         return Result.success("登录成功", loginVO);
     }
 
+    @PostMapping("/refresh")
+    public Result<LoginVO> refresh(@Validated @RequestBody RefreshTokenDTO dto) {
+        return Result.success(authService.refresh(dto.getRefreshToken()));
+    }
+
+    @PostMapping("/logout")
+    public Result<Void> logout(HttpServletRequest request,
+                               @RequestBody(required = false) RefreshTokenDTO dto) {
+        String auth = request.getHeader("Authorization");
+        String token = auth != null && auth.startsWith("Bearer ") ? auth.substring(7) : null;
+        authService.logout(token, dto != null ? dto.getRefreshToken() : null);
+        return Result.success("已退出登录", null);
+    }
+
     @GetMapping("/profile")
     public Result<ProfileVO> profile(HttpServletRequest request) {
         String username = (String) request.getAttribute("currentUsername");
@@ -30,6 +30,12 @@ public class MenuController {
         return Result.success(menuService.tree(query));
     }
 
+    @GetMapping("/{id}/path")
+    @PreAuthorize("hasAuthority('sys:menu:list')")  // ⭐ API 权限保护
+    public Result<List<MenuVO>> path(@PathVariable Long id) {
+        return Result.success(menuService.path(id));
+    }
+
     @PostMapping
     @PreAuthorize("hasAuthority('sys:menu:add')")  // ⭐ API 权限保护
     public Result<MenuVO> create(@Validated @RequestBody MenuCreateDTO dto) {
@@ -33,6 +33,12 @@ public class PermissionController {
         return Result.success(permissionService.tree(query));
     }
 
+    @GetMapping("/{id}/path")
+    @PreAuthorize("hasAuthority('sys:permission:list')")  // ⭐ API 权限保护
+    public Result<List<PermissionVO>> path(@PathVariable Long id) {
+        return Result.success(permissionService.path(id));
+    }
+
     @PostMapping
     @PreAuthorize("hasAuthority('sys:permission:add')")  // ⭐ API 权限保护
     public Result<PermissionVO> create(@Validated @RequestBody PermissionCreateDTO dto) {
@@ -5,7 +5,6 @@ import com.training.admin.common.Result;
 import com.training.admin.dto.RoleCreateDTO;
 import com.training.admin.dto.RoleQueryDTO;
 import com.training.admin.dto.RoleUpdateDTO;
-import com.training.admin.service.PermissionCacheService;
 import com.training.admin.service.RoleService;
 import com.training.admin.vo.RoleVO;
 import lombok.RequiredArgsConstructor;
@@ -28,7 +27,6 @@ import java.util.Map;
 public class RoleController {
 
     private final RoleService roleService;
-    private final PermissionCacheService permissionCacheService;
 
     @GetMapping
     @PreAuthorize("hasAuthority('sys:role:list')")  // ⭐ API 权限保护
@@ -71,11 +69,9 @@ public class RoleController {
     @PostMapping("/{id}/permissions")
     @PreAuthorize("hasAuthority('sys:role:perm')")  // ⭐ API 权限保护 - 分配权限
     public Result<Map<String, Object>> savePermissions(@PathVariable Long id, @RequestBody List<Long> permIds) {
-        roleService.savePermissions(id, permIds);
-        
-        // 获取受影响用户并返回通知信息
-        List<Long> affectedUserIds = permissionCacheService.getAffectedUserIds(id);
-        PermissionChangeNotification notification = PermissionChangeNotification.rolePermissionChanged(id, affectedUserIds);
+        // 返回受影响用户数（不返回用户ID列表）
+        long affectedUserCount = roleService.savePermissions(id, permIds);
+        PermissionChangeNotification notification = PermissionChangeNotification.rolePermissionChanged(id, affectedUserCount);
         
         Map<String, Object> result = new HashMap<>();
         result.put("message", "保存成功");
@@ -0,0 +1,31 @@
+package com.training.admin.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.io.Serializable;
+
+/**
+ * 菜单闭包表：每对（祖先, 后代）一行，depth 为层级差（自身为 0）
+ */
+@Entity
+@Table(name = "sys_menu_closure")
+@Data
+@IdClass(MenuClosure.MenuClosureId.class)
+public class MenuClosure {
+    @Id
+    @Column(name = "ancestor_id", nullable = false)
+    private Long ancestorId;
+
+    @Id
+    @Column(name = "descendant_id", nullable = false)
+    private Long descendantId;
+
+    @Column(name = "depth", nullable = false)
+    private Integer depth;
+
+    @Data
+    public static class MenuClosureId implements Serializable {
+        private Long ancestorId;
+        private Long descendantId;
+    }
+}
@@ -0,0 +1,31 @@
+package com.training.admin.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.io.Serializable;
+
+/**
+ * 权限闭包表：每对（祖先, 后代）一行，depth 为层级差（自身为 0）
+ */
+@Entity
+@Table(name = "sys_permission_closure")
+@Data
+@IdClass(PermissionClosure.PermissionClosureId.class)
+public class PermissionClosure {
+    @Id
+    @Column(name = "ancestor_id", nullable = false)
+    private Long ancestorId;
+
+    @Id
+    @Column(name = "descendant_id", nullable = false)
+    private Long descendantId;
+
+    @Column(name = "depth", nullable = false)
+    private Integer depth;
+
+    @Data
+    public static class PermissionClosureId implements Serializable {
+        private Long ancestorId;
+        private Long descendantId;
+    }
+}
@@ -13,6 +13,14 @@ public class BusinessException extends RuntimeException {
         this.code = code;
     }
     
+    /**
+     * @param writableStackTrace 为 false 时不采集堆栈（高频、预期内的拒绝，处理器只记录消息）
+     */
+    protected BusinessException(Integer code, String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+        this.code = code;
+    }
+    
     public Integer getCode() {
         return code;
     }
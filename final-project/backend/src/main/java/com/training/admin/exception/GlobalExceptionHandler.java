@@ -3,6 +3,8 @@ package com.training.admin.exception;
 import com.training.admin.common.Result;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -36,6 +38,18 @@ public class GlobalExceptionHandler {
         return Result.error(e.getCode(), e.getMessage());
     }
     
+    /**
+     * 稍后重试类异常处理（限流、资源饱和）
+     * 以真实的 HTTP 状态码（429/503）返回并带 Retry-After，客户端和负载均衡据此退避
+     */
+    @ExceptionHandler(RetryLaterException.class)
+    public ResponseEntity<Result<?>> handleRetryLaterException(RetryLaterException e) {
+        log.warn("请求被拒绝，稍后重试: code={}, message={}", e.getCode(), e.getMessage());
+        return ResponseEntity.status(e.getCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Result.error(e.getCode(), e.getMessage()));
+    }
+    
     /**
      * 参数校验异常处理
      * 处理 @Valid 和 @Validated 注解的校验失败
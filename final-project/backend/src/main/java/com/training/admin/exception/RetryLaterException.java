@@ -0,0 +1,24 @@
+package com.training.admin.exception;
+
+/**
+ * 需要客户端稍后重试的业务异常（限流、资源饱和）
+ * 与普通业务异常不同，GlobalExceptionHandler 会以 code 作为 HTTP 状态码返回，并带上 Retry-After 响应头，
+ * 负载均衡和客户端据此退避，而不是把它当作成功响应。
+ * 限流拒绝在攻击时是高频路径，不采集堆栈
+ */
+public class RetryLaterException extends BusinessException {
+
+    /**
+     * 建议的重试间隔（秒）
+     */
+    private final long retryAfterSeconds;
+
+    public RetryLaterException(Integer code, String message, long retryAfterSeconds) {
+        super(code, message, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
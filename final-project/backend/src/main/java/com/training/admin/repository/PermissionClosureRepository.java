@@ -0,0 +1,94 @@
+package com.training.admin.repository;
+
+import com.training.admin.entity.PermissionClosure;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 权限闭包表（sys_permission_closure），子树、祖先路径和深度查询均为一次索引查询
+ */
+public interface PermissionClosureRepository extends JpaRepository<PermissionClosure, PermissionClosure.PermissionClosureId> {
+
+    /**
+     * 子树中的权限ID（包含自身，按深度升序）
+     */
+    @Query("select c.descendantId from PermissionClosure c where c.ancestorId = :id order by c.depth")
+    List<Long> findSubtreeIds(@Param("id") Long id);
+
+    /**
+     * 祖先路径（从根到自身）
+     */
+    @Query("select c.ancestorId from PermissionClosure c where c.descendantId = :id order by c.depth desc")
+    List<Long> findAncestorPath(@Param("id") Long id);
+
+    /**
+     * 深度（根为 0），不存在时返回 null
+     */
+    @Query("select max(c.depth) from PermissionClosure c where c.descendantId = :id")
+    Integer findDepth(@Param("id") Long id);
+
+    /**
+     * 直接子权限数
+     */
+    @Query("select count(c) from PermissionClosure c where c.ancestorId = :id and c.depth = 1")
+    long countChildren(@Param("id") Long id);
+
+    /**
+     * descendantId 是否在 ancestorId 的子树中（包含自身），用于移动时的环检测
+     */
+    boolean existsByAncestorIdAndDescendantId(Long ancestorId, Long descendantId);
+
+    /**
+     * 新增节点：复制父节点的全部祖先链接（深度 +1），并加入自身链接；parentId 为 null 时只有自身链接
+     */
+    @Modifying
+    @Query(value = "insert into sys_permission_closure (ancestor_id, descendant_id, depth) " +
+            "select ancestor_id, :id, depth + 1 from sys_permission_closure where descendant_id = :parentId " +
+            "union all select :id, :id, 0", nativeQuery = true)
+    int insertNode(@Param("id") Long id, @Param("parentId") Long parentId);
+
+    /**
+     * 移动子树第一步：删除子树外的祖先到子树内节点的链接（子树内部链接保留）
+     */
+    @Modifying
+    @Query(value = "delete a from sys_permission_closure a " +
+            "join sys_permission_closure d on a.descendant_id = d.descendant_id " +
+            "left join sys_permission_closure x on x.ancestor_id = d.ancestor_id and x.descendant_id = a.ancestor_id " +
+            "where d.ancestor_id = :id and x.ancestor_id is null", nativeQuery = true)
+    int detachSubtree(@Param("id") Long id);
+
+    /**
+     * 移动子树第二步：新父节点的每个祖先（含自身）与子树每个节点建立链接
+     */
+    @Modifying
+    @Query(value = "insert into sys_permission_closure (ancestor_id, descendant_id, depth) " +
+            "select s.ancestor_id, t.descendant_id, s.depth + t.depth + 1 " +
+            "from sys_permission_closure s join sys_permission_closure t on t.ancestor_id = :id " +
+            "where s.descendant_id = :parentId", nativeQuery = true)
+    int attachSubtree(@Param("id") Long id, @Param("parentId") Long parentId);
+
+    /**
+     * 删除指定节点的全部链接（批量删除子树时调用）
+     */
+    @Modifying
+    @Query("delete from PermissionClosure c where c.descendantId in :ids")
+    int deleteByDescendantIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 按 parent_id 重建闭包表（递归 CTE），用于闭包表为空时的初始化
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "insert into sys_permission_closure (ancestor_id, descendant_id, depth) " +
+            "with recursive t (ancestor_id, descendant_id, depth) as (" +
+            "select id, id, 0 from sys_permission " +
+            "union all select t.ancestor_id, n.id, t.depth + 1 from t join sys_permission n on n.parent_id = t.descendant_id) " +
+            "select ancestor_id, descendant_id, depth from t", nativeQuery = true)
+    int rebuild();
+}
@@ -2,11 +2,22 @@ package com.training.admin.repository;
 
 import com.training.admin.entity.RoleMenu;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface RoleMenuRepository extends JpaRepository<RoleMenu, Long> {
     List<RoleMenu> findByRoleIdIn(List<Long> roleIds);
+
+    /**
+     * 批量删除指定菜单的角色关联（删除菜单子树时调用）
+     */
+    @Modifying
+    @Query("delete from RoleMenu rm where rm.menuId in :menuIds")
+    int deleteByMenuIdIn(@Param("menuIds") Collection<Long> menuIds);
 }
 
 
@@ -3,11 +3,37 @@ package com.training.admin.repository;
 import com.training.admin.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
     Optional<User> findByUsername(String username);
 
     boolean existsByUsername(String username);
+
+    /**
+     * 按用户名批量查询（缓存预热）
+     */
+    List<User> findByUsernameIn(Collection<String> usernames);
+
+    /**
+     * 批量查询用户名（一次查询，避免逐个 findById）
+     */
+    @Query("select u.username from User u where u.id in :ids")
+    List<String> findUsernamesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 仅更新密码哈希（登录时按新的 BCrypt 强度重新哈希），旧哈希不匹配时不更新
+     */
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :newPassword where u.id = :id and u.password = :oldPassword")
+    int updatePassword(@Param("id") Long id, @Param("oldPassword") String oldPassword,
+                       @Param("newPassword") String newPassword);
 }
 
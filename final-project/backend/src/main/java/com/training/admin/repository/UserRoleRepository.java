@@ -1,13 +1,30 @@
 package com.training.admin.repository;
 
 import com.training.admin.entity.UserRole;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface UserRoleRepository extends JpaRepository<UserRole, Long> {
     List<UserRole> findByUserId(Long userId);
     List<UserRole> findByRoleId(Long roleId);
+
+    /**
+     * 游标分页查询拥有任一指定角色的用户ID（只查 ID，去重，按用户ID升序，从 afterUserId 之后开始）
+     */
+    @Query("select distinct ur.userId from UserRole ur where ur.roleId in :roleIds and ur.userId > :afterUserId order by ur.userId")
+    List<Long> findUserIdsByRoleIdIn(@Param("roleIds") Collection<Long> roleIds,
+                                     @Param("afterUserId") Long afterUserId, Pageable pageable);
+
+    /**
+     * 拥有任一指定角色的用户数
+     */
+    @Query("select count(distinct ur.userId) from UserRole ur where ur.roleId in :roleIds")
+    long countUsersByRoleIdIn(@Param("roleIds") Collection<Long> roleIds);
 }
 
 
@@ -0,0 +1,67 @@
+package com.training.admin.service;
+
+import com.training.admin.cache.RedisCircuitBreaker;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 最近活跃用户记录（用于节点启动时的缓存预热）
+ *
+ * 登录和续期时把用户名写入 Redis 有序集合 auth:active-users（分数为时间戳），
+ * 按概率清理超出活跃窗口的成员，集合大小与窗口内的活跃用户数成正比。
+ * 记录经过熔断器，失败或 Redis 不可用时跳过，不影响登录。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ActiveUserTracker {
+
+    private static final String KEY = "auth:active-users";
+
+    /**
+     * 每次记录时执行过期清理的概率
+     */
+    private static final double TRIM_PROBABILITY = 0.01;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    /**
+     * 活跃窗口：超过该时间未登录/续期的用户不再预热
+     */
+    @Value("${app.warmup.active-window:7d}")
+    private Duration activeWindow;
+
+    /**
+     * 记录用户活跃
+     */
+    public void touch(String username) {
+        long now = System.currentTimeMillis();
+        circuitBreaker.run(() -> {
+            redisTemplate.opsForZSet().add(KEY, username, now);
+            if (ThreadLocalRandom.current().nextDouble() < TRIM_PROBABILITY) {
+                redisTemplate.opsForZSet().removeRangeByScore(KEY, 0, now - activeWindow.toMillis());
+            }
+        }, () -> log.debug("未记录活跃用户 {}（Redis 不可用）", username));
+    }
+
+    /**
+     * 最近活跃的用户名（按最近活跃时间倒序）
+     *
+     * @param limit 最大数量
+     */
+    public List<String> recentUsernames(int limit) {
+        long now = System.currentTimeMillis();
+        Set<String> usernames = redisTemplate.opsForZSet()
+                .reverseRangeByScore(KEY, now - activeWindow.toMillis(), Double.MAX_VALUE, 0, limit);
+        return usernames == null ? List.of() : List.copyOf(usernames);
+    }
+}
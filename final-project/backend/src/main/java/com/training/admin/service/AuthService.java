@@ -2,18 +2,10 @@ package com.training.admin.service;
 
 import com.training.admin.dto.LoginDTO;
 import com.training.admin.entity.User;
-import com.training.admin.entity.UserRole;
-import com.training.admin.entity.RolePermission;
-import com.training.admin.entity.RoleMenu;
 import com.training.admin.exception.BusinessException;
 import com.training.admin.repository.UserRepository;
-import com.training.admin.repository.UserRoleRepository;
-import com.training.admin.repository.RolePermissionRepository;
-import com.training.admin.repository.RoleMenuRepository;
 import com.training.admin.service.PermissionCacheService;
 import com.training.admin.service.MenuService;
-import com.training.admin.util.JwtUtil;
-import com.training.admin.util.PasswordUtil;
 import com.training.admin.vo.LoginVO;
 import com.training.admin.vo.ProfileVO;
 import lombok.RequiredArgsConstructor;
@@ -21,29 +13,32 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class AuthService {
     
     private final UserRepository userRepository;
-    private final UserRoleRepository userRoleRepository;
-    private final RolePermissionRepository rolePermissionRepository;
-    private final RoleMenuRepository roleMenuRepository;
     private final PermissionCacheService permissionCacheService;
+    private final PermissionVersionService permissionVersionService;
     private final MenuService menuService;
-    private final PasswordUtil passwordUtil;
-    private final JwtUtil jwtUtil;
+    private final PasswordHashService passwordHashService;
+    private final LoginRateLimiter loginRateLimiter;
+    private final TokenService tokenService;
+    private final RefreshTokenService refreshTokenService;
+    private final ActiveUserTracker activeUserTracker;
+    private final RbacGraph rbacGraph;
     
-    public LoginVO login(LoginDTO loginDTO) {
+    public LoginVO login(LoginDTO loginDTO, String clientIp) {
+        // 限流：按用户名和 IP 检查，被拦截的请求不查库、不做 BCrypt 校验
+        loginRateLimiter.acquire(loginDTO.getUsername(), clientIp);
+
         // 查找用户
         User user = userRepository.findByUsername(loginDTO.getUsername())
                 .orElseThrow(() -> new BusinessException(401, "用户名或密码错误"));
         
-        // 验证密码
-        if (!passwordUtil.matches(loginDTO.getPassword(), user.getPassword())) {
+        // 验证密码（在独立的哈希线程池中执行，繁忙时返回 503）
+        if (!passwordHashService.matches(loginDTO.getPassword(), user.getPassword())) {
             throw new BusinessException(401, "用户名或密码错误");
         }
         
@@ -51,22 +46,75 @@ public class AuthService {
         if (user.getStatus() == 0) {
             throw new BusinessException(403, "用户已被禁用");
         }
+
+        // BCrypt 强度调整后透明升级旧密码哈希
+        passwordHashService.rehashIfNeeded(user, loginDTO.getPassword());
         
-        // 获取用户权限编码列表（用于生成 JWT）⭐
-        // 通过 PermissionCacheService 调用，确保缓存生效
-        List<String> permissionCodes = permissionCacheService.getUserPermissionCodes(user.getId());
-        
-        // 生成 Token（包含权限列表）⭐
-        String token = jwtUtil.generateToken(user.getUsername(), permissionCodes);
+        // 生成 Token（包含权限列表和权限版本号，类型由 auth.token-type 决定）⭐
+        // 权限编码通过 PermissionCacheService 获取，确保缓存生效
+        String token = issueAccessToken(user.getId(), user.getUsername());
         
         // 返回结果
         LoginVO loginVO = new LoginVO();
         loginVO.setToken(token);
+        loginVO.setRefreshToken(refreshTokenService.issue(user.getId(), user.getUsername()));
         loginVO.setUsername(user.getUsername());
         loginVO.setNickname(user.getNickname());
         
+        // 记录活跃用户（节点启动时优先预热）
+        activeUserTracker.touch(user.getUsername());
         return loginVO;
     }
+
+    /**
+     * 使用刷新令牌换取新的访问令牌（刷新令牌同时轮换）
+     * 不做密码校验，权限编码走 PermissionCacheService 缓存
+     */
+    public LoginVO refresh(String refreshToken) {
+        RefreshTokenService.Rotated rotated = refreshTokenService.rotate(refreshToken);
+
+        // 按主键检查用户状态，被禁用或删除的用户不能续期
+        User user = userRepository.findById(rotated.userId())
+                .filter(u -> u.getStatus() != 0)
+                .orElse(null);
+        if (user == null) {
+            refreshTokenService.revoke(rotated.refreshToken());
+            throw new BusinessException(401, "登录已过期，请重新登录");
+        }
+
+        LoginVO loginVO = new LoginVO();
+        loginVO.setToken(issueAccessToken(user.getId(), user.getUsername()));
+        loginVO.setRefreshToken(rotated.refreshToken());
+        loginVO.setUsername(user.getUsername());
+        loginVO.setNickname(user.getNickname());
+        activeUserTracker.touch(user.getUsername());
+        return loginVO;
+    }
+
+    /**
+     * 注销：吊销引用令牌（JWT 为无状态 Token，由前端丢弃）和刷新令牌家族
+     */
+    public void logout(String token, String refreshToken) {
+        if (token != null) {
+            tokenService.revoke(token);
+        }
+        if (refreshToken != null) {
+            refreshTokenService.revoke(refreshToken);
+        }
+    }
+
+    /**
+     * 签发访问令牌：先读权限版本号再读权限编码（与 SecurityFilter 刷新时的顺序一致）
+     * 两次读取之间发生权限变更时 Token 携带旧版本号，下次请求即被刷新；
+     * 顺序相反时旧权限会与新版本号一起写入 Token，SecurityFilter 不再刷新，旧权限一直保留到 Token 过期
+     */
+    private String issueAccessToken(Long userId, String username) {
+        Long permissionVersion = permissionVersionService.currentVersion(userId);
+        List<String> permissionCodes = permissionCacheService.getUserPermissionCodes(userId);
+        return tokenService.issue(userId, username, permissionCodes,
+                permissionVersion != null ? permissionVersion : 0L);
+    }
+
     
     /**
      * 获取用户个人信息（包含角色、权限、菜单）
@@ -74,31 +122,28 @@ public class AuthService {
      * 
      * 注意：此方法从 Controller 调用，会经过 AOP 代理，缓存会生效
      */
-    @Cacheable(value = "userProfile", key = "#username")
+    @Cacheable(value = "userProfile", key = "#username", sync = true)
     public ProfileVO profile(String username) {
-        User user = userRepository.findByUsername(username)
+        // 授权图已加载且已应用集群内全部变更时，用户、角色、权限和菜单都从内存获取
+        User user = (rbacGraph.upToDate() ? rbacGraph.findUser(username) : userRepository.findByUsername(username))
                 .orElseThrow(() -> new BusinessException(404, "用户不存在"));
+        return buildProfile(user);
+    }
 
-        List<UserRole> userRoles = userRoleRepository.findByUserId(user.getId());
-        List<Long> roleIds = userRoles.stream().map(UserRole::getRoleId).toList();
-
-        List<RolePermission> rolePerms = rolePermissionRepository.findByRoleIdIn(roleIds);
-        Set<Long> permIds = rolePerms.stream().map(RolePermission::getPermissionId).collect(Collectors.toSet());
-
-        List<RoleMenu> roleMenus = roleMenuRepository.findByRoleIdIn(roleIds);
-        Set<Long> menuIds = roleMenus.stream().map(RoleMenu::getMenuId).collect(Collectors.toSet());
+    /**
+     * 构建用户个人信息（不经过 userProfile 缓存，缓存预热时批量调用）
+     * 权限和菜单按角色组合签名缓存，拥有相同角色组合的用户共用一份
+     */
+    public ProfileVO buildProfile(User user) {
+        List<Long> roleIds = permissionCacheService.getSortedRoleIds(user.getId());
+        String signature = PermissionCacheService.roleSignature(roleIds);
 
         ProfileVO vo = new ProfileVO();
         vo.setUsername(user.getUsername());
         vo.setNickname(user.getNickname());
         vo.setRoles(roleIds.stream().map(String::valueOf).toList());
-        
-        // 使用 PermissionCacheService 获取权限编码（确保缓存生效）
-        List<String> permissionCodes = permissionCacheService.getUserPermissionCodes(user.getId());
-        vo.setPermissions(permissionCodes);
-        
-        vo.setMenus(menuService.treeByIds(menuIds.stream().toList()));
+        vo.setPermissions(roleIds.isEmpty() ? List.of() : permissionCacheService.getPermissionCodesByRoles(signature, roleIds));
+        vo.setMenus(menuService.treeByRoles(signature, roleIds));
         return vo;
     }
 }
-
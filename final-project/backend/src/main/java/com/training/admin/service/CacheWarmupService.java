@@ -0,0 +1,172 @@
+package com.training.admin.service;
+
+import com.training.admin.entity.User;
+import com.training.admin.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 节点启动时的缓存预热
+ *
+ * 新节点 L1 为空，首批请求会逐个从 MySQL 重建用户的权限和个人信息。启动时先为最近活跃的用户（ActiveUserTracker）预热：
+ * 1. 批量查询用户（一次查询）
+ * 2. 在有界线程池中并行处理：用户角色走 @Cacheable 的 getUserRoleIds（授权图或租约保护下查库），
+ *    每个新出现的角色组合计算一次权限集合和菜单树，个人信息通过 Cache.get(key, loader) 原子地取或构建
+ * 所有写入都经过与请求相同的缓存加载路径（单飞、租约、加载期间被清除时丢弃结果），
+ * 不会用预热开始前读到的数据覆盖其他节点或请求写入的新值；已在 L2 中的条目只回填 L1，不重新计算。
+ *
+ * 就绪控制：ApplicationRunner 执行完成前 Spring Boot 不会发布 ReadinessState.ACCEPTING_TRAFFIC，
+ * 因此 /actuator/health/readiness 在预热完成或超时（timeout）后才返回 UP；超时后预热在后台继续。
+ *
+ * 指标：cache.warmup.time / cache.warmup.entries（按 cache 标签）
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CacheWarmupService implements ApplicationRunner {
+
+    /**
+     * 每个并行任务处理的用户数
+     */
+    private static final int CHUNK_SIZE = 100;
+
+    private final ActiveUserTracker activeUserTracker;
+    private final UserRepository userRepository;
+    private final PermissionCacheService permissionCacheService;
+    private final MenuService menuService;
+    private final AuthService authService;
+    private final CacheManager cacheManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.warmup.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 最多预热的用户数
+     */
+    @Value("${app.warmup.max-users:5000}")
+    private int maxUsers;
+
+    /**
+     * 并行构建个人信息的线程数
+     */
+    @Value("${app.warmup.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * 就绪等待的最长时间，超时后节点就绪、预热在后台继续
+     */
+    @Value("${app.warmup.timeout:30s}")
+    private Duration timeout;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        CompletableFuture<Void> warmup = CompletableFuture.runAsync(this::warmUp, runnable -> {
+            Thread t = new Thread(runnable, "cache-warmup");
+            t.setDaemon(true);
+            t.start();
+        });
+        try {
+            warmup.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("缓存预热超过 {}，节点先行就绪，预热在后台继续", timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("缓存预热失败: {}", e.getMessage());
+        }
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        List<String> usernames = activeUserTracker.recentUsernames(maxUsers);
+        if (usernames.isEmpty()) {
+            log.info("无最近活跃用户，跳过缓存预热");
+            return;
+        }
+
+        // 1. 批量加载用户
+        List<User> users = userRepository.findByUsernameIn(usernames).stream()
+                .filter(u -> u.getStatus() == null || u.getStatus() != 0)
+                .toList();
+
+        // 2. 并行预热用户角色、角色组合的权限集合和菜单树、个人信息
+        Cache profiles = cacheManager.getCache("userProfile");
+        Set<String> combinations = ConcurrentHashMap.newKeySet();
+        AtomicInteger profileCount = new AtomicInteger();
+        List<List<User>> chunks = new ArrayList<>();
+        for (int i = 0; i < users.size(); i += CHUNK_SIZE) {
+            chunks.add(users.subList(i, Math.min(i + CHUNK_SIZE, users.size())));
+        }
+        ThreadPoolExecutor executor = newExecutor(chunks.size());
+        try {
+            CompletableFuture.allOf(chunks.stream()
+                    .map(chunk -> CompletableFuture.runAsync(() -> {
+                        for (User user : chunk) {
+                            warmUp(user, profiles, combinations);
+                            profileCount.incrementAndGet();
+                        }
+                    }, executor))
+                    .toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        meterRegistry.timer("cache.warmup.time").record(elapsed, TimeUnit.NANOSECONDS);
+        recordEntries("userRoles", users.size());
+        recordEntries("permissionSets", combinations.size());
+        recordEntries("menuTrees", combinations.size());
+        recordEntries("userProfile", profileCount.get());
+        log.info("缓存预热完成，耗时 {} ms：用户 {}，角色组合 {}，个人信息 {}",
+                TimeUnit.NANOSECONDS.toMillis(elapsed), users.size(), combinations.size(), profileCount.get());
+    }
+
+    private void warmUp(User user, Cache profiles, Set<String> combinations) {
+        List<Long> roleIds = permissionCacheService.getSortedRoleIds(user.getId());
+        String signature = PermissionCacheService.roleSignature(roleIds);
+        // 角色权限按角色缓存、组合按签名缓存：每个组合只计算一次
+        if (!roleIds.isEmpty() && combinations.add(signature)) {
+            permissionCacheService.getPermissionCodesByRoles(signature, roleIds);
+            menuService.treeByRoles(signature, roleIds);
+        }
+        profiles.get(user.getUsername(), () -> authService.buildProfile(user));
+    }
+
+    private ThreadPoolExecutor newExecutor(int tasks) {
+        AtomicInteger seq = new AtomicInteger();
+        return new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(tasks, 1)),
+                r -> {
+                    Thread t = new Thread(r, "cache-warmup-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    private void recordEntries(String cacheName, int count) {
+        meterRegistry.counter("cache.warmup.entries", "cache", cacheName).increment(count);
+    }
+}
@@ -0,0 +1,187 @@
+package com.training.admin.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.training.admin.cache.RedisCircuitBreaker;
+import com.training.admin.exception.RetryLaterException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 登录限流（防暴力破解 / 撞库）
+ *
+ * 按用户名和客户端 IP 两个维度限流，在查询数据库和 BCrypt 校验之前执行，被拦截的请求几乎没有开销。
+ *
+ * 1. 本地令牌桶：每个 key 一个 GCRA 令牌桶（一个 AtomicLong + CAS，无锁），
+ *    桶保存在 Caffeine 中（内部分段的并发哈希表，长时间不用自动淘汰）
+ * 2. Redis 滑动窗口（可选，集群共享计数）：ZSET + Lua 脚本原子完成清理、计数、记录，
+ *    Redis 拒绝时退还本地令牌（请求并未放行），Redis 不可用（失败或熔断打开）时只依赖本地令牌桶
+ * 被拒绝的请求返回 HTTP 429 + Retry-After
+ */
+@Service
+@RequiredArgsConstructor
+public class LoginRateLimiter {
+
+    private static final String REDIS_KEY_PREFIX = "auth:login:limit:";
+
+    /**
+     * KEYS[1]=窗口 key，ARGV[1]=当前毫秒时间，ARGV[2]=窗口长度（毫秒），ARGV[3]=窗口内允许次数，ARGV[4]=本次请求的唯一成员
+     */
+    private static final DefaultRedisScript<Long> SLIDING_WINDOW_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, tonumber(ARGV[1]) - tonumber(ARGV[2]))
+            if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[3]) then
+                return 0
+            end
+            redis.call('ZADD', KEYS[1], ARGV[1], ARGV[4])
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            return 1
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 每个用户名的桶容量（突发次数）和补满周期
+     */
+    @Value("${app.login-limit.username.capacity:5}")
+    private int usernameCapacity;
+
+    @Value("${app.login-limit.username.period:1m}")
+    private Duration usernamePeriod;
+
+    /**
+     * 每个 IP 的桶容量和补满周期
+     */
+    @Value("${app.login-limit.ip.capacity:20}")
+    private int ipCapacity;
+
+    @Value("${app.login-limit.ip.period:1m}")
+    private Duration ipPeriod;
+
+    /**
+     * 本地最多跟踪的 key 数量
+     */
+    @Value("${app.login-limit.max-keys:100000}")
+    private long maxKeys;
+
+    /**
+     * 是否启用 Redis 滑动窗口（集群共享计数，窗口长度和次数与本地配置相同）
+     */
+    @Value("${app.login-limit.redis.enabled:false}")
+    private boolean redisEnabled;
+
+    private Cache<String, TokenBucket> buckets;
+    private Counter rejectedByUsername;
+    private Counter rejectedByIp;
+
+    @PostConstruct
+    public void init() {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(usernamePeriod.compareTo(ipPeriod) > 0 ? usernamePeriod : ipPeriod)
+                .build();
+        this.rejectedByUsername = Counter.builder("login.limit.rejected").tag("key", "username")
+                .description("被限流拒绝的登录请求").register(meterRegistry);
+        this.rejectedByIp = Counter.builder("login.limit.rejected").tag("key", "ip")
+                .description("被限流拒绝的登录请求").register(meterRegistry);
+    }
+
+    /**
+     * 检查并消耗一次登录尝试
+     *
+     * @throws RetryLaterException 429：尝试过于频繁
+     */
+    public void acquire(String username, String clientIp) {
+        if (clientIp != null && !tryAcquire("ip:" + clientIp, ipCapacity, ipPeriod)) {
+            rejectedByIp.increment();
+            throw tooManyAttempts(ipCapacity, ipPeriod);
+        }
+        if (username != null && !tryAcquire("u:" + username, usernameCapacity, usernamePeriod)) {
+            rejectedByUsername.increment();
+            throw tooManyAttempts(usernameCapacity, usernamePeriod);
+        }
+    }
+
+    private boolean tryAcquire(String key, int capacity, Duration period) {
+        long now = System.nanoTime();
+        long emissionInterval = period.toNanos() / capacity;
+        TokenBucket bucket = buckets.get(key, k -> new TokenBucket(now));
+        if (!bucket.tryAcquire(now, emissionInterval, period.toNanos())) {
+            return false;
+        }
+        if (redisEnabled && !tryAcquireRedis(key, capacity, period)) {
+            // 集群计数已满：本次请求被拒绝，退还本地令牌，避免本地桶被未放行的请求耗尽
+            bucket.release(emissionInterval);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 429，Retry-After 为补充一个令牌的时间
+     */
+    private static RetryLaterException tooManyAttempts(int capacity, Duration period) {
+        long retryAfter = Math.max(1, (period.toSeconds() + capacity - 1) / capacity);
+        return new RetryLaterException(429, "登录尝试过于频繁，请稍后再试", retryAfter);
+    }
+
+    private boolean tryAcquireRedis(String key, int capacity, Duration period) {
+        long now = System.currentTimeMillis();
+        String member = now + ":" + ThreadLocalRandom.current().nextLong();
+        // Redis 不可用（失败或熔断打开）时只依赖本地令牌桶，不影响正常登录
+        return circuitBreaker.call(() -> {
+            Long allowed = redisTemplate.execute(SLIDING_WINDOW_SCRIPT, List.of(REDIS_KEY_PREFIX + key),
+                    String.valueOf(now), String.valueOf(period.toMillis()), String.valueOf(capacity), member);
+            return allowed == null || allowed == 1L;
+        }, () -> Boolean.TRUE);
+    }
+
+    /**
+     * GCRA 令牌桶：只保存"理论到达时间"（TAT），一次 CAS 完成补充和消耗
+     */
+    static final class TokenBucket {
+
+        private final AtomicLong tat;
+
+        TokenBucket(long now) {
+            this.tat = new AtomicLong(now);
+        }
+
+        /**
+         * @param now                当前时间（纳秒）
+         * @param emissionInterval   补充一个令牌的间隔（纳秒）
+         * @param burstTolerance     桶容量对应的时间（纳秒）
+         */
+        boolean tryAcquire(long now, long emissionInterval, long burstTolerance) {
+            while (true) {
+                long current = tat.get();
+                long newTat = (current - now > 0 ? current : now) + emissionInterval;
+                if (newTat - now > burstTolerance) {
+                    return false;
+                }
+                if (tat.compareAndSet(current, newTat)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 退还一次 tryAcquire 成功消耗的令牌
+         */
+        void release(long emissionInterval) {
+            tat.addAndGet(-emissionInterval);
+        }
+    }
+}
@@ -5,10 +5,16 @@ import com.training.admin.dto.MenuQueryDTO;
 import com.training.admin.dto.MenuUpdateDTO;
 import com.training.admin.entity.Menu;
 import com.training.admin.exception.BusinessException;
+import com.training.admin.entity.RoleMenu;
+import com.training.admin.repository.MenuClosureRepository;
 import com.training.admin.repository.MenuRepository;
+import com.training.admin.repository.RoleMenuRepository;
 import com.training.admin.vo.MenuVO;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
@@ -20,6 +26,16 @@ import java.util.stream.Collectors;
 public class MenuService {
 
     private final MenuRepository menuRepository;
+    private final RoleMenuRepository roleMenuRepository;
+    private final MenuClosureRepository menuClosureRepository;
+    private final RbacGraph rbacGraph;
+
+    /**
+     * 菜单树快照：只按授权图的菜单修订号失效（菜单写操作和角色菜单变更都会记录 MENU/ROLE 变更），下次查询时重新加载。
+     * 修订号在提交后、menuTrees 清除之前递增（RbacGraph.changed），清除后回源的请求一定看到新快照；
+     * 其他节点的变更通过授权图通知和集群修订号发现。
+     */
+    private volatile MenuTreeSnapshot treeSnapshot;
 
     public List<MenuVO> tree(MenuQueryDTO query) {
         List<Menu> all = menuRepository.findAll();
@@ -57,8 +73,27 @@ public class MenuService {
         if (ids == null || ids.isEmpty()) {
             return List.of();
         }
-        List<Menu> all = menuRepository.findAllById(ids);
-        List<Menu> sorted = all.stream()
+        return buildTree(menuRepository.findAllById(ids));
+    }
+
+    /**
+     * 菜单的祖先路径（从根到自身，用于面包屑导航）：闭包表一次查询得到路径，再按 ID 批量加载
+     */
+    public List<MenuVO> path(Long id) {
+        List<Long> ids = menuClosureRepository.findAncestorPath(id);
+        if (ids.isEmpty()) {
+            throw new BusinessException(404, "菜单不存在");
+        }
+        Map<Long, Menu> found = menuRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Menu::getId, m -> m));
+        return ids.stream().map(found::get).filter(Objects::nonNull).map(MenuService::toVO).toList();
+    }
+
+    /**
+     * 按排序号和ID排序后组装菜单树（父菜单不在列表中的作为根节点）
+     */
+    public List<MenuVO> buildTree(List<Menu> menus) {
+        List<Menu> sorted = menus.stream()
                 .sorted(java.util.Comparator.comparing(Menu::getSort, java.util.Comparator.nullsLast(Integer::compareTo))
                         .thenComparing(Menu::getId))
                 .toList();
@@ -80,10 +115,38 @@ public class MenuService {
         return roots;
     }
 
+    /**
+     * 获取角色组合的菜单树（按角色组合签名缓存，拥有相同角色组合的用户共用一份）
+     * 由菜单树快照中预先组装的角色菜单树有序合并得到，不访问数据库
+     * 
+     * @param signature 角色组合签名（PermissionCacheService.roleSignature）
+     * @param roleIds   角色ID列表
+     * @return 菜单树
+     */
+    @Cacheable(value = "menuTrees", key = "#signature", sync = true)
+    public List<MenuVO> treeByRoles(String signature, List<Long> roleIds) {
+        if (roleIds == null || roleIds.isEmpty()) {
+            return List.of();
+        }
+        return snapshot().treeOf(roleIds);
+    }
+
+    /**
+     * 清除所有角色组合的菜单树缓存
+     * 菜单或角色菜单变更时调用（条目数与角色组合数成正比，与用户数无关）；
+     * 调用方需先记录授权图变更（RbacGraph.changed），菜单树快照随修订号失效
+     */
+    @CacheEvict(value = "menuTrees", allEntries = true)
+    public void evictMenuTrees() {
+    }
+
+    @CacheEvict(value = "menuTrees", allEntries = true)
+    @Transactional
     public MenuVO create(MenuCreateDTO dto) {
         if (menuRepository.existsByCode(dto.getCode())) {
             throw new BusinessException(400, "菜单编码已存在");
         }
+        requireParent(dto.getParentId());
         Menu m = new Menu();
         m.setParentId(dto.getParentId());
         m.setName(dto.getName().trim());
@@ -95,15 +158,27 @@ public class MenuService {
         m.setStatus(dto.getStatus() == null ? 1 : dto.getStatus());
         m.setCreateTime(LocalDateTime.now());
         m.setUpdateTime(LocalDateTime.now());
-        return toVO(menuRepository.save(m));
+        Menu saved = menuRepository.save(m);
+        menuClosureRepository.insertNode(saved.getId(), saved.getParentId());
+        rbacGraph.changed(RbacGraph.Change.MENU, saved.getId());
+        return toVO(saved);
     }
 
+    @CacheEvict(value = "menuTrees", allEntries = true)
+    @Transactional
     public MenuVO update(MenuUpdateDTO dto) {
         Menu m = menuRepository.findById(dto.getId())
                 .orElseThrow(() -> new BusinessException(404, "菜单不存在"));
         if (dto.getCode() != null && !dto.getCode().equals(m.getCode()) && menuRepository.existsByCode(dto.getCode())) {
             throw new BusinessException(400, "菜单编码已存在");
         }
+        boolean moved = dto.getParentId() != null && !dto.getParentId().equals(m.getParentId());
+        if (moved) {
+            requireParent(dto.getParentId());
+            if (menuClosureRepository.existsByAncestorIdAndDescendantId(m.getId(), dto.getParentId())) {
+                throw new BusinessException(400, "不能将菜单移动到自身或其子菜单下");
+            }
+        }
         if (dto.getParentId() != null) m.setParentId(dto.getParentId());
         if (dto.getName() != null) m.setName(dto.getName());
         if (dto.getCode() != null) m.setCode(dto.getCode());
@@ -113,25 +188,89 @@ public class MenuService {
         if (dto.getSort() != null) m.setSort(dto.getSort());
         if (dto.getStatus() != null) m.setStatus(dto.getStatus());
         m.setUpdateTime(LocalDateTime.now());
-        return toVO(menuRepository.save(m));
+        Menu saved = menuRepository.save(m);
+        if (moved) {
+            // 移动子树：断开与原祖先的链接，再挂到新父菜单下
+            menuClosureRepository.detachSubtree(saved.getId());
+            menuClosureRepository.attachSubtree(saved.getId(), saved.getParentId());
+        }
+        rbacGraph.changed(RbacGraph.Change.MENU, saved.getId());
+        return toVO(saved);
     }
 
+    /**
+     * 删除菜单及其全部子菜单
+     * 子树通过闭包表一次查询得到，菜单、角色菜单关联和闭包链接批量删除
+     */
+    @CacheEvict(value = "menuTrees", allEntries = true)
+    @Transactional
     public void delete(Long id) {
         if (!menuRepository.existsById(id)) {
             throw new BusinessException(404, "菜单不存在");
         }
-        menuRepository.deleteById(id);
+        // 没有子菜单时不取出子树（闭包表中缺少该节点时同样只删除自身）
+        List<Long> subtreeIds = menuClosureRepository.countChildren(id) == 0
+                ? List.of() : menuClosureRepository.findSubtreeIds(id);
+        if (subtreeIds.isEmpty()) {
+            subtreeIds = List.of(id);
+        }
+        roleMenuRepository.deleteByMenuIdIn(subtreeIds);
+        menuRepository.deleteAllByIdInBatch(subtreeIds);
+        menuClosureRepository.deleteByDescendantIdIn(subtreeIds);
+        rbacGraph.changed(RbacGraph.Change.MENU, subtreeIds);
     }
 
+    @CacheEvict(value = "menuTrees", allEntries = true)
+    @Transactional
     public MenuVO toggleStatus(Long id) {
         Menu m = menuRepository.findById(id)
                 .orElseThrow(() -> new BusinessException(404, "菜单不存在"));
         m.setStatus(m.getStatus() != null && m.getStatus() == 1 ? 0 : 1);
         m.setUpdateTime(LocalDateTime.now());
-        return toVO(menuRepository.save(m));
+        Menu saved = menuRepository.save(m);
+        rbacGraph.changed(RbacGraph.Change.MENU, saved.getId());
+        return toVO(saved);
+    }
+
+    /**
+     * 父菜单必须存在（闭包表中有深度），否则新节点或移动的子树只有自身链接，成为游离的根
+     */
+    private void requireParent(Long parentId) {
+        if (parentId != null && menuClosureRepository.findDepth(parentId) == null) {
+            throw new BusinessException(400, "父菜单不存在");
+        }
+    }
+
+    /**
+     * 当前菜单树快照
+     * 本节点尚未应用其他节点已提交的变更时（修订号落后），快照可能是旧的，重新从数据库加载，避免旧菜单树回填 L2；
+     * 是否落后依据变更通知和定期读取的集群修订号判断（RbacGraph.caughtUpCached），不在每次调用时访问 Redis
+     */
+    private MenuTreeSnapshot snapshot() {
+        MenuTreeSnapshot s = treeSnapshot;
+        if (s != null && s.revision() == rbacGraph.menuRevision() && rbacGraph.caughtUpCached()) {
+            return s;
+        }
+        return reloadSnapshot(s);
+    }
+
+    /**
+     * @param stale 调用方认为过期的快照：其他线程已替换时直接使用新快照
+     */
+    private synchronized MenuTreeSnapshot reloadSnapshot(MenuTreeSnapshot stale) {
+        long revision = rbacGraph.menuRevision();
+        MenuTreeSnapshot s = treeSnapshot;
+        if (s == null || s == stale || s.revision() != revision) {
+            Map<Long, List<Long>> roleMenuIds = roleMenuRepository.findAll().stream()
+                    .collect(Collectors.groupingBy(RoleMenu::getRoleId,
+                            Collectors.mapping(RoleMenu::getMenuId, Collectors.toList())));
+            s = new MenuTreeSnapshot(menuRepository.findAll(), roleMenuIds, revision);
+            treeSnapshot = s;
+        }
+        return s;
     }
 
-    private MenuVO toVO(Menu m) {
+    static MenuVO toVO(Menu m) {
         MenuVO vo = new MenuVO();
         vo.setId(m.getId());
         vo.setParentId(m.getParentId());
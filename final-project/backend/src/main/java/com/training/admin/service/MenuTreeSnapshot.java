@@ -0,0 +1,122 @@
+package com.training.admin.service;
+
+import com.training.admin.entity.Menu;
+import com.training.admin.vo.MenuVO;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 菜单树快照（不可变）
+ *
+ * 菜单按排序号、ID 排好序，每个角色的菜单表示为排序下标的 BitSet，并预先组装好角色自己的菜单树。
+ * 用户的菜单树是其各角色菜单的有序合并：
+ * - 单个角色（或合并结果与某个角色相同）时直接返回该角色预先组装的树，节点在用户间共享
+ * - 多个角色时对 BitSet 求并集（自动去重），按排序下标顺序组装，结果与按 ID 查询后再组树一致
+ * 预先组装的树中 children 为不可变列表，调用方不能修改。
+ */
+final class MenuTreeSnapshot {
+
+    /**
+     * 构建快照时授权图的菜单修订号（见 RbacGraph.menuRevision），用于发现其他节点的菜单变更
+     */
+    private final long revision;
+
+    /**
+     * 按排序号、ID 排序的菜单
+     */
+    private final Menu[] menus;
+
+    /**
+     * 父菜单在 menus 中的下标，父菜单不存在时为 -1
+     */
+    private final int[] parents;
+
+    private final Map<Long, BitSet> roleMenus = new HashMap<>();
+    private final Map<Long, List<MenuVO>> roleTrees = new HashMap<>();
+
+    /**
+     * @param all         全部菜单
+     * @param roleMenuIds 角色ID -> 菜单ID列表
+     */
+    MenuTreeSnapshot(List<Menu> all, Map<Long, List<Long>> roleMenuIds, long revision) {
+        this.revision = revision;
+        this.menus = all.stream()
+                .sorted(Comparator.comparing(Menu::getSort, Comparator.nullsLast(Integer::compareTo))
+                        .thenComparing(Menu::getId))
+                .toArray(Menu[]::new);
+        this.parents = new int[menus.length];
+        Map<Long, Integer> positions = new HashMap<>(menus.length * 2);
+        for (int i = 0; i < menus.length; i++) {
+            positions.put(menus[i].getId(), i);
+        }
+        for (int i = 0; i < menus.length; i++) {
+            Integer parent = menus[i].getParentId() == null ? null : positions.get(menus[i].getParentId());
+            parents[i] = parent == null ? -1 : parent;
+        }
+        roleMenuIds.forEach((roleId, menuIds) -> {
+            BitSet bits = new BitSet(menus.length);
+            for (Long menuId : menuIds) {
+                Integer position = positions.get(menuId);
+                if (position != null) {
+                    bits.set(position);
+                }
+            }
+            roleMenus.put(roleId, bits);
+            roleTrees.put(roleId, build(bits, true));
+        });
+    }
+
+    long revision() {
+        return revision;
+    }
+
+    /**
+     * 角色组合的菜单树（各角色菜单的有序合并）
+     */
+    List<MenuVO> treeOf(Collection<Long> roleIds) {
+        BitSet union = new BitSet(menus.length);
+        for (Long roleId : roleIds) {
+            BitSet bits = roleMenus.get(roleId);
+            if (bits != null) {
+                union.or(bits);
+            }
+        }
+        // 合并结果与某个角色的菜单相同（只有一个角色，或其他角色的菜单都是它的子集）时共享该角色的树
+        for (Long roleId : roleIds) {
+            BitSet bits = roleMenus.get(roleId);
+            if (bits != null && bits.equals(union)) {
+                return roleTrees.get(roleId);
+            }
+        }
+        return build(union, false);
+    }
+
+    private List<MenuVO> build(BitSet selected, boolean immutable) {
+        MenuVO[] vos = new MenuVO[menus.length];
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            vos[i] = MenuService.toVO(menus[i]);
+        }
+        List<MenuVO> roots = new ArrayList<>();
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            int parent = parents[i];
+            if (parent >= 0 && vos[parent] != null) {
+                vos[parent].getChildren().add(vos[i]);
+            } else {
+                roots.add(vos[i]);
+            }
+        }
+        if (!immutable) {
+            return roots;
+        }
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            vos[i].setChildren(List.copyOf(vos[i].getChildren()));
+        }
+        return List.copyOf(roots);
+    }
+}
@@ -0,0 +1,164 @@
+package com.training.admin.service;
+
+import com.training.admin.entity.User;
+import com.training.admin.exception.RetryLaterException;
+import com.training.admin.repository.UserRepository;
+import com.training.admin.util.PasswordUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 密码哈希服务（舱壁隔离）
+ *
+ * BCrypt 校验是 CPU 密集操作，登录风暴时如果在 Tomcat 请求线程上执行，会占满所有工作线程，
+ * 导致其他接口排队。这里把校验放到独立的有界线程池执行：
+ * 1. 线程数和队列长度可配置，队列满时立即返回 HTTP 503 + Retry-After（快速失败），不阻塞请求线程池
+ * 2. 等待超时同样返回 503
+ * 3. 登录成功后如果哈希强度低于当前配置，异步按新强度重新哈希（调整 cost 对用户透明）
+ *
+ * 指标：password.hash.queue.size / password.hash.active / password.hash.time / password.hash.rejected
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PasswordHashService {
+
+    private final PasswordUtil passwordUtil;
+    private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 哈希线程数（默认 CPU 核数）
+     */
+    @Value("${app.password.executor.threads:0}")
+    private int threads;
+
+    /**
+     * 等待队列长度
+     */
+    @Value("${app.password.executor.queue-capacity:100}")
+    private int queueCapacity;
+
+    /**
+     * 请求线程等待校验结果的最长时间
+     */
+    @Value("${app.password.executor.timeout:5s}")
+    private Duration timeout;
+
+    /**
+     * 饱和时建议客户端的重试间隔（Retry-After）
+     */
+    @Value("${app.password.executor.retry-after:1s}")
+    private Duration retryAfter;
+
+    private ThreadPoolExecutor executor;
+    private Timer hashTimer;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.hashTimer = Timer.builder("password.hash.time")
+                .description("BCrypt 计算耗时")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("password.hash.rejected")
+                .description("线程池饱和被拒绝的密码校验次数")
+                .register(meterRegistry);
+        Gauge.builder("password.hash.queue.size", executor, e -> e.getQueue().size())
+                .description("等待中的密码哈希任务数")
+                .register(meterRegistry);
+        Gauge.builder("password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("正在执行的密码哈希任务数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 在哈希线程池中校验密码
+     *
+     * @throws RetryLaterException 503：线程池饱和或等待超时
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        Future<Boolean> future;
+        try {
+            future = executor.submit(() -> hashTimer.record(() -> passwordUtil.matches(rawPassword, encodedPassword)));
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw saturated();
+        }
+
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejectedCounter.increment();
+            throw saturated();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw saturated();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("密码校验失败", e.getCause());
+        }
+    }
+
+    private RetryLaterException saturated() {
+        return new RetryLaterException(503, "登录请求过多，请稍后重试", Math.max(1, retryAfter.toSeconds()));
+    }
+
+    /**
+     * 登录成功后，哈希强度低于当前配置时异步重新哈希
+     * 线程池繁忙时跳过，下次登录再尝试
+     */
+    public void rehashIfNeeded(User user, String rawPassword) {
+        String oldPassword = user.getPassword();
+        if (!passwordUtil.upgradeEncoding(oldPassword)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    String newPassword = hashTimer.record(() -> passwordUtil.encode(rawPassword));
+                    userRepository.updatePassword(user.getId(), oldPassword, newPassword);
+                    log.info("用户 {} 的密码已按新强度重新哈希", user.getUsername());
+                } catch (Exception e) {
+                    log.warn("用户 {} 的密码重新哈希失败: {}", user.getUsername(), e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("密码哈希线程池繁忙，跳过重新哈希: {}", user.getUsername());
+        }
+    }
+}
@@ -4,17 +4,24 @@ import com.training.admin.entity.RolePermission;
 import com.training.admin.entity.UserRole;
 import com.training.admin.repository.RolePermissionRepository;
 import com.training.admin.repository.UserRoleRepository;
+import com.training.admin.util.DigestUtil;
 import com.training.admin.service.PermissionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -24,6 +31,14 @@ import java.util.stream.Collectors;
  * 功能包括：
  * - 查询用户权限编码（带缓存）
  * - 清除权限缓存（当权限变更时）
+ * 
+ * 缓存结构：
+ * - rolePermissions：角色ID -> 权限编码列表
+ * - userRoles：用户ID -> 角色ID列表
+ * - permissionSets：角色组合签名 -> 权限编码列表（角色权限的并集）
+ * 用户条目只映射到角色组合，大多数用户共享少量角色组合，同一份权限集合只计算和存储一次。
+ * 角色权限变更只清除一个角色条目和角色组合条目（与组合数成正比），不需要清除每个成员用户
+ * 缓存未命中时优先从授权图（RbacGraph）加载，授权图未就绪或尚未应用其他节点的变更时查询数据库
  */
 @Service
 @RequiredArgsConstructor
@@ -32,6 +47,7 @@ public class PermissionCacheService {
 
     private final UserRoleRepository userRoleRepository;
     private final RolePermissionRepository rolePermissionRepository;
+    private final RbacGraph rbacGraph;
     
     // 使用 @Lazy 延迟注入，打破与 PermissionService 的循环依赖
     // 注意：@Lazy 在构造函数注入时需要配合 @Autowired 使用
@@ -39,34 +55,42 @@ public class PermissionCacheService {
     @Autowired
     private PermissionService permissionService;
 
-    /**
-     * 清除指定角色的所有用户权限缓存
-     * 当角色权限变更时调用
-     * 
-     * @param roleId 角色ID
-     */
-    @CacheEvict(value = "userPermissions", allEntries = true)
-    public void evictUserPermissionsByRole(Long roleId) {
-        log.info("清除角色 {} 的所有用户权限缓存", roleId);
-    }
+    // 注入自身代理，内部调用带缓存的方法时缓存才会生效
+    @Lazy
+    @Autowired
+    private PermissionCacheService self;
 
     /**
-     * 清除指定用户的所有权限缓存
+     * 清除指定用户的权限缓存（用户 -> 角色映射）
+     * 当用户角色变更时调用
      * 
      * @param userId 用户ID
      */
-    @CacheEvict(value = "userPermissions", key = "#userId")
+    @CacheEvict(value = "userRoles", key = "#userId")
     public void evictUserPermissions(Long userId) {
         log.info("清除用户 {} 的权限缓存", userId);
     }
 
     /**
-     * 清除所有用户权限缓存
-     * 当权限数据变更时调用
+     * 清除所有权限缓存（角色权限和用户角色）
+     * 当权限数据发生重大变更时调用
      */
-    @CacheEvict(value = "userPermissions", allEntries = true)
+    @CacheEvict(value = {"rolePermissions", "userRoles", "permissionSets"}, allEntries = true)
     public void evictAllUserPermissions() {
-        log.info("清除所有用户权限缓存");
+        log.info("清除所有权限缓存");
+    }
+
+    /**
+     * 清除指定角色的权限缓存，以及所有角色组合的权限集合
+     * 
+     * @param roleId 角色ID
+     */
+    @Caching(evict = {
+            @CacheEvict(value = "rolePermissions", key = "#roleId"),
+            @CacheEvict(value = "permissionSets", allEntries = true)
+    })
+    public void evictRolePermissions(Long roleId) {
+        log.info("清除角色 {} 的权限缓存", roleId);
     }
 
     /**
@@ -90,52 +114,188 @@ public class PermissionCacheService {
     }
 
     /**
-     * 获取受影响的用户ID列表（当角色权限变更时）
+     * 获取持有指定权限的角色ID列表（反向索引：权限 -> 角色）
      * 
-     * @param roleId 角色ID
-     * @return 用户ID列表
+     * @param permissionId 权限ID
+     * @return 角色ID列表
      */
-    public List<Long> getAffectedUserIds(Long roleId) {
-        return userRoleRepository.findByRoleId(roleId).stream()
-                .map(UserRole::getUserId)
+    public List<Long> getRoleIdsByPermission(Long permissionId) {
+        return rolePermissionRepository.findByPermissionId(permissionId).stream()
+                .map(RolePermission::getRoleId)
                 .distinct()
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 统计拥有任一指定角色的用户数（count 查询，不加载实体）
+     * 
+     * @param roleIds 角色ID列表
+     * @return 用户数
+     */
+    public long countAffectedUsers(Collection<Long> roleIds) {
+        if (roleIds == null || roleIds.isEmpty()) {
+            return 0;
+        }
+        return userRoleRepository.countUsersByRoleIdIn(roleIds);
+    }
+
+    /**
+     * 分批遍历拥有任一指定角色的用户ID（反向索引：角色 -> 用户）
+     * 按用户ID游标分页，每批只查询 ID，内存占用与批大小成正比，与角色成员数无关
+     * 
+     * @param roleIds   角色ID列表
+     * @param chunkSize 每批用户数
+     * @param consumer  每批用户ID的处理
+     * @return 遍历的用户总数
+     */
+    public long forEachAffectedUserChunk(Collection<Long> roleIds, int chunkSize, Consumer<List<Long>> consumer) {
+        return forEachAffectedUserChunk(roleIds, 0, chunkSize, consumer);
+    }
+
+    /**
+     * 从指定用户ID之后继续分批遍历（中途失败后从上一批的最后一个用户ID重试）
+     *
+     * @param afterUserId 只遍历大于该ID的用户
+     */
+    public long forEachAffectedUserChunk(Collection<Long> roleIds, long afterUserId, int chunkSize,
+                                         Consumer<List<Long>> consumer) {
+        if (roleIds == null || roleIds.isEmpty()) {
+            return 0;
+        }
+        long total = 0;
+        while (true) {
+            List<Long> userIds = userRoleRepository.findUserIdsByRoleIdIn(
+                    roleIds, afterUserId, PageRequest.of(0, chunkSize));
+            if (userIds.isEmpty()) {
+                return total;
+            }
+            consumer.accept(userIds);
+            total += userIds.size();
+            if (userIds.size() < chunkSize) {
+                return total;
+            }
+            afterUserId = userIds.get(userIds.size() - 1);
+        }
+    }
+
     // ========== 查询操作（读缓存）==========
 
     /**
      * 获取用户的所有权限编码（用于生成 JWT）
-     * 使用缓存提高性能
+     * 用户 -> 角色组合签名 -> 权限集合，均命中缓存时不访问数据库
      * 
      * @param userId 用户ID
      * @return 权限编码列表
      */
-    @Cacheable(value = "userPermissions", key = "#userId")
     public List<String> getUserPermissionCodes(Long userId) {
-        // 1. 获取用户的所有角色
-        List<UserRole> userRoles = userRoleRepository.findByUserId(userId);
-        List<Long> roleIds = userRoles.stream().map(UserRole::getRoleId).toList();
-        
+        List<Long> roleIds = getSortedRoleIds(userId);
         if (roleIds.isEmpty()) {
             return List.of();
         }
-        
-        // 2. 获取所有角色的权限ID
-        List<RolePermission> rolePerms = rolePermissionRepository.findByRoleIdIn(roleIds);
-        Set<Long> permIds = rolePerms.stream().map(RolePermission::getPermissionId).collect(Collectors.toSet());
-        
+        return self.getPermissionCodesByRoles(roleSignature(roleIds), roleIds);
+    }
+
+    /**
+     * 获取用户排序后的角色ID列表（用于计算角色组合签名）
+     * 
+     * @param userId 用户ID
+     * @return 升序排列的角色ID列表
+     */
+    public List<Long> getSortedRoleIds(Long userId) {
+        // 元素可能是 Integer（见 toLong），按 Object 处理
+        List<?> roleIds = self.getUserRoleIds(userId);
+        return roleIds.stream()
+                .map(PermissionCacheService::toLong)
+                .distinct()
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * 计算角色组合签名：升序角色ID列表的 SHA-256 摘要
+     * 
+     * @param sortedRoleIds 升序排列的角色ID列表
+     * @return 签名
+     */
+    public static String roleSignature(List<Long> sortedRoleIds) {
+        return DigestUtil.sha256(sortedRoleIds.stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",")));
+    }
+
+    /**
+     * 获取角色组合的权限编码（按签名缓存，各角色权限的并集，保持角色顺序去重）
+     * 
+     * @param signature     角色组合签名
+     * @param sortedRoleIds 升序排列的角色ID列表
+     * @return 权限编码列表
+     */
+    @Cacheable(value = "permissionSets", key = "#signature", sync = true)
+    public List<String> getPermissionCodesByRoles(String signature, List<Long> sortedRoleIds) {
+        if (sortedRoleIds.size() == 1) {
+            return self.getRolePermissionCodes(sortedRoleIds.get(0));
+        }
+        Set<String> codes = new LinkedHashSet<>();
+        for (Long roleId : sortedRoleIds) {
+            codes.addAll(self.getRolePermissionCodes(roleId));
+        }
+        return new ArrayList<>(codes);
+    }
+
+    /**
+     * 获取用户的角色ID列表（带缓存）
+     * 
+     * @param userId 用户ID
+     * @return 角色ID列表
+     */
+    @Cacheable(value = "userRoles", key = "#userId", sync = true)
+    public List<Long> getUserRoleIds(Long userId) {
+        if (rbacGraph.upToDate()) {
+            return rbacGraph.userRoleIds(userId);
+        }
+        return userRoleRepository.findByUserId(userId).stream()
+                .map(UserRole::getRoleId)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 获取角色的权限编码列表（带缓存）
+     * 
+     * @param roleId 角色ID
+     * @return 权限编码列表
+     */
+    @Cacheable(value = "rolePermissions", key = "#roleId", sync = true)
+    public List<String> getRolePermissionCodes(Long roleId) {
+        // 授权图已是最新时直接从内存组装权限树，不访问数据库
+        if (rbacGraph.upToDate()) {
+            return permissionService.buildTree(rbacGraph.permissionsOfRole(roleId))
+                    .stream()
+                    .flatMap(p -> flattenPermCodes(p).stream())
+                    .collect(Collectors.toList());
+        }
+        List<Long> permIds = rolePermissionRepository.findByRoleIdIn(List.of(roleId)).stream()
+                .map(RolePermission::getPermissionId)
+                .distinct()
+                .toList();
         if (permIds.isEmpty()) {
             return List.of();
         }
         
-        // 3. 获取权限编码列表（扁平化）
-        return permissionService.treeByIds(permIds.stream().toList())
+        // 获取权限编码列表（扁平化）
+        return permissionService.treeByIds(permIds)
                 .stream()
                 .flatMap(p -> flattenPermCodes(p).stream())
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 从 Redis JSON 反序列化的数字可能是 Integer，统一转换为 Long
+     */
+    private static Long toLong(Object id) {
+        return ((Number) id).longValue();
+    }
+
     /**
      * 扁平化权限编码（递归处理子权限）
      */
@@ -0,0 +1,248 @@
+package com.training.admin.service;
+
+import com.training.admin.common.PermissionSet;
+import com.training.admin.entity.Permission;
+import com.training.admin.repository.PermissionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * 权限字典 / GrantedAuthority 注册表
+ *
+ * 每个权限编码对应一个稳定的整数下标（即权限 ID，自增且不复用），
+ * 用户的权限集合编码为 bitset 后 Base64 存入 Token，Token 同时携带字典版本号。
+ * 每个编码只创建一个共享的 GrantedAuthority 实例，{@link PermissionSet} 直接引用这些实例。
+ *
+ * 字典在应用启动后加载，权限增删改提交后失效（通过 Redis 发布/订阅通知所有节点），下次使用时从数据库重新加载。
+ * 校验 Token 时字典版本不一致（其他节点新增、删除或改名了权限），会重新加载一次字典（限流）；
+ * 重新加载后版本仍不一致时不解码（同一下标在两个版本中可能对应不同编码），由调用方按权限版本过期处理。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PermissionDictionary {
+
+    /**
+     * 因未知编码/下标触发重新加载的最小间隔，防止伪造 Token 反复触发数据库查询
+     */
+    private static final long RELOAD_INTERVAL_MILLIS = 5000;
+
+    private static final String CHANNEL = "perm:dict:changed";
+
+    private final PermissionRepository permissionRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    /**
+     * GrantedAuthority 驻留池：字典重建后同一编码仍复用同一实例
+     */
+    private final Map<String, GrantedAuthority> authorityPool = new ConcurrentHashMap<>();
+
+    private volatile Snapshot snapshot;
+    private volatile long lastReloadAt;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> snapshot = null, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * 启动完成后（DataInitializer 之后）构建字典
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        loadIfAbsent();
+    }
+
+    /**
+     * 当前字典版本号
+     */
+    public int version() {
+        return current().version;
+    }
+
+    /**
+     * 将权限编码集合编码为 Base64 bitset
+     *
+     * @return 编码结果（含所用字典版本）；存在字典中没有的编码时返回 null（调用方应退回列表格式）
+     */
+    public Encoded encode(Collection<String> codes) {
+        Snapshot s = current();
+        BitSet bits = toBits(s, codes, null);
+        if (bits == null) {
+            s = reload();
+            bits = toBits(s, codes, null);
+            if (bits == null) {
+                return null;
+            }
+        }
+        return new Encoded(Base64.getUrlEncoder().withoutPadding().encodeToString(bits.toByteArray()), s.version);
+    }
+
+    /**
+     * 将 Token 中的 Base64 bitset 直接解码为权限集合
+     *
+     * @param encoded Token 中的 bitset
+     * @param tokenVersion Token 签发时的字典版本
+     * @return 权限集合；字典版本不一致时返回 null（调用方应按权限版本过期处理，重新加载权限）
+     */
+    public PermissionSet decode(String encoded, int tokenVersion) {
+        Snapshot s = current();
+        if (tokenVersion != s.version) {
+            if (reloadAllowed()) {
+                s = reload();
+            }
+            if (tokenVersion != s.version) {
+                log.debug("Token 的权限字典版本 {} 与当前版本 {} 不一致，不解码", tokenVersion, s.version);
+                return null;
+            }
+        }
+        BitSet bits = BitSet.valueOf(Base64.getUrlDecoder().decode(encoded));
+        // 已删除的权限直接忽略
+        bits.and(s.known);
+        return new PermissionSet(bits, s.authorities, s.indexes, Map.of());
+    }
+
+    /**
+     * 将权限编码集合转换为权限集合（兼容完整列表格式的 Token）
+     */
+    public PermissionSet toPermissionSet(Collection<String> codes) {
+        if (codes.isEmpty()) {
+            return PermissionSet.EMPTY;
+        }
+        Snapshot s = current();
+        Map<String, GrantedAuthority> extras = new LinkedHashMap<>();
+        BitSet bits = toBits(s, codes, extras);
+        if (!extras.isEmpty() && reloadAllowed()) {
+            s = reload();
+            extras.clear();
+            bits = toBits(s, codes, extras);
+        }
+        return new PermissionSet(bits, s.authorities, s.indexes, extras.isEmpty() ? Map.of() : extras);
+    }
+
+    /**
+     * 使字典失效（在当前事务提交后生效，无事务时立即生效），并通知其他节点
+     * 权限新增、修改、删除时调用
+     */
+    public void invalidateAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate();
+                }
+            });
+        } else {
+            invalidate();
+        }
+    }
+
+    private void invalidate() {
+        snapshot = null;
+        try {
+            redisTemplate.convertAndSend(CHANNEL, "");
+        } catch (Exception e) {
+            // 通知失败时其他节点在遇到新版本 Token 时自行重新加载
+            log.warn("发布权限字典失效通知失败: {}", e.getMessage());
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        return s != null ? s : loadIfAbsent();
+    }
+
+    private synchronized Snapshot loadIfAbsent() {
+        Snapshot s = snapshot;
+        return s != null ? s : reload();
+    }
+
+    private synchronized Snapshot reload() {
+        List<Permission> all = new ArrayList<>(permissionRepository.findAll());
+        all.sort(Comparator.comparing(Permission::getId));
+
+        int size = all.isEmpty() ? 0 : Math.toIntExact(all.get(all.size() - 1).getId()) + 1;
+        GrantedAuthority[] authorities = new GrantedAuthority[size];
+        Map<String, Integer> indexes = new HashMap<>(all.size() * 2);
+        BitSet known = new BitSet(size);
+        CRC32 crc = new CRC32();
+        for (Permission p : all) {
+            int index = Math.toIntExact(p.getId());
+            authorities[index] = intern(p.getCode());
+            indexes.put(p.getCode(), index);
+            known.set(index);
+            crc.update((p.getId() + ":" + p.getCode() + ";").getBytes(StandardCharsets.UTF_8));
+        }
+
+        Snapshot s = new Snapshot((int) crc.getValue(), authorities, Map.copyOf(indexes), known);
+        snapshot = s;
+        lastReloadAt = System.currentTimeMillis();
+        log.info("权限字典已加载，版本: {}，权限数: {}", s.version, all.size());
+        return s;
+    }
+
+    private GrantedAuthority intern(String code) {
+        return authorityPool.computeIfAbsent(code, SimpleGrantedAuthority::new);
+    }
+
+    private boolean reloadAllowed() {
+        return System.currentTimeMillis() - lastReloadAt >= RELOAD_INTERVAL_MILLIS;
+    }
+
+    /**
+     * 编码集合转 bitset
+     *
+     * @param extras 不为 null 时收集字典外的编码；为 null 时遇到字典外的编码返回 null
+     */
+    private BitSet toBits(Snapshot s, Collection<String> codes, Map<String, GrantedAuthority> extras) {
+        BitSet bits = new BitSet(s.authorities.length);
+        for (String code : codes) {
+            Integer index = s.indexes.get(code);
+            if (index != null) {
+                bits.set(index);
+            } else if (extras != null) {
+                extras.put(code, intern(code));
+            } else {
+                return null;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * 编码后的权限集合
+     */
+    public record Encoded(String bits, int version) {
+    }
+
+    /**
+     * 字典快照（不可变）
+     */
+    private record Snapshot(int version, GrantedAuthority[] authorities, Map<String, Integer> indexes, BitSet known) {
+    }
+}
@@ -1,22 +1,25 @@
 package com.training.admin.service;
 
+import com.training.admin.common.UserCacheEvictionEvent;
 import com.training.admin.dto.PermissionCreateDTO;
 import com.training.admin.dto.PermissionQueryDTO;
 import com.training.admin.dto.PermissionUpdateDTO;
 import com.training.admin.entity.Permission;
 import com.training.admin.entity.RolePermission;
 import com.training.admin.exception.BusinessException;
+import com.training.admin.repository.PermissionClosureRepository;
 import com.training.admin.repository.PermissionRepository;
 import com.training.admin.repository.RolePermissionRepository;
 import com.training.admin.repository.UserRoleRepository;
 import com.training.admin.service.PermissionCacheService;
 import com.training.admin.vo.PermissionVO;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -28,49 +31,54 @@ public class PermissionService {
 
     private final PermissionRepository permissionRepository;
     private final RolePermissionRepository rolePermissionRepository;
+    private final PermissionClosureRepository permissionClosureRepository;
     private final UserRoleRepository userRoleRepository;
+    private final ApplicationEventPublisher eventPublisher;
     private final PermissionCacheService permissionCacheService;
+    private final PermissionDictionary permissionDictionary;
+    private final RbacGraph rbacGraph;
 
-    public List<PermissionVO> tree(PermissionQueryDTO queryDTO) {
-        List<Permission> all = permissionRepository.findAll();
-        List<Permission> filtered = all.stream()
-                .filter(p -> queryDTO.getStatus() == null || Objects.equals(p.getStatus(), queryDTO.getStatus()))
-                .filter(p -> {
-                    if (!StringUtils.hasText(queryDTO.getKeyword())) return true;
-                    String kw = queryDTO.getKeyword().trim().toLowerCase();
-                    return (p.getName() != null && p.getName().toLowerCase().contains(kw))
-                            || (p.getCode() != null && p.getCode().toLowerCase().contains(kw))
-                            || (p.getPath() != null && p.getPath().toLowerCase().contains(kw));
-                })
-                .sorted(Comparator.comparing(Permission::getSort, Comparator.nullsLast(Integer::compareTo))
-                        .thenComparing(Permission::getId))
-                .collect(Collectors.toList());
-
-        Map<Long, PermissionVO> voMap = new HashMap<>();
-        for (Permission p : filtered) {
-            voMap.put(p.getId(), toVO(p));
-        }
+    /**
+     * 权限树快照：权限写操作提交后失效，下次查询时重新加载
+     * 其他节点的变更通过授权图修订号发现（关闭授权图时同样有效），本节点落后于集群修订号时不使用快照
+     */
+    private volatile PermissionTreeSnapshot treeSnapshot;
 
-        List<PermissionVO> roots = new ArrayList<>();
-        for (Permission p : filtered) {
-            PermissionVO vo = voMap.get(p.getId());
-            if (p.getParentId() != null && voMap.containsKey(p.getParentId())) {
-                voMap.get(p.getParentId()).getChildren().add(vo);
-            } else {
-                roots.add(vo);
-            }
-        }
-        return roots;
+    /**
+     * 权限树（按状态、关键字过滤），基于内存快照，不访问数据库
+     */
+    public List<PermissionVO> tree(PermissionQueryDTO queryDTO) {
+        return snapshot().filter(queryDTO.getStatus(), queryDTO.getKeyword());
     }
 
+    /**
+     * 指定 ID 的权限组成的树，基于内存快照，不访问数据库
+     */
     public List<PermissionVO> treeByIds(List<Long> ids) {
         if (ids == null || ids.isEmpty()) {
             return List.of();
         }
-        List<Permission> all = permissionRepository.findAllById(ids);
-        // reuse tree logic with filter
-        PermissionQueryDTO dummy = new PermissionQueryDTO();
-        List<Permission> sorted = all.stream()
+        return snapshot().subtree(ids);
+    }
+
+    /**
+     * 权限的祖先路径（从根到自身，用于面包屑导航）：闭包表一次查询得到路径，再按 ID 批量加载
+     */
+    public List<PermissionVO> path(Long id) {
+        List<Long> ids = permissionClosureRepository.findAncestorPath(id);
+        if (ids.isEmpty()) {
+            throw new BusinessException(404, "权限不存在");
+        }
+        Map<Long, Permission> found = permissionRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Permission::getId, p -> p));
+        return ids.stream().map(found::get).filter(Objects::nonNull).map(PermissionService::toVO).toList();
+    }
+
+    /**
+     * 按排序号和ID排序后组装权限树（父权限不在列表中的作为根节点）
+     */
+    public List<PermissionVO> buildTree(List<Permission> permissions) {
+        List<Permission> sorted = permissions.stream()
                 .sorted(java.util.Comparator.comparing(Permission::getSort, java.util.Comparator.nullsLast(Integer::compareTo))
                         .thenComparing(Permission::getId))
                 .toList();
@@ -92,14 +100,15 @@ public class PermissionService {
     }
 
     /**
-     * 创建权限（清除缓存）
+     * 创建权限
+     * 新权限还没有被任何角色持有，不影响任何用户的缓存
      */
     @Transactional
-    @CacheEvict(value = {"userPermissions", "rolePermissions"}, allEntries = true)
     public PermissionVO create(PermissionCreateDTO dto) {
         if (permissionRepository.existsByCode(dto.getCode())) {
             throw new BusinessException(400, "权限编码已存在");
         }
+        requireParent(dto.getParentId());
         Permission p = new Permission();
         p.setParentId(dto.getParentId());
         p.setName(dto.getName().trim());
@@ -113,25 +122,34 @@ public class PermissionService {
         p.setCreateTime(LocalDateTime.now());
         p.setUpdateTime(LocalDateTime.now());
         PermissionVO result = toVO(permissionRepository.save(p));
+        permissionClosureRepository.insertNode(p.getId(), p.getParentId());
+        rbacGraph.changed(RbacGraph.Change.PERMISSION, p.getId());
+        invalidateTreeAfterCommit();
         
-        // 清除所有用户个人信息缓存（因为权限变更会影响所有用户的 profile）
-        permissionCacheService.evictAllUserProfiles();
+        // 权限编码集合变化，提交后重建权限字典
+        permissionDictionary.invalidateAfterCommit();
         
         return result;
     }
 
     /**
      * 更新权限（清除缓存）
-     * 优化：清除所有用户权限缓存和用户个人信息缓存
+     * 优化：通过反向索引（权限 -> 角色 -> 用户）只清除持有该权限的角色和用户的缓存
      */
     @Transactional
-    @CacheEvict(value = {"userPermissions", "rolePermissions"}, allEntries = true)
     public PermissionVO update(PermissionUpdateDTO dto) {
         Permission p = permissionRepository.findById(dto.getId())
                 .orElseThrow(() -> new BusinessException(404, "权限不存在"));
         if (dto.getCode() != null && !dto.getCode().equals(p.getCode()) && permissionRepository.existsByCode(dto.getCode())) {
             throw new BusinessException(400, "权限编码已存在");
         }
+        boolean moved = dto.getParentId() != null && !dto.getParentId().equals(p.getParentId());
+        if (moved) {
+            requireParent(dto.getParentId());
+            if (permissionClosureRepository.existsByAncestorIdAndDescendantId(p.getId(), dto.getParentId())) {
+                throw new BusinessException(400, "不能将权限移动到自身或其子权限下");
+            }
+        }
         if (dto.getParentId() != null) {
             p.setParentId(dto.getParentId());
         }
@@ -161,72 +179,151 @@ public class PermissionService {
         }
         p.setUpdateTime(LocalDateTime.now());
         PermissionVO result = toVO(permissionRepository.save(p));
+        if (moved) {
+            // 移动子树：断开与原祖先的链接，再挂到新父权限下
+            permissionClosureRepository.detachSubtree(p.getId());
+            permissionClosureRepository.attachSubtree(p.getId(), p.getParentId());
+        }
+        rbacGraph.changed(RbacGraph.Change.PERMISSION, p.getId());
+        invalidateTreeAfterCommit();
+        
+        // 权限编码可能变化，提交后重建权限字典
+        permissionDictionary.invalidateAfterCommit();
         
-        // 清除所有用户个人信息缓存（因为权限变更会影响所有用户的 profile）
-        permissionCacheService.evictAllUserProfiles();
+        // 只清除持有该权限的角色和用户的缓存，并递增其权限版本（Token 在下一次请求时自动刷新）
+        evictHolders(p.getId());
         
         return result;
     }
 
     /**
-     * 删除权限（带级联检查）
+     * 删除权限及其全部子权限（带级联检查）
      * 
      * 检查项：
      * 1. 权限是否存在
-     * 2. 是否被角色使用
-     * 3. 是否有子权限
+     * 2. 子树中的权限是否被角色使用
+     * 子树通过闭包表一次查询得到，权限和闭包链接批量删除
      */
     @Transactional
-    @CacheEvict(value = {"userPermissions", "rolePermissions"}, allEntries = true)
     public void delete(Long id) {
-        Permission permission = permissionRepository.findById(id)
-                .orElseThrow(() -> new BusinessException(404, "权限不存在"));
+        if (!permissionRepository.existsById(id)) {
+            throw new BusinessException(404, "权限不存在");
+        }
+        List<Long> subtreeIds = subtreeIds(id);
         
-        // 1. 检查是否被角色使用
-        List<RolePermission> rolePerms = rolePermissionRepository.findByPermissionId(id);
+        // 1. 检查子树中的权限是否被角色使用
+        List<RolePermission> rolePerms = rolePermissionRepository.findByPermissionIdIn(subtreeIds);
         if (!rolePerms.isEmpty()) {
-            // 获取使用该权限的角色名称
+            // 获取使用这些权限的角色名称
             Set<Long> roleIds = rolePerms.stream()
                     .map(RolePermission::getRoleId)
                     .collect(Collectors.toSet());
             throw new BusinessException(400, 
-                    String.format("该权限正在被 %d 个角色使用，无法删除。请先解除角色权限关联。", roleIds.size()));
+                    String.format("该权限或其子权限正在被 %d 个角色使用，无法删除。请先解除角色权限关联。", roleIds.size()));
         }
         
-        // 2. 检查是否有子权限
-        List<Permission> children = permissionRepository.findByParentId(id);
-        if (!children.isEmpty()) {
-            throw new BusinessException(400, 
-                    String.format("该权限下有 %d 个子权限，请先删除子权限。", children.size()));
-        }
-        
-        // 3. 删除权限（清除相关缓存）
-        permissionRepository.deleteById(id);
-        
-        // 清除所有用户个人信息缓存（因为权限变更会影响所有用户的 profile）
-        permissionCacheService.evictAllUserProfiles();
+        // 2. 批量删除子树（没有角色持有这些权限，不影响任何用户的缓存）
+        permissionRepository.deleteAllByIdInBatch(subtreeIds);
+        permissionClosureRepository.deleteByDescendantIdIn(subtreeIds);
+        permissionDictionary.invalidateAfterCommit();
+        rbacGraph.changed(RbacGraph.Change.PERMISSION, subtreeIds);
+        invalidateTreeAfterCommit();
     }
 
     /**
      * 切换权限状态（清除缓存）
-     * 优化：清除所有用户权限缓存和用户个人信息缓存
+     * 优化：只清除持有该权限的角色和用户的缓存
      */
     @Transactional
-    @CacheEvict(value = {"userPermissions", "rolePermissions"}, allEntries = true)
     public PermissionVO toggleStatus(Long id) {
         Permission p = permissionRepository.findById(id)
                 .orElseThrow(() -> new BusinessException(404, "权限不存在"));
         p.setStatus(p.getStatus() != null && p.getStatus() == 1 ? 0 : 1);
         p.setUpdateTime(LocalDateTime.now());
         PermissionVO result = toVO(permissionRepository.save(p));
+        rbacGraph.changed(RbacGraph.Change.PERMISSION, id);
+        invalidateTreeAfterCommit();
         
-        // 清除所有用户个人信息缓存（因为权限变更会影响所有用户的 profile）
-        permissionCacheService.evictAllUserProfiles();
+        // 只清除持有该权限的角色和用户的缓存
+        evictHolders(id);
         
         return result;
     }
 
-    private PermissionVO toVO(Permission p) {
+    /**
+     * 清除持有指定权限的角色和用户的缓存（权限 -> 角色 -> 用户）
+     * 用户缓存在事务提交后异步批量清除，清除后递增其权限版本
+     */
+    private void evictHolders(Long permissionId) {
+        List<Long> roleIds = permissionCacheService.getRoleIdsByPermission(permissionId);
+        if (roleIds.isEmpty()) {
+            return;
+        }
+        for (Long roleId : roleIds) {
+            permissionCacheService.evictRolePermissions(roleId);
+        }
+        
+        eventPublisher.publishEvent(UserCacheEvictionEvent.permissionsChanged(roleIds, "权限 " + permissionId + " 已变更"));
+    }
+
+    /**
+     * 子树中的权限ID（包含自身）；没有子权限或闭包表中缺少该节点时只包含自身
+     */
+    private List<Long> subtreeIds(Long id) {
+        if (permissionClosureRepository.countChildren(id) == 0) {
+            return List.of(id);
+        }
+        List<Long> ids = permissionClosureRepository.findSubtreeIds(id);
+        return ids.isEmpty() ? List.of(id) : ids;
+    }
+
+    /**
+     * 父权限必须存在（闭包表中有深度），否则新节点或移动的子树只有自身链接，成为游离的根
+     */
+    private void requireParent(Long parentId) {
+        if (parentId != null && permissionClosureRepository.findDepth(parentId) == null) {
+            throw new BusinessException(400, "父权限不存在");
+        }
+    }
+
+    private PermissionTreeSnapshot snapshot() {
+        PermissionTreeSnapshot s = treeSnapshot;
+        if (s != null && s.revision() == rbacGraph.permissionRevision() && rbacGraph.caughtUpCached()) {
+            return s;
+        }
+        return reloadSnapshot(s);
+    }
+
+    /**
+     * @param stale 调用方认为过期的快照：其他线程已替换时直接使用新快照
+     */
+    private synchronized PermissionTreeSnapshot reloadSnapshot(PermissionTreeSnapshot stale) {
+        long revision = rbacGraph.permissionRevision();
+        PermissionTreeSnapshot s = treeSnapshot;
+        if (s == null || s == stale || s.revision() != revision) {
+            s = new PermissionTreeSnapshot(permissionRepository.findAll(), revision);
+            treeSnapshot = s;
+        }
+        return s;
+    }
+
+    /**
+     * 使权限树快照失效（在当前事务提交后生效，无事务时立即生效）
+     */
+    private void invalidateTreeAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    treeSnapshot = null;
+                }
+            });
+        } else {
+            treeSnapshot = null;
+        }
+    }
+
+    static PermissionVO toVO(Permission p) {
         PermissionVO vo = new PermissionVO();
         vo.setId(p.getId());
         vo.setParentId(p.getParentId());
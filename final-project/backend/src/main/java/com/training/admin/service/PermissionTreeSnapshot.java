@@ -0,0 +1,127 @@
+package com.training.admin.service;
+
+import com.training.admin.entity.Permission;
+import com.training.admin.vo.PermissionVO;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * 权限树快照（不可变）
+ *
+ * 构建时一次性完成排序（排序号、ID）、父子下标和小写搜索字段，
+ * 查询时按状态、关键字或 ID 集合过滤，只为命中的节点创建 VO，不访问数据库。
+ * 组树规则与过滤后再组树一致：父节点未命中时子节点作为根节点。
+ */
+final class PermissionTreeSnapshot {
+
+    /**
+     * 构建快照时授权图的权限修订号（见 RbacGraph.permissionRevision），用于发现其他节点的权限变更
+     */
+    private final long revision;
+
+    /**
+     * 按排序号、ID 排序的权限
+     */
+    private final Permission[] permissions;
+
+    /**
+     * 父权限在 permissions 中的下标，父权限不存在时为 -1
+     */
+    private final int[] parents;
+
+    private final String[] names;
+    private final String[] codes;
+    private final String[] paths;
+    private final Map<Long, Integer> positions;
+
+    PermissionTreeSnapshot(List<Permission> all, long revision) {
+        this.revision = revision;
+        this.permissions = all.stream()
+                .sorted(Comparator.comparing(Permission::getSort, Comparator.nullsLast(Integer::compareTo))
+                        .thenComparing(Permission::getId))
+                .toArray(Permission[]::new);
+        int size = permissions.length;
+        this.parents = new int[size];
+        this.names = new String[size];
+        this.codes = new String[size];
+        this.paths = new String[size];
+        this.positions = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            positions.put(permissions[i].getId(), i);
+        }
+        for (int i = 0; i < size; i++) {
+            Permission p = permissions[i];
+            Integer parent = p.getParentId() == null ? null : positions.get(p.getParentId());
+            parents[i] = parent == null ? -1 : parent;
+            names[i] = lower(p.getName());
+            codes[i] = lower(p.getCode());
+            paths[i] = lower(p.getPath());
+        }
+    }
+
+    long revision() {
+        return revision;
+    }
+
+    /**
+     * 按状态和关键字（名称、编码、路径，不区分大小写）过滤后的权限树
+     */
+    List<PermissionVO> filter(Integer status, String keyword) {
+        String kw = StringUtils.hasText(keyword) ? keyword.trim().toLowerCase() : null;
+        return build(i -> (status == null || Objects.equals(permissions[i].getStatus(), status))
+                && (kw == null || contains(names[i], kw) || contains(codes[i], kw) || contains(paths[i], kw)));
+    }
+
+    /**
+     * 指定 ID 的权限组成的树（不存在的 ID 忽略）
+     */
+    List<PermissionVO> subtree(Collection<Long> ids) {
+        boolean[] selected = new boolean[permissions.length];
+        for (Long id : ids) {
+            Integer position = positions.get(id);
+            if (position != null) {
+                selected[position] = true;
+            }
+        }
+        return build(i -> selected[i]);
+    }
+
+    private List<PermissionVO> build(IntPredicate matches) {
+        PermissionVO[] vos = new PermissionVO[permissions.length];
+        List<PermissionVO> roots = new ArrayList<>();
+        // 父节点在排序中可能位于子节点之后，先创建全部命中节点再挂接
+        for (int i = 0; i < permissions.length; i++) {
+            if (matches.test(i)) {
+                vos[i] = PermissionService.toVO(permissions[i]);
+            }
+        }
+        for (int i = 0; i < permissions.length; i++) {
+            if (vos[i] == null) {
+                continue;
+            }
+            int parent = parents[i];
+            if (parent >= 0 && vos[parent] != null) {
+                vos[parent].getChildren().add(vos[i]);
+            } else {
+                roots.add(vos[i]);
+            }
+        }
+        return roots;
+    }
+
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase();
+    }
+
+    private static boolean contains(String value, String kw) {
+        return value != null && value.contains(kw);
+    }
+}
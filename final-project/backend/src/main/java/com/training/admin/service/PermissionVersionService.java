@@ -0,0 +1,187 @@
+package com.training.admin.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.training.admin.cache.RedisCircuitBreaker;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+/**
+ * 用户权限版本服务
+ *
+ * 每个用户在 Redis 中有一个权限版本号（perm:ver:{userId}），角色权限、用户角色或权限本身变更时递增。
+ * Token 中携带签发时的版本号，SecurityFilter 发现版本落后时自动重新加载权限并下发新 Token，
+ * 权限变更无需重新登录即可生效。
+ *
+ * 版本号在本地近端缓存，变更时通过 Redis 发布/订阅通知所有节点清除，请求链路上不访问数据库。
+ * 每次清除先递增用户所在分段的清除计数：读取 Redis 期间发生清除时不把读到的旧版本号写回近端缓存。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PermissionVersionService {
+
+    private static final String KEY_PREFIX = "perm:ver:";
+    private static final String CHANNEL = "perm:ver:changed";
+    private static final int INVALIDATION_STRIPES = 256;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    /**
+     * 近端缓存容量
+     */
+    @Value("${app.permission-version.near-cache.max-size:100000}")
+    private long nearCacheMaxSize;
+
+    /**
+     * 近端缓存最长保留时间（通知丢失时的兜底）
+     */
+    @Value("${app.permission-version.near-cache.ttl:60s}")
+    private Duration nearCacheTtl;
+
+    private Cache<Long, Long> nearCache;
+
+    /**
+     * 按用户ID分段的近端缓存清除次数
+     */
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    /**
+     * Redis 不可用时未能递增版本号的用户，熔断关闭后补做
+     */
+    private final Set<Long> pendingBumps = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaxSize)
+                .expireAfterWrite(nearCacheTtl)
+                .build();
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            for (String id : body.split(",")) {
+                if (!id.isEmpty()) {
+                    invalidate(Long.valueOf(id));
+                }
+            }
+        }, new ChannelTopic(CHANNEL));
+        circuitBreaker.addCloseListener(this::bumpPending);
+    }
+
+    /**
+     * 获取用户当前的权限版本号（近端缓存 -> Redis）
+     * Redis 访问经过熔断器：Redis 变慢或不可用时快速失败，不在每次近端缓存未命中时等待命令超时
+     *
+     * @return 版本号；Redis 不可用时返回 null（调用方跳过版本校验）
+     */
+    public Long currentVersion(Long userId) {
+        Long cached = nearCache.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = invalidations.get(stripe(userId));
+        Optional<String> value = circuitBreaker.call(
+                () -> Optional.ofNullable(redisTemplate.opsForValue().get(KEY_PREFIX + userId)), () -> null);
+        if (value == null) {
+            log.debug("读取用户 {} 的权限版本失败（Redis 不可用）", userId);
+            return null;
+        }
+        long version = value.map(Long::parseLong).orElse(0L);
+        // 写入后再次检查：读取期间或写入前后发生的清除可能已先于本次写入执行，此时撤销本次写入
+        if (invalidations.get(stripe(userId)) == stamp) {
+            nearCache.put(userId, version);
+            if (invalidations.get(stripe(userId)) != stamp) {
+                nearCache.invalidate(userId);
+            }
+        }
+        return version;
+    }
+
+    /**
+     * 递增用户的权限版本号（在当前事务提交后执行，无事务时立即执行）
+     * 使用 afterCompletion，保证在事务内登记的缓存清除（afterCommit）先于版本递增完成
+     *
+     * @param userIds 受影响的用户ID
+     */
+    public void bump(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(userIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        doBump(ids);
+                    }
+                }
+            });
+        } else {
+            doBump(ids);
+        }
+    }
+
+    /**
+     * 经过熔断器递增版本号：Redis 不可用时不等待命令超时，记录待递增的用户，熔断关闭后补做
+     */
+    private void doBump(List<Long> userIds) {
+        circuitBreaker.run(() -> {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (Long userId : userIds) {
+                    conn.incr(KEY_PREFIX + userId);
+                }
+                return null;
+            });
+            userIds.forEach(this::invalidate);
+            String ids = userIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+            redisTemplate.convertAndSend(CHANNEL, ids);
+            log.info("已递增 {} 个用户的权限版本", userIds.size());
+        }, () -> {
+            pendingBumps.addAll(userIds);
+            log.warn("Redis 不可用，{} 个用户的权限版本将在 Redis 恢复后递增", userIds.size());
+        });
+    }
+
+    private void invalidate(Long userId) {
+        invalidations.incrementAndGet(stripe(userId));
+        nearCache.invalidate(userId);
+    }
+
+    private static int stripe(Long userId) {
+        int h = userId.hashCode();
+        return (h ^ (h >>> 16)) & (INVALIDATION_STRIPES - 1);
+    }
+
+    private void bumpPending() {
+        if (pendingBumps.isEmpty()) {
+            return;
+        }
+        List<Long> userIds = List.copyOf(pendingBumps);
+        pendingBumps.removeAll(userIds);
+        doBump(userIds);
+    }
+}
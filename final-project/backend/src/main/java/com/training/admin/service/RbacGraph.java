@@ -0,0 +1,674 @@
+package com.training.admin.service;
+
+import com.training.admin.cache.RedisCircuitBreaker;
+import com.training.admin.entity.Menu;
+import com.training.admin.entity.Permission;
+import com.training.admin.entity.RoleMenu;
+import com.training.admin.entity.RolePermission;
+import com.training.admin.entity.User;
+import com.training.admin.entity.UserRole;
+import com.training.admin.repository.MenuRepository;
+import com.training.admin.repository.PermissionRepository;
+import com.training.admin.repository.RoleMenuRepository;
+import com.training.admin.repository.RolePermissionRepository;
+import com.training.admin.repository.RoleRepository;
+import com.training.admin.repository.UserRepository;
+import com.training.admin.repository.UserRoleRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 进程内 RBAC 授权图
+ *
+ * 授权数据（用户、角色、权限、菜单及其关联）体量小、读多写少，全部加载到内存后，
+ * PermissionCacheService 和 AuthService.profile 不再访问数据库：
+ * 1. 角色、权限、菜单 ID 映射为连续的 int 下标，角色 -> 权限、角色 -> 菜单用 BitSet 表示
+ * 2. 用户只保存 ID、用户名、昵称、状态和排序后的角色 ID 数组（不保存密码哈希）
+ * 3. 写操作在事务提交后调用 changed()：本节点从数据库重新加载变更的单个对象及其关联，
+ *    并通过 Redis 频道 rbac:graph:changed 通知其他节点做同样的增量更新
+ * 4. 应用就绪（ApplicationReadyEvent）后全量加载，加载完成前 upToDate() 为 false，调用方回退到数据库查询
+ *
+ * 跨节点一致性：其他节点收到通知前，本节点的图是旧的，此时用它回填 L2 会把旧数据写回集群共享的缓存。因此：
+ * 1. 每次变更在提交后、清除缓存前（最高优先级的事务同步）递增集群修订号 rbac:graph:revision，通知中携带该修订号
+ * 2. 各节点记录已连续应用到的修订号（通知可能乱序到达），upToDate() 要求已应用到集群当前修订号，
+ *    否则调用方查询数据库（此时数据库已提交）；缓存只在未命中时加载，读取修订号的开销只发生在回源时
+ * 3. 修订号长时间落后（通知丢失或增量更新失败）超过 app.rbac-graph.stale-reload-after 时，
+ *    在后台线程重新全量加载，不占用请求线程
+ * 4. Redis 不可用时无法递增修订号，变更在熔断关闭后补发
+ *
+ * 关闭授权图（app.rbac-graph.enabled=false）时不加载图，但修订号和变更通知照常维护：
+ * 权限树、菜单树快照（PermissionService、MenuService）依赖它们发现其他节点的变更。
+ *
+ * 通知格式：{节点ID}|{类型}|{ID,ID,...}|{修订号}，忽略本节点发出的通知。
+ * 批量变更（如删除权限、菜单子树）只递增一次修订号、发布一条通知。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RbacGraph {
+
+    private static final String CHANNEL = "rbac:graph:changed";
+    private static final String REVISION_KEY = "rbac:graph:revision";
+
+    /**
+     * 变更类型：USER-用户及其角色，ROLE-角色的权限和菜单关联，PERMISSION-权限，MENU-菜单
+     */
+    public enum Change {
+        USER, ROLE, PERMISSION, MENU
+    }
+
+    private final UserRepository userRepository;
+    private final UserRoleRepository userRoleRepository;
+    private final RoleRepository roleRepository;
+    private final RolePermissionRepository rolePermissionRepository;
+    private final RoleMenuRepository roleMenuRepository;
+    private final PermissionRepository permissionRepository;
+    private final MenuRepository menuRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    @Value("${app.rbac-graph.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 修订号落后超过该时间时在后台重新全量加载
+     */
+    @Value("${app.rbac-graph.stale-reload-after:10s}")
+    private Duration staleReloadAfter;
+
+    /**
+     * caughtUpCached() 读取集群修订号的最小间隔（期间依赖变更通知）
+     */
+    @Value("${app.rbac-graph.revision-check-interval:1s}")
+    private Duration revisionCheckInterval;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 增量更新计数：全量加载期间发生变更时重新加载
+     */
+    private final AtomicLong changeCount = new AtomicLong();
+
+    /**
+     * 权限修订号：本节点或其他节点的权限变更提交后递增（权限树快照据此判断是否过期）
+     */
+    private final AtomicLong permissionRevision = new AtomicLong();
+
+    /**
+     * 菜单修订号：菜单或角色（菜单关联）变更提交后递增（菜单树快照据此判断是否过期）
+     */
+    private final AtomicLong menuRevision = new AtomicLong();
+
+    private volatile Graph graph;
+
+    /**
+     * 已连续应用到的集群修订号，以及已应用但之前还有未到达修订号的部分（由 this 保护）
+     */
+    private long appliedRevision;
+    private final TreeSet<Long> appliedAhead = new TreeSet<>();
+
+    /**
+     * 修订号开始落后的时间（System.nanoTime），未落后时为 0
+     */
+    private final AtomicLong staleSince = new AtomicLong();
+
+    /**
+     * 已知的集群修订号最大值（收到的通知、本节点的递增、定期读取），caughtUpCached() 据此判断而不读取 Redis
+     */
+    private final AtomicLong knownRevision = new AtomicLong();
+
+    /**
+     * 下次读取集群修订号的时间（System.nanoTime），初始为构造时刻：首次调用即读取
+     */
+    private final AtomicLong nextRevisionCheck = new AtomicLong(System.nanoTime());
+
+    /**
+     * Redis 不可用时未能发布的变更，熔断关闭后补发
+     */
+    private final Queue<PendingChange> pendingChanges = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean reloading = new AtomicBoolean();
+    private final ThreadPoolExecutor reloadExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1), r -> {
+                Thread t = new Thread(r, "rbac-graph-reload");
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length == 4 && !nodeId.equals(parts[0])) {
+                List<Long> ids = Arrays.stream(parts[2].split(",")).map(Long::valueOf).toList();
+                long revision = Long.parseLong(parts[3]);
+                observe(revision);
+                apply(Change.valueOf(parts[1]), ids, revision);
+            }
+        }, new ChannelTopic(CHANNEL));
+        circuitBreaker.addCloseListener(this::publishPending);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reloadExecutor.shutdownNow();
+    }
+
+    /**
+     * 全量加载（应用就绪时、增量更新失败或修订号长时间落后时）
+     * 关闭授权图时只以集群当前修订号为起点，并使快照失效
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        // 先读修订号再读数据库：修订号在提交后递增，不大于它的变更都已包含在加载结果中
+        Long revision = clusterRevision();
+        if (enabled) {
+            loadGraph();
+        }
+        // 全量加载可能补上了丢失的通知：权限树、菜单树快照一并重建
+        permissionRevision.incrementAndGet();
+        menuRevision.incrementAndGet();
+        if (revision != null) {
+            observe(revision);
+            markLoaded(revision);
+        }
+    }
+
+    private void loadGraph() {
+        long start = System.currentTimeMillis();
+        Graph loaded;
+        long before;
+        do {
+            before = changeCount.get();
+            loaded = Graph.load(this);
+        } while (changeCount.get() != before);
+
+        lock.writeLock().lock();
+        try {
+            graph = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("RBAC 授权图加载完成，耗时 {} ms：用户 {}，角色 {}，权限 {}，菜单 {}",
+                System.currentTimeMillis() - start, loaded.users.size(), loaded.roleIndex.size(),
+                loaded.permissionIndex.size(), loaded.menuIndex.size());
+    }
+
+    /**
+     * 是否可以用授权图回源：已加载，且已应用集群内全部已提交的变更（否则调用方应查询数据库）
+     */
+    public boolean upToDate() {
+        return graph != null && caughtUp();
+    }
+
+    /**
+     * 本节点是否已应用集群内全部已提交的变更（菜单树等基于修订号的快照据此判断是否可能过期）
+     * 每次调用读取一次集群修订号（经过熔断器，Redis 不可用时 L2 也不会被回填，按最新处理）
+     */
+    public boolean caughtUp() {
+        Long revision = clusterRevision();
+        if (revision != null) {
+            observe(revision);
+        }
+        if (revision == null || revision <= appliedRevision()) {
+            staleSince.set(0);
+            return true;
+        }
+        long now = System.nanoTime();
+        if (!staleSince.compareAndSet(0, now) && now - staleSince.get() > staleReloadAfter.toNanos()) {
+            log.warn("授权图修订号落后于集群（{} < {}）超过 {}，后台重新加载", appliedRevision(), revision, staleReloadAfter);
+            reloadAsync();
+        }
+        return false;
+    }
+
+    /**
+     * 同 caughtUp()，但最多每隔 revisionCheckInterval 读取一次集群修订号，其余时候只比较已知的修订号
+     * 用于每次调用都会经过的内存快照（权限树、菜单树）：其他节点的变更通常由通知及时送达，
+     * 定期读取只兜底通知丢失的情况，落后的时间不超过该间隔
+     */
+    public boolean caughtUpCached() {
+        long now = System.nanoTime();
+        long next = nextRevisionCheck.get();
+        if (now - next >= 0 && nextRevisionCheck.compareAndSet(next, now + revisionCheckInterval.toNanos())) {
+            return caughtUp();
+        }
+        return knownRevision.get() <= appliedRevision();
+    }
+
+    /**
+     * 当前权限修订号
+     */
+    public long permissionRevision() {
+        return permissionRevision.get();
+    }
+
+    /**
+     * 当前菜单修订号
+     */
+    public long menuRevision() {
+        return menuRevision.get();
+    }
+
+    /**
+     * 记录变更：事务提交后增量更新本节点并通知其他节点
+     * 在缓存清除（默认顺序的事务同步）之前递增集群修订号：其他节点在 L2 被清除后回源时一定能发现自己落后
+     */
+    public void changed(Change type, Long id) {
+        if (id == null) {
+            return;
+        }
+        changed(type, List.of(id));
+    }
+
+    /**
+     * 记录同一类型的一批变更（如删除的子树）：只递增一次集群修订号、发布一条通知
+     */
+    public void changed(Change type, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Long> changedIds = List.copyOf(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyAndPublish(type, changedIds);
+                }
+
+                @Override
+                public int getOrder() {
+                    return Ordered.HIGHEST_PRECEDENCE;
+                }
+            });
+        } else {
+            applyAndPublish(type, changedIds);
+        }
+    }
+
+    // ========== 查询 ==========
+
+    /**
+     * 按用户名查找用户（只包含 ID、用户名、昵称和状态）
+     */
+    public Optional<User> findUser(String username) {
+        lock.readLock().lock();
+        try {
+            Long userId = graph.userIdsByName.get(username);
+            UserNode node = userId == null ? null : graph.users.get(userId);
+            return Optional.ofNullable(node).map(UserNode::toUser);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 用户的角色 ID（升序）
+     */
+    public List<Long> userRoleIds(Long userId) {
+        lock.readLock().lock();
+        try {
+            UserNode node = graph.users.get(userId);
+            return node == null ? List.of() : Arrays.stream(node.roleIds()).boxed().toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 角色持有的权限
+     */
+    public List<Permission> permissionsOfRole(Long roleId) {
+        lock.readLock().lock();
+        try {
+            Integer role = graph.roleIndex.get(roleId);
+            return role == null ? List.of() : collect(graph.rolePermissions.get(role), graph.permissions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 角色组合可见的菜单（各角色菜单的并集）
+     */
+    public List<Menu> menusOfRoles(Collection<Long> roleIds) {
+        lock.readLock().lock();
+        try {
+            BitSet union = new BitSet();
+            for (Long roleId : roleIds) {
+                Integer role = graph.roleIndex.get(roleId);
+                if (role != null) {
+                    union.or(graph.roleMenus.get(role));
+                }
+            }
+            return collect(union, graph.menus);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static <T> List<T> collect(BitSet bits, List<T> nodes) {
+        List<T> result = new ArrayList<>(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            T node = nodes.get(i);
+            if (node != null) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    // ========== 增量更新 ==========
+
+    private void applyAndPublish(Change type, List<Long> ids) {
+        Long revision = circuitBreaker.call(() -> redisTemplate.opsForValue().increment(REVISION_KEY), () -> null);
+        if (revision != null) {
+            observe(revision);
+        }
+        apply(type, ids, revision);
+        if (revision == null) {
+            pendingChanges.add(new PendingChange(type, ids));
+            log.warn("Redis 不可用，授权图变更 {} {} 将在 Redis 恢复后通知其他节点", type, ids);
+            return;
+        }
+        publish(type, ids, revision);
+    }
+
+    private void publish(Change type, List<Long> ids, long revision) {
+        String idList = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+        // 发布失败时其他节点发现修订号落后，超过 staleReloadAfter 后重新加载
+        circuitBreaker.run(() -> redisTemplate.convertAndSend(CHANNEL, nodeId + "|" + type + "|" + idList + "|" + revision),
+                () -> log.warn("发布授权图变更通知失败: {} {}", type, ids));
+    }
+
+    /**
+     * 熔断关闭后补发 Redis 不可用期间的变更（本节点已应用）
+     */
+    private void publishPending() {
+        PendingChange change;
+        while ((change = pendingChanges.poll()) != null) {
+            Long revision = circuitBreaker.call(() -> redisTemplate.opsForValue().increment(REVISION_KEY), () -> null);
+            if (revision == null) {
+                pendingChanges.add(change);
+                return;
+            }
+            observe(revision);
+            markApplied(revision);
+            publish(change.type(), change.ids(), revision);
+        }
+    }
+
+    /**
+     * 从数据库重新加载变更的对象（及其关联）并替换图中的对应部分，成功后记录已应用的修订号
+     * 权限、菜单按 ID 批量查询，在一次写锁内替换
+     *
+     * @param revision 变更的集群修订号，Redis 不可用时为 null
+     */
+    private void apply(Change type, List<Long> ids, Long revision) {
+        changeCount.incrementAndGet();
+        if (type == Change.PERMISSION) {
+            permissionRevision.incrementAndGet();
+        } else if (type == Change.MENU || type == Change.ROLE) {
+            menuRevision.incrementAndGet();
+        }
+        if (graph == null) {
+            // 未加载或关闭授权图：只更新修订号（加载时会包含本次变更）
+            if (revision != null) {
+                markApplied(revision);
+            }
+            return;
+        }
+        try {
+            switch (type) {
+                case USER -> ids.forEach(id -> {
+                    Optional<User> user = userRepository.findById(id);
+                    long[] roleIds = sortedIds(userRoleRepository.findByUserId(id), UserRole::getRoleId);
+                    write(g -> g.putUser(id, user.orElse(null), roleIds));
+                });
+                case ROLE -> ids.forEach(id -> {
+                    boolean exists = roleRepository.existsById(id);
+                    List<Long> permissionIds = rolePermissionRepository.findByRoleIdIn(List.of(id)).stream()
+                            .map(RolePermission::getPermissionId).toList();
+                    List<Long> menuIds = roleMenuRepository.findByRoleIdIn(List.of(id)).stream()
+                            .map(RoleMenu::getMenuId).toList();
+                    write(g -> g.putRole(id, exists, permissionIds, menuIds));
+                });
+                case PERMISSION -> {
+                    Map<Long, Permission> found = permissionRepository.findAllById(ids).stream()
+                            .collect(Collectors.toMap(Permission::getId, Function.identity()));
+                    write(g -> ids.forEach(id -> g.putNode(id, found.get(id), g.permissionIndex, g.permissions)));
+                }
+                case MENU -> {
+                    Map<Long, Menu> found = menuRepository.findAllById(ids).stream()
+                            .collect(Collectors.toMap(Menu::getId, Function.identity()));
+                    write(g -> ids.forEach(id -> g.putNode(id, found.get(id), g.menuIndex, g.menus)));
+                }
+            }
+        } catch (Exception e) {
+            // 增量更新失败：不记录该修订号（调用方回退到数据库），在后台重新全量加载
+            log.warn("授权图增量更新失败（{} {}），后台重新加载: {}", type, ids, e.getMessage());
+            reloadAsync();
+            return;
+        }
+        if (revision != null) {
+            markApplied(revision);
+        }
+    }
+
+    /**
+     * 在后台线程重新全量加载（同时只执行一次）
+     */
+    private void reloadAsync() {
+        if (!reloading.compareAndSet(false, true)) {
+            return;
+        }
+        reloadExecutor.execute(() -> {
+            try {
+                load();
+                staleSince.set(0);
+            } catch (Exception e) {
+                log.warn("授权图重新加载失败: {}", e.getMessage());
+            } finally {
+                reloading.set(false);
+            }
+        });
+    }
+
+    private Long clusterRevision() {
+        Optional<String> value = circuitBreaker.call(
+                () -> Optional.ofNullable(redisTemplate.opsForValue().get(REVISION_KEY)), () -> null);
+        return value == null ? null : value.map(Long::parseLong).orElse(0L);
+    }
+
+    private void observe(long revision) {
+        knownRevision.accumulateAndGet(revision, Math::max);
+    }
+
+    private synchronized long appliedRevision() {
+        return appliedRevision;
+    }
+
+    /**
+     * 记录已应用的修订号：只有之前的修订号都已应用时才推进（通知可能乱序到达）
+     */
+    private synchronized void markApplied(long revision) {
+        if (revision <= appliedRevision) {
+            return;
+        }
+        appliedAhead.add(revision);
+        while (appliedAhead.remove(appliedRevision + 1)) {
+            appliedRevision++;
+        }
+    }
+
+    /**
+     * 全量加载完成：加载前读到的修订号及之前的变更都已包含在内
+     */
+    private synchronized void markLoaded(long revision) {
+        appliedRevision = Math.max(appliedRevision, revision);
+        appliedAhead.headSet(appliedRevision, true).clear();
+        while (appliedAhead.remove(appliedRevision + 1)) {
+            appliedRevision++;
+        }
+    }
+
+    private void write(Consumer<Graph> update) {
+        lock.writeLock().lock();
+        try {
+            update.accept(graph);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static <T> long[] sortedIds(List<T> links, Function<T, Long> id) {
+        return links.stream().mapToLong(id::apply).distinct().sorted().toArray();
+    }
+
+    /**
+     * 等待补发的变更
+     */
+    private record PendingChange(Change type, List<Long> ids) {
+    }
+
+    /**
+     * 用户节点
+     */
+    private record UserNode(Long id, String username, String nickname, Integer status, long[] roleIds) {
+
+        User toUser() {
+            User user = new User();
+            user.setId(id);
+            user.setUsername(username);
+            user.setNickname(nickname);
+            user.setStatus(status);
+            return user;
+        }
+    }
+
+    /**
+     * 图数据（读写都在 RbacGraph 的读写锁内）
+     */
+    private static final class Graph {
+
+        private final Map<Long, UserNode> users = new HashMap<>();
+        private final Map<String, Long> userIdsByName = new HashMap<>();
+
+        private final Map<Long, Integer> roleIndex = new HashMap<>();
+        private final List<BitSet> rolePermissions = new ArrayList<>();
+        private final List<BitSet> roleMenus = new ArrayList<>();
+
+        private final Map<Long, Integer> permissionIndex = new HashMap<>();
+        private final List<Permission> permissions = new ArrayList<>();
+
+        private final Map<Long, Integer> menuIndex = new HashMap<>();
+        private final List<Menu> menus = new ArrayList<>();
+
+        static Graph load(RbacGraph source) {
+            Graph g = new Graph();
+            source.permissionRepository.findAll().forEach(p -> g.putNode(p.getId(), p, g.permissionIndex, g.permissions));
+            source.menuRepository.findAll().forEach(m -> g.putNode(m.getId(), m, g.menuIndex, g.menus));
+            source.roleRepository.findAll().forEach(r -> g.role(r.getId()));
+            for (RolePermission rp : source.rolePermissionRepository.findAll()) {
+                g.rolePermissions.get(g.role(rp.getRoleId())).set(g.index(rp.getPermissionId(), g.permissionIndex, g.permissions));
+            }
+            for (RoleMenu rm : source.roleMenuRepository.findAll()) {
+                g.roleMenus.get(g.role(rm.getRoleId())).set(g.index(rm.getMenuId(), g.menuIndex, g.menus));
+            }
+            Map<Long, List<UserRole>> userRoles = source.userRoleRepository.findAll().stream()
+                    .collect(Collectors.groupingBy(UserRole::getUserId));
+            for (User user : source.userRepository.findAll()) {
+                g.putUser(user.getId(), user, sortedIds(userRoles.getOrDefault(user.getId(), List.of()), UserRole::getRoleId));
+            }
+            return g;
+        }
+
+        void putUser(Long id, User user, long[] roleIds) {
+            UserNode previous = users.remove(id);
+            if (previous != null) {
+                userIdsByName.remove(previous.username());
+            }
+            if (user != null) {
+                users.put(id, new UserNode(id, user.getUsername(), user.getNickname(), user.getStatus(), roleIds));
+                userIdsByName.put(user.getUsername(), id);
+            }
+        }
+
+        void putRole(Long id, boolean exists, List<Long> permissionIds, List<Long> menuIds) {
+            int role = role(id);
+            BitSet permissionBits = new BitSet();
+            permissionIds.forEach(pid -> permissionBits.set(index(pid, permissionIndex, permissions)));
+            BitSet menuBits = new BitSet();
+            menuIds.forEach(mid -> menuBits.set(index(mid, menuIndex, menus)));
+            rolePermissions.set(role, permissionBits);
+            roleMenus.set(role, menuBits);
+            if (!exists) {
+                // 角色已删除：关联可能已由数据库级联删除，从用户的角色列表中移除
+                users.replaceAll((userId, node) -> Arrays.binarySearch(node.roleIds(), id) < 0 ? node
+                        : new UserNode(userId, node.username(), node.nickname(), node.status(),
+                        Arrays.stream(node.roleIds()).filter(r -> r != id).toArray()));
+            }
+        }
+
+        <T> void putNode(Long id, T node, Map<Long, Integer> index, List<T> nodes) {
+            nodes.set(index(id, index, nodes), node);
+        }
+
+        private int role(Long id) {
+            return roleIndex.computeIfAbsent(id, k -> {
+                rolePermissions.add(new BitSet());
+                roleMenus.add(new BitSet());
+                return rolePermissions.size() - 1;
+            });
+        }
+
+        /**
+         * ID -> 连续下标（首次出现时分配，删除的节点保留下标、值为 null）
+         */
+        private <T> int index(Long id, Map<Long, Integer> index, List<T> nodes) {
+            return index.computeIfAbsent(id, k -> {
+                nodes.add(null);
+                return nodes.size() - 1;
+            });
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.training.admin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.training.admin.common.PermissionSet;
+import com.training.admin.common.TokenClaims;
+import com.training.admin.util.DigestUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 引用令牌（不透明 Token）服务
+ *
+ * 登录时返回一个短随机串，用户名、权限版本和紧凑权限集合保存在 Redis（key 为 Token 的摘要）。
+ * 解析顺序：进程内 LRU -> Redis，不需要验签和解析 JSON 权限列表。
+ * 注销/吊销只需删除一个 key，并通过发布/订阅让所有节点清除本地缓存，均为 O(1)。
+ * 吊销后的令牌在本地缓存有效期内记为已吊销，并发解析或权限刷新都不能再把它写回缓存或 Redis。
+ */
+@Service
+@RequiredArgsConstructor
+public class ReferenceTokenService {
+
+    private static final String KEY_PREFIX = "auth:token:";
+    private static final String CHANNEL = "auth:token:revoked";
+    private static final String UPDATED_CHANNEL = "auth:token:updated";
+    private static final int TOKEN_BYTES = 32;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final PermissionDictionary permissionDictionary;
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${jwt.expiration}")
+    private Long expiration;
+
+    @Value("${auth.reference-token.local-cache.max-size:10000}")
+    private long localCacheMaxSize;
+
+    @Value("${auth.reference-token.local-cache.ttl:60s}")
+    private Duration localCacheTtl;
+
+    /**
+     * 本地热点缓存：key = Token 摘要
+     */
+    private Cache<String, TokenClaims> localCache;
+
+    /**
+     * 最近吊销的令牌摘要：保留一个本地缓存有效期，防止吊销前读到 Redis 的并发解析把令牌写回本地缓存
+     */
+    private Cache<String, Boolean> revoked;
+
+    @PostConstruct
+    public void init() {
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(localCacheMaxSize)
+                .expireAfterWrite(localCacheTtl)
+                .build();
+        this.revoked = Caffeine.newBuilder()
+                .maximumSize(localCacheMaxSize)
+                .expireAfterWrite(localCacheTtl)
+                .build();
+        listenerContainer.addMessageListener((message, pattern) ->
+                markRevoked(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+        listenerContainer.addMessageListener((message, pattern) ->
+                localCache.invalidate(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(UPDATED_CHANNEL));
+    }
+
+    /**
+     * 签发引用令牌
+     */
+    public String issue(Long userId, String username, List<String> permissions, long permissionVersion) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        store(DigestUtil.sha256(token), userId, username, permissions, permissionVersion,
+                System.currentTimeMillis() + expiration, false);
+        return token;
+    }
+
+    /**
+     * 解析引用令牌
+     *
+     * @return 令牌对应的声明；令牌不存在、已吊销或已过期时返回 null
+     */
+    public TokenClaims resolve(String token) {
+        String digest = DigestUtil.sha256(token);
+        TokenClaims cached = localCache.getIfPresent(digest);
+        if (cached != null) {
+            return cached.isExpired(System.currentTimeMillis()) ? null : cached;
+        }
+
+        String json = redisTemplate.opsForValue().get(KEY_PREFIX + digest);
+        if (json == null) {
+            return null;
+        }
+        return cache(digest, toClaims(read(json)));
+    }
+
+    /**
+     * 权限变更后原地更新令牌内容（令牌串和过期时间不变）
+     * 只覆盖仍存在的令牌（SET XX）：令牌已被吊销或已过期时不会被重新写回
+     *
+     * @return 更新后的声明；令牌已不存在时返回 null（按已吊销处理）
+     */
+    public TokenClaims update(String token, TokenClaims claims, List<String> permissions, long permissionVersion) {
+        String digest = DigestUtil.sha256(token);
+        TokenClaims updated = store(digest, claims.getUserId(), claims.getUsername(), permissions,
+                permissionVersion, claims.getExpiresAt(), true);
+        if (updated == null) {
+            localCache.invalidate(digest);
+            return null;
+        }
+        // 其他节点的本地缓存仍是旧权限，通知清除
+        redisTemplate.convertAndSend(UPDATED_CHANNEL, digest);
+        return updated;
+    }
+
+    /**
+     * 吊销令牌（注销）
+     */
+    public void revoke(String token) {
+        String digest = DigestUtil.sha256(token);
+        // 先记为已吊销再删除：删除前读到令牌的并发解析在写入本地缓存后会发现并移除
+        markRevoked(digest);
+        redisTemplate.delete(KEY_PREFIX + digest);
+        redisTemplate.convertAndSend(CHANNEL, digest);
+    }
+
+    private void markRevoked(String digest) {
+        revoked.put(digest, Boolean.TRUE);
+        localCache.invalidate(digest);
+    }
+
+    /**
+     * 写入本地缓存；令牌在此期间被吊销时移除并返回 null
+     */
+    private TokenClaims cache(String digest, TokenClaims claims) {
+        localCache.put(digest, claims);
+        if (revoked.getIfPresent(digest) != null) {
+            localCache.invalidate(digest);
+            return null;
+        }
+        return claims;
+    }
+
+    /**
+     * @param mustExist 为 true 时只覆盖已存在的令牌，令牌不存在时返回 null
+     */
+    private TokenClaims store(String digest, Long userId, String username, List<String> permissions,
+                              long permissionVersion, long expiresAt, boolean mustExist) {
+        PermissionDictionary.Encoded encoded = permissionDictionary.encode(permissions);
+        Entry entry = encoded != null
+                ? new Entry(userId, username, permissionVersion, expiresAt, encoded.version(), encoded.bits(), null)
+                : new Entry(userId, username, permissionVersion, expiresAt, null, null, permissions);
+
+        long ttl = expiresAt - System.currentTimeMillis();
+        if (ttl <= 0) {
+            return null;
+        }
+        String key = KEY_PREFIX + digest;
+        if (mustExist) {
+            if (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfPresent(key, write(entry), Duration.ofMillis(ttl)))) {
+                return null;
+            }
+        } else {
+            redisTemplate.opsForValue().set(key, write(entry), Duration.ofMillis(ttl));
+        }
+        return cache(digest, toClaims(entry));
+    }
+
+    private TokenClaims toClaims(Entry entry) {
+        PermissionSet permissions = entry.permissionBits() != null
+                ? permissionDictionary.decode(entry.permissionBits(), entry.dictionaryVersion())
+                : permissionDictionary.toPermissionSet(entry.permissions() != null ? entry.permissions() : List.of());
+        if (permissions == null) {
+            // 权限字典版本不一致：按权限版本落后处理，SecurityFilter 会重新加载权限并原地更新令牌
+            return new TokenClaims(entry.userId(), entry.username(), PermissionSet.EMPTY,
+                    TokenClaims.UNKNOWN_PERMISSION_VERSION, entry.expiresAt());
+        }
+        return new TokenClaims(entry.userId(), entry.username(), permissions,
+                entry.permissionVersion(), entry.expiresAt());
+    }
+
+    private String write(Entry entry) {
+        try {
+            return objectMapper.writeValueAsString(entry);
+        } catch (Exception e) {
+            throw new IllegalStateException("引用令牌序列化失败", e);
+        }
+    }
+
+    private Entry read(String json) {
+        try {
+            return objectMapper.readValue(json, Entry.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("引用令牌反序列化失败", e);
+        }
+    }
+
+    /**
+     * Redis 中保存的令牌内容
+     * 权限优先以紧凑 bitset 保存（permissionBits + dictionaryVersion），否则保存完整编码列表
+     */
+    record Entry(Long userId, String username, long permissionVersion, long expiresAt,
+                 Integer dictionaryVersion, String permissionBits, List<String> permissions) {
+    }
+}
@@ -0,0 +1,195 @@
+package com.training.admin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.admin.cache.RedisCircuitBreaker;
+import com.training.admin.exception.BusinessException;
+import com.training.admin.exception.RetryLaterException;
+import com.training.admin.util.DigestUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 刷新令牌服务
+ *
+ * 访问令牌（Access Token）有效期短，过期后用刷新令牌换取新的访问令牌，无需重新输入密码（不做 BCrypt）。
+ *
+ * 1. 刷新令牌为随机串，Redis 中只保存其 SHA-256 摘要（auth:refresh:{digest}），查找为 O(1)
+ * 2. 轮换：每个刷新令牌只能使用一次，使用后签发同一家族（family）的新刷新令牌
+ * 3. 重用检测：已使用过的令牌会留下标记（auth:refresh:used:{digest}），再次出现说明令牌可能被盗用，
+ *    立即吊销整个家族，合法用户和攻击者都需要重新登录。取出令牌和写入标记在同一个 Lua 脚本中执行，
+ *    并发的重放要么取到令牌、要么看到标记，不会落在两者之间
+ * 4. Redis 访问经过熔断器（RedisCircuitBreaker）：熔断打开或 Redis 报错时登录不签发刷新令牌（登录照常成功），
+ *    轮换返回 503，不在每次请求上等待命令超时，错误计入熔断器
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RefreshTokenService {
+
+    private static final String KEY_PREFIX = "auth:refresh:";
+    private static final String USED_KEY_PREFIX = "auth:refresh:used:";
+    private static final String FAMILY_KEY_PREFIX = "auth:refresh:family:";
+    private static final String REUSED = "reused";
+    private static final int TOKEN_BYTES = 32;
+
+    /**
+     * 取出刷新令牌并留下已使用标记：KEYS[1] 令牌，KEYS[2] 已使用标记，ARGV[1] 标记有效期（毫秒）
+     * 返回 {'ok', 令牌内容}；令牌已使用过时返回 {'reused', 家族ID}；不存在时返回空列表
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> TAKE_SCRIPT = new DefaultRedisScript<>("""
+            local json = redis.call('GETDEL', KEYS[1])
+            if not json then
+                local family = redis.call('GET', KEYS[2])
+                if family then
+                    return {'reused', family}
+                end
+                return {}
+            end
+            redis.call('SET', KEYS[2], cjson.decode(json)['familyId'], 'PX', ARGV[1])
+            return {'ok', json}
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * 刷新令牌有效期（每次轮换后重新计算）
+     */
+    @Value("${auth.refresh-token.expiration:7d}")
+    private Duration expiration;
+
+    /**
+     * 签发新家族的刷新令牌（登录时调用）
+     *
+     * @return 刷新令牌；Redis 不可用时返回 null（只下发访问令牌，过期后需重新登录）
+     */
+    public String issue(Long userId, String username) {
+        Entry entry = new Entry(userId, username, randomString());
+        return circuitBreaker.call(() -> issue(entry), () -> {
+            log.warn("Redis 不可用，用户 {} 登录未签发刷新令牌", username);
+            return null;
+        });
+    }
+
+    /**
+     * 轮换刷新令牌：校验并作废旧令牌，签发同一家族的新令牌
+     *
+     * @throws BusinessException   401：令牌无效、已过期、已吊销或被重复使用
+     * @throws RetryLaterException 503：Redis 不可用（熔断打开或操作失败）
+     */
+    public Rotated rotate(String refreshToken) {
+        String digest = DigestUtil.sha256(refreshToken);
+        List<?> taken = circuitBreaker.call(() -> redisTemplate.execute(TAKE_SCRIPT,
+                List.of(KEY_PREFIX + digest, USED_KEY_PREFIX + digest), String.valueOf(expiration.toMillis())),
+                () -> null);
+        if (taken == null) {
+            throw unavailable();
+        }
+        if (taken.isEmpty()) {
+            throw new BusinessException(401, "登录已过期，请重新登录");
+        }
+        if (REUSED.equals(taken.get(0))) {
+            // 已轮换过的令牌再次出现：吊销整个家族
+            String family = (String) taken.get(1);
+            circuitBreaker.run(() -> {
+                redisTemplate.delete(FAMILY_KEY_PREFIX + family);
+                log.warn("检测到刷新令牌重复使用，已吊销令牌家族: {}", family);
+            }, () -> log.error("检测到刷新令牌重复使用，但 Redis 不可用，未能吊销令牌家族: {}", family));
+            throw new BusinessException(401, "登录已过期，请重新登录");
+        }
+
+        Entry entry = read((String) taken.get(1));
+        Optional<String> current = circuitBreaker.call(
+                () -> Optional.ofNullable(redisTemplate.opsForValue().get(FAMILY_KEY_PREFIX + entry.familyId())),
+                () -> null);
+        if (current == null) {
+            throw unavailable();
+        }
+        if (current.filter(digest::equals).isEmpty()) {
+            // 家族已被吊销（重用检测或注销）
+            throw new BusinessException(401, "登录已过期，请重新登录");
+        }
+
+        String token = circuitBreaker.call(() -> issue(entry), () -> null);
+        if (token == null) {
+            throw unavailable();
+        }
+        return new Rotated(entry.userId(), entry.username(), token);
+    }
+
+    /**
+     * 吊销刷新令牌所在的整个家族（注销时调用）
+     */
+    public void revoke(String refreshToken) {
+        String digest = DigestUtil.sha256(refreshToken);
+        Optional<String> json = circuitBreaker.call(
+                () -> Optional.ofNullable(redisTemplate.opsForValue().getAndDelete(KEY_PREFIX + digest)), () -> null);
+        if (json == null) {
+            log.warn("Redis 不可用，刷新令牌未能吊销，将在过期后失效");
+            return;
+        }
+        json.map(this::read).ifPresent(entry -> circuitBreaker.run(
+                () -> redisTemplate.delete(FAMILY_KEY_PREFIX + entry.familyId()),
+                () -> log.warn("Redis 不可用，刷新令牌家族 {} 未能吊销，将在过期后失效", entry.familyId())));
+    }
+
+    private static RetryLaterException unavailable() {
+        return new RetryLaterException(503, "服务暂时不可用，请稍后重试", 1);
+    }
+
+    private String issue(Entry entry) {
+        String token = randomString();
+        String digest = DigestUtil.sha256(token);
+        redisTemplate.opsForValue().set(KEY_PREFIX + digest, write(entry), expiration);
+        redisTemplate.opsForValue().set(FAMILY_KEY_PREFIX + entry.familyId(), digest, expiration);
+        return token;
+    }
+
+    private String randomString() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private String write(Entry entry) {
+        try {
+            return objectMapper.writeValueAsString(entry);
+        } catch (Exception e) {
+            throw new IllegalStateException("刷新令牌序列化失败", e);
+        }
+    }
+
+    private Entry read(String json) {
+        try {
+            return objectMapper.readValue(json, Entry.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("刷新令牌反序列化失败", e);
+        }
+    }
+
+    /**
+     * Redis 中保存的刷新令牌内容
+     */
+    record Entry(Long userId, String username, String familyId) {
+    }
+
+    /**
+     * 轮换结果
+     */
+    public record Rotated(Long userId, String username, String refreshToken) {
+    }
+}
@@ -1,5 +1,6 @@
 package com.training.admin.service;
 
+import com.training.admin.common.UserCacheEvictionEvent;
 import com.training.admin.dto.RoleCreateDTO;
 import com.training.admin.dto.RoleQueryDTO;
 import com.training.admin.dto.RoleUpdateDTO;
@@ -12,12 +13,12 @@ import com.training.admin.repository.RoleMenuRepository;
 import com.training.admin.repository.RolePermissionRepository;
 import com.training.admin.repository.PermissionRepository;
 import com.training.admin.repository.MenuRepository;
-import com.training.admin.repository.UserRepository;
 import com.training.admin.service.PermissionCacheService;
 import com.training.admin.vo.RoleVO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -44,7 +45,9 @@ public class RoleService {
     private final PermissionRepository permissionRepository;
     private final MenuRepository menuRepository;
     private final PermissionCacheService permissionCacheService;
-    private final UserRepository userRepository;
+    private final MenuService menuService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RbacGraph rbacGraph;
 
     public Page<RoleVO> page(RoleQueryDTO query) {
         Pageable pageable = PageRequest.of(query.getPage(), query.getSize(), Sort.by(Sort.Direction.DESC, "createTime"));
@@ -112,6 +115,7 @@ public class RoleService {
             throw new BusinessException(404, "角色不存在");
         }
         roleRepository.deleteById(id);
+        rbacGraph.changed(RbacGraph.Change.ROLE, id);
     }
 
     public RoleVO toggleStatus(Long id) {
@@ -132,16 +136,15 @@ public class RoleService {
     /**
      * 保存角色权限（带缓存清除和变更通知）
      * 优化：只清除受影响用户的缓存，而不是清除所有缓存
+     * 
+     * @return 受影响的用户数
      */
     @Transactional
-    public void savePermissions(Long roleId, List<Long> permIds) {
+    public long savePermissions(Long roleId, List<Long> permIds) {
         if (!roleRepository.existsById(roleId)) {
             throw new BusinessException(404, "角色不存在");
         }
         
-        // 获取变更前受影响的用户（在删除旧权限之前）
-        List<Long> affectedUserIds = permissionCacheService.getAffectedUserIds(roleId);
-        
         // 删除旧权限
         rolePermissionRepository.deleteAll(rolePermissionRepository.findByRoleIdIn(List.of(roleId)));
         
@@ -155,25 +158,18 @@ public class RoleService {
             }).toList();
             rolePermissionRepository.saveAll(list);
         }
+        rbacGraph.changed(RbacGraph.Change.ROLE, roleId);
         
-        // 优化：只清除受影响用户的缓存，而不是清除所有缓存
-        if (!affectedUserIds.isEmpty()) {
-            log.info("角色 {} 的权限已变更，受影响用户数: {}", roleId, affectedUserIds.size());
-            log.info("受影响用户ID: {}", affectedUserIds);
-            
-            // 逐个清除受影响用户的权限缓存和个人信息缓存
-            for (Long userId : affectedUserIds) {
-                // 清除用户权限缓存
-                permissionCacheService.evictUserPermissions(userId);
-                
-                // 清除用户个人信息缓存（因为权限变更会影响 profile）
-                userRepository.findById(userId).ifPresent(user -> {
-                    permissionCacheService.evictUserProfile(user.getUsername());
-                });
-            }
-        } else {
-            log.info("角色 {} 的权限已变更，无受影响用户", roleId);
+        // 优化：只清除该角色的权限缓存（成员用户的权限由角色缓存合并得到，无需逐个清除）
+        permissionCacheService.evictRolePermissions(roleId);
+        
+        // 受影响用户只统计数量，事务提交后由监听器分批查询、清除个人信息缓存并递增权限版本（不阻塞响应）
+        long affectedUserCount = permissionCacheService.countAffectedUsers(List.of(roleId));
+        log.info("角色 {} 的权限已变更，受影响用户数: {}", roleId, affectedUserCount);
+        if (affectedUserCount > 0) {
+            eventPublisher.publishEvent(UserCacheEvictionEvent.permissionsChanged(List.of(roleId), "角色 " + roleId + " 的权限已变更"));
         }
+        return affectedUserCount;
     }
 
     public List<Long> menuIds(Long roleId) {
@@ -197,6 +193,11 @@ public class RoleService {
             }).toList();
             roleMenuRepository.saveAll(list);
         }
+        rbacGraph.changed(RbacGraph.Change.ROLE, roleId);
+        
+        // 清除角色组合菜单树缓存，事务提交后异步分批清除成员用户的个人信息缓存
+        menuService.evictMenuTrees();
+        eventPublisher.publishEvent(UserCacheEvictionEvent.menusChanged(List.of(roleId), "角色 " + roleId + " 的菜单已变更"));
     }
 
     private RoleVO toVO(Role role) {
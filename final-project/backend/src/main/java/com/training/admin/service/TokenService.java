@@ -0,0 +1,88 @@
+package com.training.admin.service;
+
+import com.training.admin.common.TokenClaims;
+import com.training.admin.util.JwtUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Token 服务：统一签发、解析、刷新和吊销两种类型的 Token
+ *
+ * - jwt：自包含的 JWT（JwtUtil），无状态
+ * - opaque：引用令牌（ReferenceTokenService），内容保存在 Redis，支持 O(1) 注销
+ *
+ * 签发类型由 auth.token-type 决定；解析时按 Token 形态自动识别（JWT 含 '.'，引用令牌不含），
+ * 切换配置期间两种 Token 均可使用。
+ */
+@Service
+@RequiredArgsConstructor
+public class TokenService {
+
+    private final JwtUtil jwtUtil;
+    private final ReferenceTokenService referenceTokenService;
+
+    /**
+     * 签发的 Token 类型：jwt / opaque
+     */
+    @Value("${auth.token-type:jwt}")
+    private String tokenType;
+
+    /**
+     * 签发 Token
+     */
+    public String issue(Long userId, String username, List<String> permissions, long permissionVersion) {
+        if ("opaque".equalsIgnoreCase(tokenType)) {
+            return referenceTokenService.issue(userId, username, permissions, permissionVersion);
+        }
+        return jwtUtil.generateToken(userId, username, permissions, permissionVersion);
+    }
+
+    /**
+     * 解析 Token
+     *
+     * @return 声明；Token 无效、过期或已吊销时返回 null
+     */
+    public TokenClaims resolve(String token) {
+        return isJwt(token) ? jwtUtil.parseToken(token) : referenceTokenService.resolve(token);
+    }
+
+    /**
+     * 权限版本落后时刷新 Token
+     * JWT 会重新签发（保持原过期时间）；引用令牌原地更新，令牌串不变
+     *
+     * @return 刷新结果；newToken 为需要下发给客户端的新 Token（引用令牌为 null）
+     */
+    public Refreshed refresh(String token, TokenClaims claims, List<String> permissions, long permissionVersion) {
+        if (!isJwt(token)) {
+            TokenClaims updated = referenceTokenService.update(token, claims, permissions, permissionVersion);
+            return updated != null ? new Refreshed(updated, null) : null;
+        }
+        String newToken = jwtUtil.generateToken(claims.getUserId(), claims.getUsername(), permissions,
+                permissionVersion, new Date(claims.getExpiresAt()));
+        TokenClaims refreshed = jwtUtil.parseToken(newToken);
+        return refreshed != null ? new Refreshed(refreshed, newToken) : null;
+    }
+
+    /**
+     * 吊销 Token（JWT 为无状态 Token，无法吊销，等待自然过期）
+     */
+    public void revoke(String token) {
+        if (!isJwt(token)) {
+            referenceTokenService.revoke(token);
+        }
+    }
+
+    private boolean isJwt(String token) {
+        return token.indexOf('.') >= 0;
+    }
+
+    /**
+     * Token 刷新结果
+     */
+    public record Refreshed(TokenClaims claims, String newToken) {
+    }
+}
@@ -0,0 +1,192 @@
+package com.training.admin.service;
+
+import com.training.admin.cache.RedisCircuitBreaker;
+import com.training.admin.cache.TwoLevelCacheManager;
+import com.training.admin.common.UserCacheEvictionEvent;
+import com.training.admin.repository.UserRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户缓存批量清除
+ *
+ * 在事务提交后异步执行，不阻塞 HTTP 响应。按用户ID游标分批（每批 1000 个）处理拥有变更角色的用户，
+ * 内存占用与批大小成正比，与角色成员数无关：
+ * 1. 查询本批用户ID（只查 ID）和用户名（一次 IN 查询）
+ * 2. userProfile 通过流水线多 key DEL 批量清除，各节点 L1 收到一条通知
+ *    （权限编码由角色权限缓存合并得到，角色条目由调用方单独清除）
+ * 3. 本批缓存清除完成后再递增权限版本，保证 Token 刷新时读到的是新权限
+ *
+ * 失败处理（异步执行，异常无法返回给调用方）：
+ * 1. 本批清除失败（如查询用户名出错）时按 retry-backoff 间隔重试，仍失败则清空整个 userProfile 缓存
+ *    （递增代数，O(1)），清空也失败时标记为脏，由熔断器恢复时清空；本批用户的权限版本照常递增
+ * 2. 查询受影响用户失败时从上一批的最后一个用户ID继续重试，仍失败则清空 userProfile，
+ *    剩余用户的权限版本无法递增，其 Token 在过期后按新权限签发
+ *
+ * 指标：cache.eviction.batch.size（每次事件清除的用户数）、cache.eviction.latency（清除耗时）
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserCacheEvictionListener {
+
+    /**
+     * 每批处理的用户数（游标分页大小和 IN 查询的最大 ID 数）
+     */
+    private static final int CHUNK_SIZE = 1000;
+    private static final String PROFILE_CACHE = "userProfile";
+
+    private final UserRepository userRepository;
+    private final PermissionCacheService permissionCacheService;
+    private final CacheManager cacheManager;
+    private final PermissionVersionService permissionVersionService;
+    private final MeterRegistry meterRegistry;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    /**
+     * 每批清除（以及查询受影响用户）的最大尝试次数
+     */
+    @Value("${app.user-cache-eviction.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * 重试间隔（按尝试次数线性增加）
+     */
+    @Value("${app.user-cache-eviction.retry-backoff:200ms}")
+    private Duration retryBackoff;
+
+    private DistributionSummary batchSize;
+    private Timer latency;
+
+    @PostConstruct
+    public void init() {
+        this.batchSize = DistributionSummary.builder("cache.eviction.batch.size")
+                .description("每次批量清除的用户数")
+                .register(meterRegistry);
+        this.latency = Timer.builder("cache.eviction.latency")
+                .description("批量清除用户缓存的耗时")
+                .register(meterRegistry);
+    }
+
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEviction(UserCacheEvictionEvent event) {
+        List<Long> roleIds = event.roleIds();
+        if (roleIds == null || roleIds.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        // 已处理的最后一个用户ID和用户数（查询失败时从这里继续）
+        long[] cursor = {0};
+        long[] total = {0};
+        boolean profilesCleared = false;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                permissionCacheService.forEachAffectedUserChunk(roleIds, cursor[0], CHUNK_SIZE, userIds -> {
+                    evictWithRetry(userIds, event.reason());
+                    // 递增本批用户的权限版本，其 Token 在下一次请求时自动刷新
+                    if (event.bumpVersion()) {
+                        permissionVersionService.bump(userIds);
+                    }
+                    cursor[0] = userIds.get(userIds.size() - 1);
+                    total[0] += userIds.size();
+                });
+                break;
+            } catch (RuntimeException e) {
+                if (attempt < maxAttempts) {
+                    log.warn("{}：查询受影响用户失败（第 {} 次），从用户ID {} 之后重试: {}",
+                            event.reason(), attempt, cursor[0], e.getMessage());
+                    if (backoff(attempt)) {
+                        continue;
+                    }
+                }
+                log.error("{}：查询受影响用户失败，清空全部个人信息缓存，用户ID {} 之后的用户权限版本未递增",
+                        event.reason(), cursor[0], e);
+                clearProfiles();
+                profilesCleared = true;
+                break;
+            }
+        }
+        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSize.record(total[0]);
+        if (!profilesCleared) {
+            log.info("{}：已清除 {} 个用户的个人信息缓存", event.reason(), total[0]);
+        }
+    }
+
+    private void evictWithRetry(List<Long> userIds, String reason) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                evict(userIds);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt < maxAttempts) {
+                    log.warn("{}：清除 {} 个用户的个人信息缓存失败（第 {} 次），重试: {}",
+                            reason, userIds.size(), attempt, e.getMessage());
+                    if (backoff(attempt)) {
+                        continue;
+                    }
+                }
+                log.error("{}：清除 {} 个用户的个人信息缓存失败，清空全部个人信息缓存", reason, userIds.size(), e);
+                clearProfiles();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 清空整个个人信息缓存（递增代数；Redis 不可用时由缓存自身标记为脏），清空失败时标记为脏
+     */
+    private void clearProfiles() {
+        try {
+            Cache profiles = cacheManager.getCache(PROFILE_CACHE);
+            if (profiles != null) {
+                profiles.clear();
+            }
+        } catch (RuntimeException e) {
+            circuitBreaker.markDirty(PROFILE_CACHE);
+            log.warn("清空个人信息缓存失败，已标记为待恢复: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 等待下一次重试，线程被中断时返回 false（不再重试）
+     */
+    private boolean backoff(int attempt) {
+        try {
+            Thread.sleep(retryBackoff.toMillis() * attempt);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void evict(List<Long> userIds) {
+        List<String> usernames = userRepository.findUsernamesByIdIn(userIds);
+
+        if (cacheManager instanceof TwoLevelCacheManager twoLevelCacheManager) {
+            twoLevelCacheManager.evictAll(PROFILE_CACHE, usernames);
+            return;
+        }
+        Cache profiles = cacheManager.getCache(PROFILE_CACHE);
+        if (profiles != null) {
+            usernames.forEach(profiles::evict);
+        }
+    }
+}
@@ -32,6 +32,8 @@ public class UserService {
     private final UserRoleRepository userRoleRepository;
     private final PermissionCacheService permissionCacheService;
     private final PasswordUtil passwordUtil;
+    private final PermissionVersionService permissionVersionService;
+    private final RbacGraph rbacGraph;
 
     public Page<UserVO> pageUsers(UserQueryDTO queryDTO) {
         Pageable pageable = PageRequest.of(queryDTO.getPage(), queryDTO.getSize(), Sort.by(Sort.Direction.DESC, "createTime"));
@@ -74,6 +76,7 @@ public class UserService {
         user.setCreateTime(LocalDateTime.now());
         user.setUpdateTime(LocalDateTime.now());
         user = userRepository.save(user);
+        rbacGraph.changed(RbacGraph.Change.USER, user.getId());
         return toVO(user);
     }
 
@@ -91,6 +94,7 @@ public class UserService {
         }
         user.setUpdateTime(LocalDateTime.now());
         user = userRepository.save(user);
+        rbacGraph.changed(RbacGraph.Change.USER, user.getId());
         
         // 清除用户个人信息缓存（因为用户信息变更会影响 profile）
         permissionCacheService.evictUserProfile(user.getUsername());
@@ -103,6 +107,7 @@ public class UserService {
             throw new BusinessException(404, "用户不存在");
         }
         userRepository.deleteById(id);
+        rbacGraph.changed(RbacGraph.Change.USER, id);
     }
 
     public UserVO toggleStatus(Long id) {
@@ -111,6 +116,7 @@ public class UserService {
         user.setStatus(user.getStatus() != null && user.getStatus() == 1 ? 0 : 1);
         user.setUpdateTime(LocalDateTime.now());
         user = userRepository.save(user);
+        rbacGraph.changed(RbacGraph.Change.USER, user.getId());
         
         // 清除用户权限缓存和个人信息缓存（因为用户状态变更会影响权限和 profile）
         permissionCacheService.evictUserPermissions(user.getId());
@@ -140,12 +146,16 @@ public class UserService {
             }).toList();
             userRoleRepository.saveAll(list);
         }
+        rbacGraph.changed(RbacGraph.Change.USER, userId);
         
         // 清除用户权限缓存和个人信息缓存
         permissionCacheService.evictUserPermissions(userId);
         userRepository.findById(userId).ifPresent(user -> {
             permissionCacheService.evictUserProfile(user.getUsername());
         });
+        
+        // 递增用户权限版本，其 Token 在下一次请求时自动刷新
+        permissionVersionService.bump(List.of(userId));
     }
 
     private UserVO toVO(User user) {
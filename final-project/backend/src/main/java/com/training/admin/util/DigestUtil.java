@@ -0,0 +1,30 @@
+package com.training.admin.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * 摘要工具
+ */
+public final class DigestUtil {
+
+    private DigestUtil() {
+    }
+
+    /**
+     * 计算 SHA-256 摘要（Base64 URL 编码，无填充）
+     * 用于以 Token 摘要作为缓存 key，避免明文 Token 出现在缓存或 Redis 中
+     */
+    public static String sha256(String value) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(value.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // JDK 必须提供 SHA-256，不会发生
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,26 +1,81 @@
 package com.training.admin.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.training.admin.common.PermissionSet;
+import com.training.admin.common.TokenClaims;
+import com.training.admin.service.PermissionDictionary;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Component
+@RequiredArgsConstructor
 public class JwtUtil {
-    
+
+    /**
+     * 权限声明：完整编码列表（默认格式）
+     */
+    private static final String CLAIM_PERMISSIONS = "permissions";
+
+    /**
+     * 权限声明：紧凑格式（Base64 bitset + 字典版本）
+     */
+    private static final String CLAIM_PERMISSION_BITS = "pb";
+    private static final String CLAIM_DICTIONARY_VERSION = "pdv";
+
+    /**
+     * 用户 ID 与签发时的用户权限版本号（用于权限变更后自动刷新 Token）
+     */
+    private static final String CLAIM_USER_ID = "uid";
+    private static final String CLAIM_PERMISSION_VERSION = "ver";
+
+    private final PermissionDictionary permissionDictionary;
+
     @Value("${jwt.secret}")
     private String secret;
-    
+
     @Value("${jwt.expiration}")
     private Long expiration;
-    
-    private SecretKey getSigningKey() {
+
+    /**
+     * 已验签 Token 的本地缓存容量
+     */
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+
+    /**
+     * 权限声明格式：list（完整编码列表）/ bitset（紧凑格式）
+     * 两种格式的 Token 在校验时都会被接受
+     */
+    @Value("${jwt.permission-format:list}")
+    private String permissionFormat;
+
+    // 密钥和解析器只构建一次（JwtParser 线程安全）
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    /**
+     * 已验签的 Token 声明缓存
+     * key = Token 的 SHA-256 摘要，条目在 Token 的 exp 时刻过期
+     */
+    private Cache<String, TokenClaims> claimsCache;
+
+    @PostConstruct
+    public void init() {
         byte[] keyBytes = secret.getBytes();
         // HS512 算法要求密钥至少 64 字节 (512 位)
         if (keyBytes.length < 64) {
@@ -30,70 +85,176 @@ public class JwtUtil {
                 "Please update jwt.secret in application.yml to a key with at least 64 bytes."
             );
         }
-        return Keys.hmacShaKeyFor(keyBytes);
+        this.signingKey = Keys.hmacShaKeyFor(keyBytes);
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.claimsCache = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new Expiry<String, TokenClaims>() {
+                    @Override
+                    public long expireAfterCreate(String key, TokenClaims value, long currentTime) {
+                        long remainingMillis = value.getExpiresAt() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, TokenClaims value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, TokenClaims value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
-    
+
     /**
      * 生成 JWT Token（包含权限列表）
+     * 没有用户ID的 Token 无法在权限字典变化后重新签发，权限始终以完整列表格式写入
      * @param username 用户名
      * @param permissions 权限编码列表
      */
     public String generateToken(String username, List<String> permissions) {
+        return generateToken(null, username, permissions, 0L);
+    }
+
+    /**
+     * 生成 JWT Token（包含权限列表和用户权限版本号）
+     * @param userId 用户ID
+     * @param username 用户名
+     * @param permissions 权限编码列表
+     * @param permissionVersion 用户当前的权限版本号
+     */
+    public String generateToken(Long userId, String username, List<String> permissions, long permissionVersion) {
         Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + expiration);
-        
-        return Jwts.builder()
+        return generateToken(userId, username, permissions, permissionVersion, new Date(now.getTime() + expiration));
+    }
+
+    /**
+     * 生成 JWT Token（指定过期时间，用于权限变更后刷新 Token 而不延长会话）
+     */
+    public String generateToken(Long userId, String username, List<String> permissions, long permissionVersion,
+                                Date expiryDate) {
+        JwtBuilder builder = Jwts.builder()
                 .setSubject(username)
-                .claim("permissions", permissions)  // 将权限列表存入 JWT
-                .setIssuedAt(now)
-                .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                .setIssuedAt(new Date())
+                .setExpiration(expiryDate);
+        if (userId != null) {
+            builder.claim(CLAIM_USER_ID, userId)
+                    .claim(CLAIM_PERMISSION_VERSION, permissionVersion);
+        }
+        putPermissions(builder, permissions, userId != null);
+        return builder
+                .signWith(signingKey, SignatureAlgorithm.HS512)
                 .compact();
     }
-    
+
     /**
      * 生成 JWT Token（兼容旧版本，无权限）
      */
     public String generateToken(String username) {
         return generateToken(username, List.of());
     }
-    
+
+    /**
+     * 解析并验证 Token（每个 Token 只验签一次）
+     *
+     * 先按 Token 摘要查本地缓存，未命中时验签并解析一次，结果缓存到 Token 过期为止
+     *
+     * @param token JWT Token
+     * @return 已验签的声明；Token 无效或已过期时返回 null
+     */
+    public TokenClaims parseToken(String token) {
+        String digest = DigestUtil.sha256(token);
+        TokenClaims cached = claimsCache.getIfPresent(digest);
+        if (cached != null) {
+            return cached.isExpired(System.currentTimeMillis()) ? null : cached;
+        }
+
+        TokenClaims claims;
+        try {
+            claims = toTokenClaims(jwtParser.parseClaimsJws(token).getBody());
+        } catch (Exception e) {
+            return null;
+        }
+        claimsCache.put(digest, claims);
+        return claims;
+    }
+
     public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        return claims.getSubject();
+        return jwtParser.parseClaimsJws(token).getBody().getSubject();
     }
-    
+
     /**
      * 从 Token 中提取权限列表
      */
-    @SuppressWarnings("unchecked")
     public List<String> getPermissionsFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        Object permissions = claims.get("permissions");
+        return extractPermissions(jwtParser.parseClaimsJws(token).getBody());
+    }
+
+    public boolean validateToken(String token) {
+        return parseToken(token) != null;
+    }
+
+    /**
+     * 写入权限声明
+     * 紧凑格式下存 bitset + 字典版本；存在字典外的编码时退回完整列表。
+     * 紧凑格式的 Token 在字典版本变化后按权限版本落后处理（依赖用户ID重新加载权限），
+     * 因此没有用户ID的 Token（refreshable = false）只使用完整列表
+     */
+    private void putPermissions(JwtBuilder builder, List<String> permissions, boolean refreshable) {
+        if (refreshable && "bitset".equalsIgnoreCase(permissionFormat)) {
+            PermissionDictionary.Encoded encoded = permissionDictionary.encode(permissions);
+            if (encoded != null) {
+                builder.claim(CLAIM_PERMISSION_BITS, encoded.bits())
+                        .claim(CLAIM_DICTIONARY_VERSION, encoded.version());
+                return;
+            }
+        }
+        builder.claim(CLAIM_PERMISSIONS, permissions);  // 将权限列表存入 JWT
+    }
+
+    private TokenClaims toTokenClaims(Claims claims) {
+        Date exp = claims.getExpiration();
+        long expiresAt = exp != null ? exp.getTime() : Long.MAX_VALUE;
+        Long userId = claims.get(CLAIM_USER_ID, Long.class);
+        Long permissionVersion = claims.get(CLAIM_PERMISSION_VERSION, Long.class);
+        PermissionSet permissions = extractPermissionSet(claims);
+        if (permissions == null) {
+            // 权限字典版本不一致：不使用 Token 中的权限，按权限版本落后处理（重新加载权限并下发新 Token）
+            return new TokenClaims(userId, claims.getSubject(), PermissionSet.EMPTY,
+                    TokenClaims.UNKNOWN_PERMISSION_VERSION, expiresAt);
+        }
+        return new TokenClaims(userId, claims.getSubject(), permissions,
+                permissionVersion != null ? permissionVersion : 0L, expiresAt);
+    }
+
+    /**
+     * 解析权限声明：紧凑格式直接解码为权限集合，完整列表格式按编码转换
+     * 紧凑格式的字典版本与当前字典不一致时返回 null
+     */
+    private PermissionSet extractPermissionSet(Claims claims) {
+        String bits = claims.get(CLAIM_PERMISSION_BITS, String.class);
+        if (bits != null) {
+            Integer version = claims.get(CLAIM_DICTIONARY_VERSION, Integer.class);
+            return permissionDictionary.decode(bits, version != null ? version : 0);
+        }
+        return permissionDictionary.toPermissionSet(extractPermissions(claims));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> extractPermissions(Claims claims) {
+        if (claims.containsKey(CLAIM_PERMISSION_BITS)) {
+            PermissionSet permissions = extractPermissionSet(claims);
+            return permissions != null ? permissions.codes() : List.of();
+        }
+        Object permissions = claims.get(CLAIM_PERMISSIONS);
         if (permissions instanceof List) {
             return (List<String>) permissions;
         }
         return List.of();
     }
-    
-    public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
-    }
 }
-
@@ -1,12 +1,20 @@
 package com.training.admin.util;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Component;
 
 @Component
 public class PasswordUtil {
     
-    private final BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
+    private final BCryptPasswordEncoder encoder;
+
+    /**
+     * @param strength BCrypt 计算强度（cost，4~31，每加 1 耗时翻倍），调整后旧密码在下次登录时自动重新哈希
+     */
+    public PasswordUtil(@Value("${app.password.bcrypt-strength:10}") int strength) {
+        this.encoder = new BCryptPasswordEncoder(strength);
+    }
     
     public String encode(String rawPassword) {
         return encoder.encode(rawPassword);
@@ -15,5 +23,11 @@ public class PasswordUtil {
     public boolean matches(String rawPassword, String encodedPassword) {
         return encoder.matches(rawPassword, encodedPassword);
     }
-}
 
+    /**
+     * 已保存的哈希强度是否低于当前配置（需要重新哈希）
+     */
+    public boolean upgradeEncoding(String encodedPassword) {
+        return encoder.upgradeEncoding(encodedPassword);
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 @Data
 public class LoginVO {
     private String token;
+    private String refreshToken;
     private String username;
     private String nickname;
 }
@@ -7,6 +7,8 @@ DROP TABLE IF EXISTS sys_role_permission;
 DROP TABLE IF EXISTS sys_role_menu;
 DROP TABLE IF EXISTS sys_user;
 DROP TABLE IF EXISTS sys_role;
+DROP TABLE IF EXISTS sys_permission_closure;
+DROP TABLE IF EXISTS sys_menu_closure;
 DROP TABLE IF EXISTS sys_permission;
 DROP TABLE IF EXISTS sys_menu;
 DROP TABLE IF EXISTS sys_dict;
@@ -81,6 +83,15 @@ CREATE TABLE sys_permission (
   KEY idx_perm_status (status)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- 权限闭包表（每对祖先-后代一行，depth 为层级差，自身为 0）
+CREATE TABLE sys_permission_closure (
+  ancestor_id BIGINT NOT NULL,
+  descendant_id BIGINT NOT NULL,
+  depth INT NOT NULL,
+  PRIMARY KEY (ancestor_id, descendant_id),
+  KEY idx_pc_descendant (descendant_id, depth)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
 -- 角色-菜单关联表
 CREATE TABLE sys_role_menu (
   role_id BIGINT NOT NULL,
@@ -108,6 +119,15 @@ CREATE TABLE sys_menu (
   KEY idx_menu_status (status)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- 菜单闭包表
+CREATE TABLE sys_menu_closure (
+  ancestor_id BIGINT NOT NULL,
+  descendant_id BIGINT NOT NULL,
+  depth INT NOT NULL,
+  PRIMARY KEY (ancestor_id, descendant_id),
+  KEY idx_mc_descendant (descendant_id, depth)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
 -- 字典表 (避免使用SQL关键字 value 和 type)
 CREATE TABLE sys_dict (
   id BIGINT AUTO_INCREMENT,
@@ -0,0 +1,227 @@
+package com.training.admin.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.training.admin.vo.MenuVO;
+import com.training.admin.vo.ProfileVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryCacheSerializerTest {
+
+    private final GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer(objectMapper());
+    private final BinaryCacheSerializer binary = new BinaryCacheSerializer(json, 1024, true);
+
+    @Test
+    void stringListRoundTrip() {
+        List<String> codes = Arrays.asList("sys:user:list", null, "", "系统:菜单:查看");
+
+        assertThat(binary.deserialize(binary.serialize(codes))).isEqualTo(codes);
+        assertThat(binary.deserialize(binary.serialize(List.of()))).isEqualTo(List.of());
+    }
+
+    @Test
+    void longListRoundTrip() {
+        List<Long> ids = List.of(0L, 1L, -1L, 127L, 128L, Long.MAX_VALUE, Long.MIN_VALUE);
+
+        assertThat(binary.deserialize(binary.serialize(ids))).isEqualTo(ids);
+    }
+
+    @Test
+    void profileRoundTrip() {
+        ProfileVO profile = profile(3);
+        profile.getMenus().get(0).setIcon(null);
+        profile.getMenus().get(0).setSort(null);
+        profile.getMenus().get(1).setChildren(null);
+
+        byte[] bytes = binary.serialize(profile);
+
+        assertThat(bytes[0]).isEqualTo((byte) 0xB1);
+        assertThat(binary.deserialize(bytes)).isEqualTo(profile);
+    }
+
+    @Test
+    void profileWithNullCollectionsRoundTrip() {
+        ProfileVO profile = new ProfileVO();
+        profile.setUsername("admin");
+
+        assertThat(binary.deserialize(binary.serialize(profile))).isEqualTo(profile);
+    }
+
+    @Test
+    void largeValuesAreCompressedAndSmallerThanJson() {
+        ProfileVO profile = profile(200);
+        BinaryCacheSerializer uncompressed = new BinaryCacheSerializer(json, 0, true);
+
+        byte[] compressed = binary.serialize(profile);
+        byte[] raw = uncompressed.serialize(profile);
+        byte[] jsonBytes = json.serialize(profile);
+
+        System.out.printf("profile with 200 menus: json=%d bytes, binary=%d bytes, compressed=%d bytes%n",
+                jsonBytes.length, raw.length, compressed.length);
+        assertThat(compressed[2] & 1).isEqualTo(1);
+        assertThat(raw[2] & 1).isZero();
+        assertThat(compressed.length).isLessThan(raw.length);
+        assertThat(raw.length).isLessThan(jsonBytes.length / 2);
+        assertThat(binary.deserialize(compressed)).isEqualTo(profile);
+        assertThat(uncompressed.deserialize(compressed)).isEqualTo(profile);
+    }
+
+    @Test
+    void smallValuesAreNotCompressed() {
+        byte[] bytes = binary.serialize(List.of("sys:user:list"));
+
+        assertThat(bytes[2] & 1).isZero();
+    }
+
+    @Test
+    void unsupportedTypesUseFallback() {
+        Map<String, Object> value = Map.of("name", "admin");
+
+        byte[] bytes = binary.serialize(value);
+
+        assertThat(bytes[0]).isEqualTo((byte) '{');
+        assertThat(binary.deserialize(bytes)).isEqualTo(value);
+    }
+
+    @Test
+    void formatsCanBeSwitchedInBothDirections() {
+        BinaryCacheSerializer jsonWriter = new BinaryCacheSerializer(json, 1024, false);
+        List<String> codes = List.of("sys:user:list", "sys:role:list");
+
+        byte[] written = jsonWriter.serialize(codes);
+
+        assertThat(written[0]).isNotEqualTo((byte) 0xB1);
+        assertThat(binary.deserialize(written)).isEqualTo(codes);
+        assertThat(jsonWriter.deserialize(binary.serialize(codes))).isEqualTo(codes);
+    }
+
+    @Test
+    void rejectsTruncatedAndUnknownVersions() {
+        byte[] bytes = binary.serialize(List.of("sys:user:list", "sys:role:list"));
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+        byte[] future = bytes.clone();
+        future[1] = 99;
+
+        assertThatThrownBy(() -> binary.deserialize(truncated)).isInstanceOf(SerializationException.class);
+        assertThatThrownBy(() -> binary.deserialize(future)).isInstanceOf(SerializationException.class);
+    }
+
+    /**
+     * 编解码耗时和每个缓存的 Redis 值大小（-Dbenchmark=true 时运行）：
+     * JSON 为改造前 CacheConfig 的序列化器（userProfile 用 Jackson2JsonRedisSerializer，其他缓存用 GenericJackson2JsonRedisSerializer）
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void codecCostAndFootprintPerCache() {
+        ObjectMapper objectMapper = objectMapper();
+        RedisSerializer<Object> profileJson =
+                new Jackson2JsonRedisSerializer<>(objectMapper, objectMapper.constructType(ProfileVO.class));
+        BinaryCacheSerializer profileBinary = new BinaryCacheSerializer(profileJson, 1024, true);
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            codes.add("sys:module" + i + ":list");
+        }
+        List<MenuVO> menuTree = profile(20).getMenus();
+
+        System.out.printf("%-22s %8s %8s %10s %10s %10s %10s %10s %10s%n", "cache (value)", "json B", "binary B",
+                "json enc", "bin enc", "json dec", "bin dec", "json B/op", "bin B/op");
+        report("userProfile (20 menus)", profile(20), profileJson, profileBinary);
+        report("userProfile (200 menus)", profile(200), profileJson, profileBinary);
+        report("permissionSets (40)", codes, json, binary);
+        report("rolePermissions (40)", codes, json, binary);
+        report("userRoles (3)", List.of(1L, 2L, 3L), json, binary);
+        report("menuTrees (20 menus)", menuTree, json, binary);
+    }
+
+    private static void report(String cache, Object value, RedisSerializer<Object> json, BinaryCacheSerializer binary) {
+        byte[] jsonBytes = json.serialize(value);
+        byte[] binaryBytes = binary.serialize(value);
+        // 大值减少轮数，每项计时约 0.5 秒
+        int rounds = Math.max(500, Math.min(20_000, 5_000_000 / jsonBytes.length));
+        long[] jsonEncode = time(rounds, () -> json.serialize(value).length);
+        long[] binaryEncode = time(rounds, () -> binary.serialize(value).length);
+        long[] jsonDecode = time(rounds, () -> json.deserialize(jsonBytes) != null ? 1 : 0);
+        long[] binaryDecode = time(rounds, () -> binary.deserialize(binaryBytes) != null ? 1 : 0);
+        System.out.printf("%-22s %8d %8d %8.2fus %8.2fus %8.2fus %8.2fus %10d %10d%n", cache, jsonBytes.length,
+                binaryBytes.length, jsonEncode[0] / 1e3, binaryEncode[0] / 1e3, jsonDecode[0] / 1e3,
+                binaryDecode[0] / 1e3, jsonEncode[1] + jsonDecode[1], binaryEncode[1] + binaryDecode[1]);
+        assertThat(binary.deserialize(binaryBytes)).isEqualTo(value);
+    }
+
+    /**
+     * 预热后计时，返回 {每次耗时（纳秒），每次分配字节数}
+     */
+    private static long[] time(int rounds, java.util.function.IntSupplier op) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long sink = 0;
+        for (int i = 0; i < rounds; i++) {
+            sink += op.getAsInt();
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += op.getAsInt();
+        }
+        long nanos = System.nanoTime() - start;
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+        assertThat(sink).isPositive();
+        return new long[]{nanos / rounds, allocated / rounds};
+    }
+
+    static ProfileVO profile(int menuCount) {
+        List<MenuVO> menus = new ArrayList<>();
+        List<String> permissions = new ArrayList<>();
+        for (int i = 0; i < menuCount; i++) {
+            MenuVO menu = menu(i + 1L, null, "菜单" + i);
+            menu.getChildren().add(menu(1000L + i, i + 1L, "子菜单" + i));
+            menus.add(menu);
+            permissions.add("sys:module" + i + ":list");
+        }
+        ProfileVO profile = new ProfileVO();
+        profile.setUsername("admin");
+        profile.setNickname("管理员");
+        profile.setRoles(List.of("ADMIN", "USER"));
+        profile.setPermissions(permissions);
+        profile.setMenus(menus);
+        return profile;
+    }
+
+    private static MenuVO menu(Long id, Long parentId, String name) {
+        MenuVO menu = new MenuVO();
+        menu.setId(id);
+        menu.setParentId(parentId);
+        menu.setName(name);
+        menu.setCode("menu:" + id);
+        menu.setPath("/menu/" + id);
+        menu.setComponent("views/Menu" + id);
+        menu.setIcon("icon-" + id);
+        menu.setSort(id.intValue());
+        menu.setStatus(1);
+        menu.setCreateTime(LocalDateTime.of(2024, 1, 2, 3, 4, 5, 123_456_789));
+        menu.setUpdateTime(LocalDateTime.of(1969, 12, 31, 23, 59, 59));
+        return menu;
+    }
+
+    static ObjectMapper objectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return objectMapper;
+    }
+}
@@ -0,0 +1,223 @@
+package com.training.admin.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class CacheGenerationsTest {
+
+    private StringRedisTemplate redisTemplate;
+    private ValueOperations<String, String> valueOps;
+    private RedisCircuitBreaker breaker;
+    private CacheGenerations generations;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        breaker = new RedisCircuitBreaker(redisTemplate, new TwoLevelCacheProperties.CircuitBreaker(),
+                new SimpleMeterRegistry());
+        generations = new CacheGenerations(redisTemplate, breaker, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        breaker.shutdown();
+    }
+
+    @Test
+    void clearIsOneIncrementRegardlessOfCacheSize() {
+        when(valueOps.get("cache:gen:userProfile")).thenReturn("3");
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("cache:gen:userProfile")), eq("3")))
+                .thenReturn(4L);
+        // 模拟 1 万个 key 的访问：只读一次代数，之后全部命中本地
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(generations.compute("userProfile")).isEqualTo("userProfile::3::");
+        }
+
+        assertThat(generations.next("userProfile")).isEqualTo(4L);
+
+        assertThat(generations.compute("userProfile")).isEqualTo("userProfile::4::");
+        // 清空不遍历、不删除任何 key：一次 GET（首次加载）+ 一次脚本调用
+        verify(valueOps, times(1)).get("cache:gen:userProfile");
+        verifyNoMoreInteractions(valueOps);
+        verify(redisTemplate, times(1)).opsForValue();
+        verify(redisTemplate).execute(any(RedisScript.class), anyList(), any());
+        verifyNoMoreInteractions(redisTemplate);
+    }
+
+    @Test
+    void outOfOrderNotificationsNeverMoveBackwards() {
+        when(valueOps.get(anyString())).thenReturn(null);
+
+        generations.advance("menus", 7);
+        generations.advance("menus", 5);
+
+        assertThat(generations.current("menus")).isEqualTo(7);
+    }
+
+    @Test
+    void clearAfterCounterLossStartsAboveLocalGeneration() {
+        // 计数器丢失：Redis 中没有代数，本地仍是 7；脚本以本地代数为下限
+        when(valueOps.get(anyString())).thenReturn(null);
+        generations.advance("menus", 7);
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("cache:gen:menus")), eq("7")))
+                .thenReturn(8L);
+
+        assertThat(generations.next("menus")).isEqualTo(8L);
+        assertThat(generations.compute("menus")).isEqualTo("menus::8::");
+    }
+
+    @Test
+    void periodicRefreshFollowsRedisEvenWhenLower() {
+        CacheGenerations refreshing = new CacheGenerations(redisTemplate, breaker, Duration.ZERO);
+        when(valueOps.get("cache:gen:menus")).thenReturn("7", "2");
+
+        assertThat(refreshing.current("menus")).isEqualTo(7);
+        // 其他节点在计数器丢失后重建了计数器并清空：本节点不再停留在旧命名空间
+        assertThat(refreshing.current("menus")).isEqualTo(2);
+    }
+
+    @Test
+    void clearWhileRedisIsDownMarksCacheDirty() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any()))
+                .thenThrow(new IllegalStateException("connection refused"));
+        for (int i = 0; i < 5; i++) {
+            generations.next("menus");
+        }
+        assertThat(breaker.isOpen()).isTrue();
+
+        assertThat(generations.next("menus")).isEqualTo(-1);
+        // 熔断打开后不再访问 Redis
+        verify(redisTemplate, times(5)).execute(any(RedisScript.class), anyList(), any());
+    }
+
+    /**
+     * 前缀计算在每次 L2 访问的路径上：代数在本地缓存，计算本身应为纳秒级
+     */
+    @Test
+    void prefixComputationCost() {
+        when(valueOps.get(anyString())).thenReturn("1");
+        int rounds = 1_000_000;
+        long sink = 0;
+        for (int i = 0; i < rounds; i++) {
+            sink += generations.compute("roles").length();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += generations.compute("roles").length();
+        }
+        double nanosPerCall = (System.nanoTime() - start) / (double) rounds;
+
+        System.out.printf("cache generations: %.1f ns per prefix computation%n", nanosPerCall);
+        assertThat(sink).isPositive();
+        // 宽松上限，避免在繁忙的 CI 机器上误报
+        assertThat(nanosPerCall).isLessThan(5_000);
+    }
+
+    /**
+     * 清空耗时对比（-Dbenchmark=true 时运行）：原 RedisCache.clear（默认批量策略 KEYS 匹配 + DEL）与递增代数。
+     * Redis 由进程内的键空间替身模拟（命令在调用线程中串行执行，与 Redis 单线程一致），
+     * 只比较服务端工作量，不含网络往返；KEYS 执行期间真实 Redis 无法处理其他命令
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void clearCostAgainstKeyScan() {
+        long[] counter = {0};
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any()))
+                .thenAnswer(invocation -> ++counter[0]);
+
+        for (int size : new int[]{100_000, 1_000_000}) {
+            Map<String, byte[]> keyspace = new HashMap<>(size * 2);
+            long[] keysNanos = {0};
+            RedisConnection connection = mock(RedisConnection.class);
+            when(connection.keys(any(byte[].class))).thenAnswer(invocation -> {
+                long start = System.nanoTime();
+                String pattern = new String(invocation.getArgument(0, byte[].class), StandardCharsets.UTF_8);
+                String prefix = pattern.substring(0, pattern.length() - 1);
+                Set<byte[]> matched = new HashSet<>();
+                for (String key : keyspace.keySet()) {
+                    if (key.startsWith(prefix)) {
+                        matched.add(key.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                keysNanos[0] = System.nanoTime() - start;
+                return matched;
+            });
+            when(connection.del(any(byte[][].class))).thenAnswer(invocation -> {
+                long deleted = 0;
+                for (Object key : invocation.getRawArguments()) {
+                    for (byte[] bytes : (byte[][]) key) {
+                        deleted += keyspace.remove(new String(bytes, StandardCharsets.UTF_8)) != null ? 1 : 0;
+                    }
+                }
+                return deleted;
+            });
+            RedisConnectionFactory connectionFactory = mock(RedisConnectionFactory.class);
+            when(connectionFactory.getConnection()).thenReturn(connection);
+            RedisCacheWriter writer = RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory);
+            byte[] value = new byte[64];
+
+            int rounds = 3;
+            long scanNanos = 0;
+            long keysCommandNanos = 0;
+            for (int round = 0; round <= rounds; round++) {
+                for (int i = 0; i < size; i++) {
+                    keyspace.put("userProfile::user" + i, value);
+                }
+                long start = System.nanoTime();
+                writer.clean("userProfile", "userProfile::*".getBytes(StandardCharsets.UTF_8));
+                // 第 0 轮为预热
+                if (round > 0) {
+                    scanNanos += System.nanoTime() - start;
+                    keysCommandNanos += keysNanos[0];
+                }
+                assertThat(keyspace).isEmpty();
+            }
+
+            int increments = 10_000;
+            for (int i = 0; i < increments; i++) {
+                generations.next("userProfile");
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < increments; i++) {
+                generations.next("userProfile");
+            }
+            double incrementMicros = (System.nanoTime() - start) / 1_000.0 / increments;
+
+            System.out.printf("cache clear, %,d keys: KEYS+DEL %.1f ms (KEYS command %.1f ms), "
+                            + "generation increment %.2f us%n", size, scanNanos / 1e6 / rounds,
+                    keysCommandNanos / 1e6 / rounds, incrementMicros);
+        }
+    }
+}
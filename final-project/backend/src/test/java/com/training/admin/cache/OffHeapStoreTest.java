@@ -0,0 +1,196 @@
+package com.training.admin.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.training.admin.vo.ProfileVO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapStoreTest {
+
+    private static final int CAPACITY = 40;
+
+    private final AtomicInteger serializations = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void wrapsToStartWithoutSplittingEntries() {
+        OffHeapStore store = store(Duration.ofMinutes(1));
+        store.put("a", "a".repeat(16));
+        store.put("b", "b".repeat(16));
+        // 剩余 8 字节放不下：跳到开头，覆盖 a，b 不受影响
+        store.put("c", "c".repeat(16));
+
+        assertThat(store.get("a")).isNull();
+        assertThat(store.get("b")).isEqualTo("b".repeat(16));
+        assertThat(store.get("c")).isEqualTo("c".repeat(16));
+        assertThat(gauge("cache.offheap.entries")).isEqualTo(2);
+        assertThat(gauge("cache.offheap.used")).isEqualTo(32);
+    }
+
+    @Test
+    void evictsInWriteOrderAndSkipsReplacedEntries() {
+        OffHeapStore store = store(Duration.ofMinutes(1));
+        store.put("a", "a".repeat(10));
+        store.put("b", "b".repeat(10));
+        store.put("a", "A".repeat(10));
+        // 覆盖最早写入的区域：旧的 a 已被替换只出队，b 被淘汰
+        store.put("c", "c".repeat(20));
+
+        assertThat(store.get("a")).isEqualTo("A".repeat(10));
+        assertThat(store.get("b")).isNull();
+        assertThat(store.get("c")).isEqualTo("c".repeat(20));
+        assertThat(gauge("cache.offheap.used")).isEqualTo(30);
+    }
+
+    @Test
+    void oversizedValueRemovesPreviousEntry() {
+        OffHeapStore store = store(Duration.ofMinutes(1));
+        store.put("a", "a".repeat(10));
+        store.put("a", "a".repeat(CAPACITY + 1));
+
+        assertThat(store.get("a")).isNull();
+        assertThat(gauge("cache.offheap.used")).isZero();
+    }
+
+    @Test
+    void expiredEntryIsMiss() throws InterruptedException {
+        OffHeapStore store = store(Duration.ofMillis(1));
+        store.put("a", "alice");
+        Thread.sleep(5);
+
+        assertThat(store.get("a")).isNull();
+    }
+
+    @Test
+    void putBytesCopiesWithoutSerializing() {
+        OffHeapStore store = store(Duration.ofMinutes(1));
+        store.putBytes("a", "alice".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(store.get("a")).isEqualTo("alice");
+        assertThat(serializations).hasValue(0);
+    }
+
+    /**
+     * 堆内与堆外保存同样数量的个人信息（-Dbenchmark=true 时运行）：
+     * 比较 Full GC 后的堆占用、一次 Full GC 的停顿，以及读取 + 请求分配负载期间的 GC 次数和耗时
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void heapAndGcAgainstOnHeapCache() {
+        int profiles = 20_000;
+        var objectMapper = BinaryCacheSerializerTest.objectMapper();
+        BinaryCacheSerializer serializer = new BinaryCacheSerializer(
+                new Jackson2JsonRedisSerializer<>(objectMapper, objectMapper.constructType(ProfileVO.class)), 1024, true);
+        System.out.printf("off-heap benchmark: %,d profiles (20 menus each), gc=%s, max heap=%d MB%n", profiles,
+                ManagementFactory.getGarbageCollectorMXBeans().stream().map(GarbageCollectorMXBean::getName).toList(),
+                Runtime.getRuntime().maxMemory() >> 20);
+
+        long baseline = heapAfterGc();
+        Cache<String, ProfileVO> onHeap = Caffeine.newBuilder().maximumSize(profiles).build();
+        for (int i = 0; i < profiles; i++) {
+            onHeap.put("user" + i, BinaryCacheSerializerTest.profile(20));
+        }
+        report("on-heap caffeine", baseline, profiles, onHeap::getIfPresent);
+        onHeap.invalidateAll();
+        onHeap.cleanUp();
+        onHeap = null;
+
+        baseline = heapAfterGc();
+        OffHeapStore offHeap = new OffHeapStore("userProfile", 64 << 20, Duration.ofMinutes(10),
+                RedisSerializationContext.SerializationPair.fromSerializer(serializer), meterRegistry);
+        for (int i = 0; i < profiles; i++) {
+            offHeap.put("user" + i, BinaryCacheSerializerTest.profile(20));
+        }
+        report("off-heap store", baseline, profiles, offHeap::get);
+        System.out.printf("off-heap store: %.1f MB direct memory used%n",
+                meterRegistry.get("cache.offheap.used").tag("cache", "userProfile").gauge().value() / (1 << 20));
+    }
+
+    private static void report(String tier, long baseline, int profiles, Function<String, Object> reader) {
+        long retained = Math.max(heapAfterGc() - baseline, 0);
+        long start = System.nanoTime();
+        System.gc();
+        long fullGcMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // 请求负载：每次读取一个个人信息，另外分配 16 KB 的短命对象（模拟请求处理）
+        int requests = 200_000;
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long sink = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            Object profile = reader.apply("user" + ThreadLocalRandom.current().nextInt(profiles));
+            sink += profile != null ? 1 : 0;
+            sink += new byte[16 * 1024].length;
+        }
+        double micros = (System.nanoTime() - start) / 1_000.0 / requests;
+        assertThat(sink).isGreaterThan(requests);
+
+        System.out.printf("%-16s: retained heap %6.1f MB, full gc %4d ms, load: %d gcs / %d ms, %.2f us per request%n",
+                tier, retained / (double) (1 << 20), fullGcMillis, gcCount() - gcCount, gcMillis() - gcMillis, micros);
+    }
+
+    private static long heapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private OffHeapStore store(Duration ttl) {
+        return new OffHeapStore("users", CAPACITY, ttl,
+                RedisSerializationContext.SerializationPair.fromSerializer(countingSerializer(serializations)),
+                meterRegistry);
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("cache", "users").gauge().value();
+    }
+
+    /**
+     * 字符串按 UTF-8 编码（长度可预期），记录序列化次数
+     */
+    static RedisSerializer<Object> countingSerializer(AtomicInteger serializations) {
+        return new RedisSerializer<>() {
+            @Override
+            public byte[] serialize(Object value) {
+                serializations.incrementAndGet();
+                return ((String) value).getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public Object deserialize(byte[] bytes) {
+                return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+}
@@ -0,0 +1,190 @@
+package com.training.admin.cache;
+
+import com.training.admin.service.ActiveUserTracker;
+import com.training.admin.service.PermissionVersionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 故障注入：Redis 变慢或报错时熔断打开、调用方快速降级，探测成功后关闭并补做未同步的操作
+ */
+class RedisCircuitBreakerTest {
+
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final Duration SLOW_CALL = Duration.ofMillis(20);
+
+    private StringRedisTemplate redisTemplate;
+    private RedisCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        TwoLevelCacheProperties.CircuitBreaker config = new TwoLevelCacheProperties.CircuitBreaker();
+        config.setFailureThreshold(FAILURE_THRESHOLD);
+        config.setSlowCallThreshold(SLOW_CALL);
+        config.setProbeInterval(Duration.ofMillis(50));
+        breaker = new RedisCircuitBreaker(redisTemplate, config, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        breaker.shutdown();
+    }
+
+    @Test
+    void slowCallsTripBreakerAndLaterCallsFailFast() {
+        AtomicInteger invocations = new AtomicInteger();
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            // 慢调用仍返回结果，只计入失败次数
+            assertThat(breaker.call(() -> {
+                invocations.incrementAndGet();
+                sleep(SLOW_CALL.toMillis() + 10);
+                return "value";
+            }, () -> "fallback")).isEqualTo("value");
+        }
+        assertThat(breaker.isOpen()).isTrue();
+
+        long start = System.nanoTime();
+        assertThat(breaker.call(() -> {
+            invocations.incrementAndGet();
+            sleep(SLOW_CALL.toMillis() + 10);
+            return "value";
+        }, () -> "fallback")).isEqualTo("fallback");
+        assertThat(System.nanoTime() - start).isLessThan(SLOW_CALL.toNanos());
+        assertThat(invocations).hasValue(FAILURE_THRESHOLD);
+    }
+
+    @Test
+    void successResetsConsecutiveFailures() {
+        for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+            breaker.run(() -> {
+                throw new IllegalStateException("timeout");
+            }, () -> { });
+        }
+        breaker.run(() -> { }, () -> { });
+        breaker.run(() -> {
+            throw new IllegalStateException("timeout");
+        }, () -> { });
+
+        assertThat(breaker.isOpen()).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void guardedCallerStopsCallingRedisWhileOpen() {
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
+        when(zSetOps.add(anyString(), anyString(), anyDouble()))
+                .thenThrow(new IllegalStateException("Command timed out"));
+        ActiveUserTracker tracker = new ActiveUserTracker(redisTemplate, breaker);
+        ReflectionTestUtils.setField(tracker, "activeWindow", Duration.ofDays(7));
+
+        for (int i = 0; i < 10; i++) {
+            tracker.touch("admin");
+        }
+
+        assertThat(breaker.isOpen()).isTrue();
+        verify(zSetOps, times(FAILURE_THRESHOLD)).add(anyString(), anyString(), anyDouble());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void probeClosesBreakerAndReplaysSkippedWork() throws Exception {
+        List<String> recovered = new CopyOnWriteArrayList<>();
+        List<Boolean> openDuringRecovery = new CopyOnWriteArrayList<>();
+        breaker.setRecoveryHandler(name -> {
+            openDuringRecovery.add(breaker.isOpen());
+            recovered.add(name);
+        });
+        PermissionVersionService versions = new PermissionVersionService(redisTemplate,
+                mock(RedisMessageListenerContainer.class), breaker);
+        ReflectionTestUtils.setField(versions, "nearCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(versions, "nearCacheTtl", Duration.ofMinutes(1));
+        versions.init();
+        tripOpen();
+
+        // 熔断期间：缓存清除跳过并标记为脏，权限版本递增延后
+        breaker.markDirty("userRoles");
+        versions.bump(List.of(1L, 2L));
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+
+        when(redisTemplate.execute(any(RedisCallback.class))).thenReturn("PONG");
+        // 熔断在补做和清空全部完成后才关闭：等到关闭即等到恢复完成
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (breaker.isOpen() && System.nanoTime() < deadline) {
+            sleep(10);
+        }
+
+        assertThat(breaker.isOpen()).isFalse();
+        assertThat(recovered).containsExactly("userRoles");
+        // 清空脏缓存时其他请求仍被熔断，不会读到 L2 中的旧条目
+        assertThat(openDuringRecovery).containsExactly(true);
+        verify(redisTemplate).executePipelined(any(RedisCallback.class));
+        verify(redisTemplate).convertAndSend("perm:ver:changed", "1,2");
+    }
+
+    @Test
+    void failureDuringRecoveryKeepsBreakerOpen() throws Exception {
+        List<String> recovered = new CopyOnWriteArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+        breaker.setRecoveryHandler(name -> breaker.run(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("connection reset");
+            }
+            recovered.add(name);
+        }, () -> breaker.markDirty(name)));
+        tripOpen();
+        breaker.markDirty("userProfile");
+
+        when(redisTemplate.execute(any(RedisCallback.class))).thenReturn("PONG");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (breaker.isOpen() && System.nanoTime() < deadline) {
+            sleep(10);
+        }
+
+        // 第一次清空失败：保持打开，下次探测时重试成功后才关闭
+        assertThat(breaker.isOpen()).isFalse();
+        assertThat(attempts).hasValue(2);
+        assertThat(recovered).containsExactly("userProfile");
+    }
+
+    private void tripOpen() {
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            breaker.run(() -> {
+                throw new IllegalStateException("connection refused");
+            }, () -> { });
+        }
+        assertThat(breaker.isOpen()).isTrue();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
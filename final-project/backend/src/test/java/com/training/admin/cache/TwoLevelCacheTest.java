@@ -0,0 +1,407 @@
+package com.training.admin.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TwoLevelCacheTest {
+
+    private StringRedisTemplate redisTemplate;
+    private ValueOperations<String, String> valueOps;
+    private RedisCircuitBreaker breaker;
+    private TwoLevelCacheManager manager;
+    private SimpleMeterRegistry meterRegistry;
+    private ConcurrentMapCache remote;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        when(valueOps.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        meterRegistry = new SimpleMeterRegistry();
+        breaker = new RedisCircuitBreaker(redisTemplate, new TwoLevelCacheProperties.CircuitBreaker(), meterRegistry);
+        manager = new TwoLevelCacheManager(mock(RedisCacheManager.class), new TwoLevelCacheProperties(), Map.of(),
+                new CacheGenerations(redisTemplate, breaker, Duration.ofMinutes(1)), breaker, redisTemplate,
+                mock(RedisMessageListenerContainer.class), meterRegistry);
+        remote = new ConcurrentMapCache("users", false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.destroy();
+        breaker.shutdown();
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        TwoLevelCache cache = cache(alwaysRefresh(false), Runnable::run);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> cache.get(1L, () -> {
+            calls.incrementAndGet();
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "alice";
+        }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        // 加载不持有 Caffeine 的计算锁：加载期间其他 key 照常读写
+        cache.put(2L, "bob");
+        assertThat(cache.get(2L, () -> "other")).isEqualTo("bob");
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> cache.get(1L, () -> {
+            calls.incrementAndGet();
+            return "other";
+        }));
+        awaitLocalHits(2);
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("alice");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("alice");
+        assertThat(calls).hasValue(1);
+        assertThat(cache.get(1L, String.class)).isEqualTo("alice");
+    }
+
+    @Test
+    void loadEvictedWhileRunningIsNotCached() {
+        TwoLevelCache cache = cache(alwaysRefresh(false), Runnable::run);
+
+        String value = cache.get(1L, () -> {
+            // 加载期间数据被修改并清除缓存
+            cache.evict(1L);
+            return "stale";
+        });
+
+        assertThat(value).isEqualTo("stale");
+        assertThat(cache.get(1L)).isNull();
+        assertThat(remote.get(1L)).isNull();
+    }
+
+    @Test
+    void earlyRefreshReplacesValue() {
+        TwoLevelCache cache = cache(alwaysRefresh(true), Runnable::run);
+        cache.put(1L, "v1");
+
+        assertThat(cache.get(1L, () -> "v2")).isEqualTo("v1");
+
+        assertThat(cache.get(1L, String.class)).isEqualTo("v2");
+        assertThat(remote.get(1L, String.class)).isEqualTo("v2");
+    }
+
+    @Test
+    void earlyRefreshDropsResultWhenKeyIsEvictedDuringLoad() {
+        TwoLevelCache cache = cache(alwaysRefresh(true), Runnable::run);
+        cache.put(1L, "v1");
+
+        cache.get(1L, () -> {
+            cache.evict(1L);
+            return "stale";
+        });
+
+        assertThat(cache.get(1L)).isNull();
+        assertThat(remote.get(1L)).isNull();
+    }
+
+    @Test
+    void earlyRefreshDropsResultWhenCacheIsClearedDuringLoad() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenReturn(1L);
+        TwoLevelCache cache = cache(alwaysRefresh(true), Runnable::run);
+        cache.put(1L, "v1");
+
+        cache.get(1L, () -> {
+            cache.clear();
+            return "stale";
+        });
+
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @Test
+    void earlyRefreshIsSkippedWhenAnotherNodeHoldsTheLease() {
+        when(valueOps.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        TwoLevelCache cache = cache(alwaysRefresh(true), Runnable::run);
+        cache.put(1L, "v1");
+        AtomicInteger calls = new AtomicInteger();
+
+        cache.get(1L, () -> {
+            calls.incrementAndGet();
+            return "v2";
+        });
+
+        assertThat(calls).hasValue(0);
+        assertThat(cache.get(1L, String.class)).isEqualTo("v1");
+    }
+
+    @Test
+    void earlyRefreshIsSkippedWhenRefreshPoolIsFull() {
+        TwoLevelCache cache = cache(alwaysRefresh(true), task -> {
+            throw new RejectedExecutionException("full");
+        });
+        cache.put(1L, "v1");
+
+        assertThat(cache.get(1L, () -> "v2")).isEqualTo("v1");
+
+        assertThat(meterRegistry.counter("cache.refresh.skipped", "cache", "users").count()).isEqualTo(1.0);
+        assertThat(cache.get(1L, String.class)).isEqualTo("v1");
+    }
+
+    @Test
+    void offHeapCopiesRemoteBytesInsteadOfReserializing() {
+        AtomicInteger serializations = new AtomicInteger();
+        RedisSerializer<Object> serializer = OffHeapStoreTest.countingSerializer(serializations);
+        BytesCache bytes = new BytesCache(serializer);
+        com.github.benmanes.caffeine.cache.Cache<String, TwoLevelCache.Entry> local = Caffeine.newBuilder()
+                .maximumSize(0)
+                .executor(Runnable::run)
+                .build();
+        TwoLevelCache cache = new TwoLevelCache("users", local, Duration.ofMinutes(5),
+                new CircuitBreakingCache(bytes, breaker),
+                new CacheGenerations(redisTemplate, breaker, Duration.ofMinutes(1)),
+                new CacheLoadLease(redisTemplate, breaker, Duration.ofSeconds(5), Duration.ofMillis(10),
+                        Duration.ofMillis(100)),
+                alwaysRefresh(false),
+                (TwoLevelCacheManager.InvalidationPublisher) ReflectionTestUtils.getField(manager, "publisher"),
+                new CacheMetrics(meterRegistry, "users", local),
+                new OffHeapStore("users", 1024, Duration.ofMinutes(5),
+                        RedisSerializationContext.SerializationPair.fromSerializer(serializer), meterRegistry),
+                Runnable::run);
+
+        // 写入：L2 序列化一次，堆外层复制同一份字节
+        cache.put(1L, "alice");
+        assertThat(serializations).hasValue(1);
+        assertThat(cache.get(1L, () -> "other")).isEqualTo("alice");
+
+        // 其他节点写入 L2 后本节点读取：堆外层复制 L2 读到的字节
+        bytes.putSerialized(2L, "bob");
+        assertThat(cache.get(2L, () -> "other")).isEqualTo("bob");
+        assertThat(cache.get(2L, () -> "other")).isEqualTo("bob");
+        assertThat(serializations).hasValue(2);
+        assertThat(bytes.reads).hasValue(1);
+
+        // 加载：同样只序列化一次
+        assertThat(cache.get(3L, () -> "carol")).isEqualTo("carol");
+        assertThat(serializations).hasValue(3);
+    }
+
+    /**
+     * 全量清空时的回源压力（-Dbenchmark=true 时运行）：3 个节点共享 L2 和租约，每个节点 32 个请求线程
+     * 读取 50 个热点 key，运行 1 秒后清空全部 L1 和 L2，统计之后 1 秒内的数据库加载次数。
+     * 对比原 @Cacheable（无 sync：未命中的每个请求各自加载后写入）与节点内单飞 + 集群租约
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void databaseLoadStaysFlatDuringFullFlush() throws Exception {
+        LoadTestResult unsynchronized = flushLoadTest(false);
+        LoadTestResult singleFlight = flushLoadTest(true);
+
+        for (LoadTestResult result : List.of(unsynchronized, singleFlight)) {
+            System.out.printf("cache flush load test, %-14s: %,6d requests, %,5d db loads after flush "
+                            + "(peak %,4d per 100 ms, steady state before flush %d)%n", result.mode, result.requests,
+                    result.loadsAfterFlush, result.peakLoadsPer100ms, result.loadsBeforeFlush);
+        }
+        // 每个 key 集群内只回源一次（租约等待超时后才会重复加载）
+        assertThat(singleFlight.loadsAfterFlush).isLessThanOrEqualTo(50);
+        assertThat(singleFlight.loadsAfterFlush).isLessThan(unsynchronized.loadsAfterFlush);
+    }
+
+    private record LoadTestResult(String mode, long requests, int loadsBeforeFlush, int loadsAfterFlush,
+                                  int peakLoadsPer100ms) {
+    }
+
+    @SuppressWarnings("unchecked")
+    private LoadTestResult flushLoadTest(boolean sync) throws Exception {
+        int nodes = 3;
+        int threadsPerNode = 32;
+        int keys = 50;
+        long dbLatencyMillis = 20;
+        int buckets = 20;
+
+        // 各节点共享的 Redis：L2 数据和租约
+        ConcurrentMapCache sharedRemote = new ConcurrentMapCache("users", false);
+        Map<String, String> leases = new ConcurrentHashMap<>();
+        StringRedisTemplate leaseTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> leaseOps = mock(ValueOperations.class);
+        when(leaseTemplate.opsForValue()).thenReturn(leaseOps);
+        when(leaseOps.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> leases.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        when(leaseTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(invocation -> {
+            String key = ((List<String>) invocation.getArgument(1)).get(0);
+            return leases.remove(key, invocation.getArgument(2)) ? 1L : 0L;
+        });
+
+        List<TwoLevelCache> caches = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            com.github.benmanes.caffeine.cache.Cache<String, TwoLevelCache.Entry> local = Caffeine.newBuilder()
+                    .maximumSize(1000)
+                    .build();
+            caches.add(new TwoLevelCache("users", local, Duration.ofMinutes(5), sharedRemote,
+                    new CacheGenerations(redisTemplate, breaker, Duration.ofMinutes(1)),
+                    new CacheLoadLease(leaseTemplate, breaker, Duration.ofSeconds(5), Duration.ofMillis(10),
+                            Duration.ofSeconds(1)),
+                    alwaysRefresh(false),
+                    (TwoLevelCacheManager.InvalidationPublisher) ReflectionTestUtils.getField(manager, "publisher"),
+                    new CacheMetrics(meterRegistry, "users", local), null, Runnable::run));
+        }
+
+        AtomicIntegerArray loadsPerBucket = new AtomicIntegerArray(buckets);
+        AtomicLong requests = new AtomicLong();
+        long startedAt = System.nanoTime();
+        Callable<String> database = () -> {
+            int bucket = (int) ((System.nanoTime() - startedAt) / 100_000_000L);
+            loadsPerBucket.incrementAndGet(Math.min(bucket, buckets - 1));
+            Thread.sleep(dbLatencyMillis);
+            return "profile";
+        };
+        // 预热：每个 key 已在 L1 和 L2 中
+        for (int key = 0; key < keys; key++) {
+            for (TwoLevelCache cache : caches) {
+                cache.put((long) key, "profile");
+            }
+        }
+
+        long endAt = startedAt + TimeUnit.MILLISECONDS.toNanos(buckets * 100L);
+        ExecutorService workers = Executors.newFixedThreadPool(nodes * threadsPerNode);
+        List<java.util.concurrent.Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < nodes * threadsPerNode; t++) {
+            TwoLevelCache cache = caches.get(t % nodes);
+            futures.add(workers.submit(() -> {
+                while (System.nanoTime() < endAt) {
+                    long key = ThreadLocalRandom.current().nextInt(keys);
+                    if (sync) {
+                        cache.get(key, database);
+                    } else {
+                        Cache.ValueWrapper cached = cache.get(key);
+                        if (cached == null) {
+                            cache.put(key, database.call());
+                        }
+                    }
+                    requests.incrementAndGet();
+                    Thread.sleep(1);
+                }
+                return null;
+            }));
+        }
+        Thread.sleep(1000);
+        // 全量清空：L2 清空，各节点收到通知后清除 L1
+        sharedRemote.clear();
+        caches.forEach(TwoLevelCache::clearLocal);
+        for (java.util.concurrent.Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        workers.shutdown();
+
+        int before = 0;
+        int after = 0;
+        int peak = 0;
+        for (int i = 0; i < buckets; i++) {
+            if (i < 10) {
+                before += loadsPerBucket.get(i);
+            } else {
+                after += loadsPerBucket.get(i);
+            }
+            peak = Math.max(peak, loadsPerBucket.get(i));
+        }
+        return new LoadTestResult(sync ? "single-flight" : "no sync", requests.get(), before, after, peak);
+    }
+
+    private void awaitLocalHits(int hits) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.counter("cache.gets", "cache", "users", "result", "hit", "level", "l1").count() < hits) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private TwoLevelCache cache(TwoLevelCacheProperties.EarlyRefresh earlyRefresh, Executor refreshExecutor) {
+        com.github.benmanes.caffeine.cache.Cache<String, TwoLevelCache.Entry> local = Caffeine.newBuilder()
+                .maximumSize(100)
+                .build();
+        CacheLoadLease lease = new CacheLoadLease(redisTemplate, breaker, Duration.ofSeconds(5),
+                Duration.ofMillis(10), Duration.ofMillis(100));
+        return new TwoLevelCache("users", local, Duration.ofMinutes(5), remote,
+                new CacheGenerations(redisTemplate, breaker, Duration.ofMinutes(1)), lease, earlyRefresh,
+                (TwoLevelCacheManager.InvalidationPublisher) ReflectionTestUtils.getField(manager, "publisher"),
+                new CacheMetrics(meterRegistry, "users", local), null, refreshExecutor);
+    }
+
+    /**
+     * 保存序列化字节的 L2（模拟 RawValueRedisCache），记录读取次数
+     */
+    private static class BytesCache extends ConcurrentMapCache implements RawValueCache {
+
+        private final RedisSerializer<Object> serializer;
+        private final AtomicInteger reads = new AtomicInteger();
+
+        BytesCache(RedisSerializer<Object> serializer) {
+            super("users", false);
+            this.serializer = serializer;
+        }
+
+        @Override
+        public Serialized getSerialized(Object key) {
+            reads.incrementAndGet();
+            ValueWrapper wrapper = get(key);
+            if (wrapper == null) {
+                return null;
+            }
+            byte[] bytes = (byte[]) wrapper.get();
+            return new Serialized(serializer.deserialize(bytes), bytes);
+        }
+
+        @Override
+        public byte[] putSerialized(Object key, Object value) {
+            byte[] bytes = serializer.serialize(value);
+            put(key, bytes);
+            return bytes;
+        }
+    }
+
+    /**
+     * beta 极大时每次 L1 命中都会触发提前刷新，为 false 时关闭提前刷新
+     */
+    private static TwoLevelCacheProperties.EarlyRefresh alwaysRefresh(boolean enabled) {
+        TwoLevelCacheProperties.EarlyRefresh earlyRefresh = new TwoLevelCacheProperties.EarlyRefresh();
+        earlyRefresh.setBeta(enabled ? 1e9 : 0);
+        return earlyRefresh;
+    }
+}
@@ -0,0 +1,125 @@
+package com.training.admin.common;
+
+import com.training.admin.entity.Permission;
+import com.training.admin.repository.PermissionRepository;
+import com.training.admin.service.PermissionDictionary;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PermissionSetTest {
+
+    private static final List<String> CODES = List.of(
+            "sys:user:list", "sys:user:create", "sys:user:update", "sys:user:delete",
+            "sys:role:list", "sys:role:create", "sys:menu:list", "sys:dict:list");
+
+    private PermissionDictionary dictionary;
+
+    @BeforeEach
+    void setUp() {
+        PermissionRepository repository = mock(PermissionRepository.class);
+        List<Permission> permissions = new ArrayList<>();
+        LongStream.range(0, CODES.size()).forEach(i -> {
+            Permission p = new Permission();
+            p.setId(i + 1);
+            p.setCode(CODES.get((int) i));
+            permissions.add(p);
+        });
+        when(repository.findAll()).thenReturn(permissions);
+        dictionary = new PermissionDictionary(repository, mock(StringRedisTemplate.class),
+                mock(RedisMessageListenerContainer.class));
+    }
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        List<String> granted = List.of("sys:user:list", "sys:user:delete", "sys:dict:list");
+
+        PermissionDictionary.Encoded encoded = dictionary.encode(granted);
+        PermissionSet decoded = dictionary.decode(encoded.bits(), encoded.version());
+
+        assertThat(decoded.codes()).containsExactlyElementsOf(granted);
+        assertThat(decoded).hasSize(3);
+        assertThat(decoded.hasAuthority("sys:user:delete")).isTrue();
+        assertThat(decoded.hasAuthority("sys:user:create")).isFalse();
+        assertThat(decoded.contains(new SimpleGrantedAuthority("sys:dict:list"))).isTrue();
+        assertThat(decoded.toBitSet()).isEqualTo(dictionary.toPermissionSet(granted).toBitSet());
+    }
+
+    @Test
+    void listAndBitsetFormatsProduceTheSameSet() {
+        PermissionSet fromList = dictionary.toPermissionSet(CODES);
+        PermissionDictionary.Encoded encoded = dictionary.encode(CODES);
+
+        assertThat(dictionary.decode(encoded.bits(), encoded.version())).isEqualTo(fromList);
+    }
+
+    @Test
+    void emptySetRoundTrip() {
+        PermissionDictionary.Encoded encoded = dictionary.encode(List.of());
+
+        assertThat(dictionary.decode(encoded.bits(), encoded.version())).isEmpty();
+        assertThat(dictionary.toPermissionSet(List.of())).isSameAs(PermissionSet.EMPTY);
+    }
+
+    @Test
+    void unknownCodesAreKeptAsExtras() {
+        PermissionSet set = dictionary.toPermissionSet(List.of("sys:user:list", "legacy:code"));
+
+        assertThat(set).hasSize(2);
+        assertThat(set.hasAuthority("legacy:code")).isTrue();
+        assertThat(set.codes()).containsExactly("sys:user:list", "legacy:code");
+    }
+
+    @Test
+    void setsShareDictionaryAuthorityInstances() {
+        PermissionSet first = dictionary.toPermissionSet(List.of("sys:user:list", "sys:role:list"));
+        PermissionSet second = dictionary.toPermissionSet(List.of("sys:role:list"));
+
+        GrantedAuthority fromFirst = first.stream()
+                .filter(a -> a.getAuthority().equals("sys:role:list")).findFirst().orElseThrow();
+        assertThat(second.iterator().next()).isSameAs(fromFirst);
+    }
+
+    @Test
+    void membershipChecksDoNotAllocate() {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        PermissionSet set = dictionary.toPermissionSet(CODES.subList(0, 4));
+        String[] probes = CODES.toArray(String[]::new);
+        int hits = check(set, probes, 10_000);
+
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        hits += check(set, probes, 100_000);
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertThat(hits).isPositive();
+        // 80 万次判断：按下标查 bitset，不为每次判断创建对象（留出测量本身的少量开销）
+        assertThat(allocated).isLessThan(64 * 1024);
+    }
+
+    private static int check(PermissionSet set, String[] probes, int rounds) {
+        int hits = 0;
+        for (int i = 0; i < rounds; i++) {
+            for (String probe : probes) {
+                if (set.hasAuthority(probe)) {
+                    hits++;
+                }
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,174 @@
+package com.training.admin.service;
+
+import com.training.admin.cache.RedisCircuitBreaker;
+import com.training.admin.cache.TwoLevelCacheProperties;
+import com.training.admin.exception.RetryLaterException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LoginRateLimiterTest {
+
+    private static final long INTERVAL = 1_000;
+    private static final long BURST = 5 * INTERVAL;
+
+    private StringRedisTemplate redisTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private LoginRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(redisTemplate,
+                new TwoLevelCacheProperties.CircuitBreaker(), meterRegistry);
+        limiter = new LoginRateLimiter(redisTemplate, breaker, meterRegistry);
+        ReflectionTestUtils.setField(limiter, "usernameCapacity", 2);
+        ReflectionTestUtils.setField(limiter, "usernamePeriod", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(limiter, "ipCapacity", 1000);
+        ReflectionTestUtils.setField(limiter, "ipPeriod", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(limiter, "maxKeys", 1000L);
+        limiter.init();
+    }
+
+    @Test
+    void bucketAllowsBurstThenRejects() {
+        LoginRateLimiter.TokenBucket bucket = new LoginRateLimiter.TokenBucket(0);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire(0, INTERVAL, BURST)).isTrue();
+        }
+        assertThat(bucket.tryAcquire(0, INTERVAL, BURST)).isFalse();
+        assertThat(bucket.tryAcquire(INTERVAL - 1, INTERVAL, BURST)).isFalse();
+    }
+
+    @Test
+    void bucketRefillsOneTokenPerInterval() {
+        LoginRateLimiter.TokenBucket bucket = new LoginRateLimiter.TokenBucket(0);
+        for (int i = 0; i < 5; i++) {
+            bucket.tryAcquire(0, INTERVAL, BURST);
+        }
+
+        assertThat(bucket.tryAcquire(INTERVAL, INTERVAL, BURST)).isTrue();
+        assertThat(bucket.tryAcquire(INTERVAL, INTERVAL, BURST)).isFalse();
+
+        // 空闲超过一个周期后补满，但不超过容量
+        long later = 100 * INTERVAL;
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire(later, INTERVAL, BURST)).isTrue();
+        }
+        assertThat(bucket.tryAcquire(later, INTERVAL, BURST)).isFalse();
+    }
+
+    @Test
+    void releasedTokenCanBeReacquired() {
+        LoginRateLimiter.TokenBucket bucket = new LoginRateLimiter.TokenBucket(0);
+        for (int i = 0; i < 5; i++) {
+            bucket.tryAcquire(0, INTERVAL, BURST);
+        }
+
+        bucket.release(INTERVAL);
+
+        assertThat(bucket.tryAcquire(0, INTERVAL, BURST)).isTrue();
+        assertThat(bucket.tryAcquire(0, INTERVAL, BURST)).isFalse();
+    }
+
+    @Test
+    void rejectsWith429AndRetryAfterWhenLocalBucketIsEmpty() {
+        limiter.acquire("admin", "10.0.0.1");
+        limiter.acquire("admin", "10.0.0.1");
+
+        RetryLaterException rejected = catchThrowableOfType(() -> limiter.acquire("admin", "10.0.0.1"),
+                RetryLaterException.class);
+
+        assertThat(rejected.getCode()).isEqualTo(429);
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(30);
+        assertThat(meterRegistry.counter("login.limit.rejected", "key", "username").count()).isEqualTo(1.0);
+        // 其他用户名不受影响
+        assertThatCode(() -> limiter.acquire("guest", "10.0.0.1")).doesNotThrowAnyException();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void redisRejectionDoesNotSpendLocalToken() {
+        ReflectionTestUtils.setField(limiter, "redisEnabled", true);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(0L);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(catchThrowableOfType(() -> limiter.acquire("admin", null), RetryLaterException.class))
+                    .isNotNull();
+        }
+
+        // 集群窗口放行后，本地桶仍有完整容量
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(1L);
+        limiter.acquire("admin", null);
+        limiter.acquire("admin", null);
+        verify(redisTemplate, times(7))
+                .execute(any(RedisScript.class), eq(List.of("auth:login:limit:u:admin")), any(Object[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void redisFailureFallsBackToLocalBucket() {
+        ReflectionTestUtils.setField(limiter, "redisEnabled", true);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new IllegalStateException("connection refused"));
+
+        limiter.acquire("admin", null);
+        limiter.acquire("admin", null);
+
+        assertThat(catchThrowableOfType(() -> limiter.acquire("admin", null), RetryLaterException.class))
+                .isNotNull();
+    }
+
+    /**
+     * 拒绝路径的吞吐基准：撞库时绝大多数请求在这里被拒绝，拒绝本身必须足够便宜
+     */
+    @Test
+    void rejectionThroughput() {
+        limiter.acquire("victim", null);
+        limiter.acquire("victim", null);
+        int warmup = 20_000;
+        int measured = 200_000;
+        rejectAll(warmup);
+
+        long start = System.nanoTime();
+        int rejected = rejectAll(measured);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double perSecond = rejected / seconds;
+
+        System.out.printf("login limiter: %d rejections in %.3f s (%.0f rejections/s)%n", rejected, seconds, perSecond);
+        assertThat(rejected).isEqualTo(measured);
+        // 宽松下限，避免在繁忙的 CI 机器上误报；实际通常在每秒数十万次以上
+        assertThat(perSecond).isGreaterThan(20_000);
+    }
+
+    private int rejectAll(int attempts) {
+        int rejected = 0;
+        for (int i = 0; i < attempts; i++) {
+            try {
+                limiter.acquire("victim", null);
+            } catch (RetryLaterException e) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+}
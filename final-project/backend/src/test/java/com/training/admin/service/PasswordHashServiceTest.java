@@ -0,0 +1,95 @@
+package com.training.admin.service;
+
+import com.training.admin.common.Result;
+import com.training.admin.exception.GlobalExceptionHandler;
+import com.training.admin.exception.RetryLaterException;
+import com.training.admin.repository.UserRepository;
+import com.training.admin.util.PasswordUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PasswordHashServiceTest {
+
+    private final CountDownLatch hashing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private SimpleMeterRegistry meterRegistry;
+    private PasswordHashService service;
+
+    @BeforeEach
+    void setUp() {
+        PasswordUtil passwordUtil = mock(PasswordUtil.class);
+        when(passwordUtil.matches(anyString(), anyString())).thenAnswer(invocation -> {
+            hashing.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        });
+        meterRegistry = new SimpleMeterRegistry();
+        service = new PasswordHashService(passwordUtil, mock(UserRepository.class), meterRegistry);
+        ReflectionTestUtils.setField(service, "threads", 1);
+        ReflectionTestUtils.setField(service, "queueCapacity", 1);
+        ReflectionTestUtils.setField(service, "timeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(service, "retryAfter", Duration.ofSeconds(2));
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.destroy();
+    }
+
+    @Test
+    void saturatedPoolRejectsWithHttp503AndRetryAfter() throws Exception {
+        // 占满唯一的哈希线程和长度为 1 的队列
+        CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> service.matches("a", "hash"));
+        assertThat(hashing.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> service.matches("b", "hash"));
+        awaitQueued();
+
+        RetryLaterException rejected = catchThrowableOfType(() -> service.matches("c", "hash"), RetryLaterException.class);
+
+        assertThat(rejected.getCode()).isEqualTo(503);
+        assertThat(meterRegistry.counter("password.hash.rejected").count()).isEqualTo(1.0);
+        ResponseEntity<Result<?>> response = new GlobalExceptionHandler().handleRetryLaterException(rejected);
+        assertThat(response.getStatusCode().value()).isEqualTo(503);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(response.getBody().getCode()).isEqualTo(503);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void waitingPastTimeoutIsRejectedAs503() {
+        ReflectionTestUtils.setField(service, "timeout", Duration.ofMillis(50));
+
+        RetryLaterException rejected = catchThrowableOfType(() -> service.matches("a", "hash"), RetryLaterException.class);
+
+        assertThat(rejected.getCode()).isEqualTo(503);
+        assertThat(rejected.getRetryAfterSeconds()).isEqualTo(2);
+    }
+
+    private void awaitQueued() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("password.hash.queue.size").gauge().value() < 1) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.training.admin.service;
+
+import com.training.admin.common.PermissionSet;
+import com.training.admin.entity.Permission;
+import com.training.admin.repository.PermissionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PermissionDictionaryTest {
+
+    private final List<Permission> permissions = new ArrayList<>();
+    private PermissionRepository permissionRepository;
+    private StringRedisTemplate redisTemplate;
+
+    @BeforeEach
+    void setUp() {
+        permissionRepository = mock(PermissionRepository.class);
+        redisTemplate = mock(StringRedisTemplate.class);
+        when(permissionRepository.findAll()).thenAnswer(invocation -> List.copyOf(permissions));
+        permissions.add(permission(1L, "sys:user:list"));
+        permissions.add(permission(2L, "sys:user:create"));
+        permissions.add(permission(5L, "sys:role:list"));
+    }
+
+    @Test
+    void decodesTokenEncodedWithCurrentVersion() {
+        PermissionDictionary dictionary = dictionary();
+
+        PermissionDictionary.Encoded encoded = dictionary.encode(List.of("sys:user:list", "sys:role:list"));
+        PermissionSet decoded = dictionary.decode(encoded.bits(), encoded.version());
+
+        assertThat(decoded.codes()).containsExactly("sys:user:list", "sys:role:list");
+    }
+
+    @Test
+    void reloadsWhenTokenComesFromNewerDictionary() {
+        PermissionDictionary node = dictionary();
+        node.version();
+
+        // 其他节点改名了权限并签发 Token
+        permissions.set(0, permission(1L, "sys:user:query"));
+        PermissionDictionary other = dictionary();
+        PermissionDictionary.Encoded encoded = other.encode(List.of("sys:user:query"));
+        allowReload(node);
+
+        PermissionSet decoded = node.decode(encoded.bits(), encoded.version());
+
+        assertThat(decoded.codes()).containsExactly("sys:user:query");
+        assertThat(node.version()).isEqualTo(encoded.version());
+    }
+
+    @Test
+    void rejectsTokenFromOtherDictionaryVersionInsteadOfDecodingWithWrongCodes() {
+        PermissionDictionary dictionary = dictionary();
+        PermissionDictionary.Encoded encoded = dictionary.encode(List.of("sys:user:list"));
+
+        // 同一下标改名：所有下标仍然"已知"，但旧版本 Token 不能再按当前字典解码
+        permissions.set(0, permission(1L, "sys:user:query"));
+        dictionary.invalidateAfterCommit();
+
+        assertThat(dictionary.decode(encoded.bits(), encoded.version())).isNull();
+    }
+
+    @Test
+    void rejectsMismatchedVersionWhenReloadIsRateLimited() {
+        PermissionDictionary node = dictionary();
+        node.version();
+
+        permissions.add(permission(9L, "sys:dict:list"));
+        PermissionDictionary.Encoded encoded = dictionary().encode(List.of("sys:dict:list"));
+
+        // 刚刚加载过，不允许再次加载：拒绝而不是按旧字典解码
+        assertThat(node.decode(encoded.bits(), encoded.version())).isNull();
+    }
+
+    @Test
+    void invalidationIsPublishedToOtherNodes() {
+        PermissionDictionary dictionary = dictionary();
+
+        dictionary.invalidateAfterCommit();
+
+        verify(redisTemplate).convertAndSend(eq("perm:dict:changed"), anyString());
+    }
+
+    private PermissionDictionary dictionary() {
+        return new PermissionDictionary(permissionRepository, redisTemplate, mock(RedisMessageListenerContainer.class));
+    }
+
+    private static void allowReload(PermissionDictionary dictionary) {
+        ReflectionTestUtils.setField(dictionary, "lastReloadAt", 0L);
+    }
+
+    private static Permission permission(Long id, String code) {
+        Permission p = new Permission();
+        p.setId(id);
+        p.setCode(code);
+        p.setName(code);
+        return p;
+    }
+}
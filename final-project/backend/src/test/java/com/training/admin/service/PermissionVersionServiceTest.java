@@ -0,0 +1,87 @@
+package com.training.admin.service;
+
+import com.training.admin.cache.RedisCircuitBreaker;
+import com.training.admin.cache.TwoLevelCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PermissionVersionServiceTest {
+
+    private static final String KEY = "perm:ver:7";
+
+    private ValueOperations<String, String> valueOps;
+    private RedisCircuitBreaker breaker;
+    private PermissionVersionService versions;
+    private MessageListener listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        RedisMessageListenerContainer listenerContainer = mock(RedisMessageListenerContainer.class);
+        breaker = new RedisCircuitBreaker(redisTemplate, new TwoLevelCacheProperties.CircuitBreaker(),
+                new SimpleMeterRegistry());
+        versions = new PermissionVersionService(redisTemplate, listenerContainer, breaker);
+        ReflectionTestUtils.setField(versions, "nearCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(versions, "nearCacheTtl", Duration.ofMinutes(1));
+        versions.init();
+        ArgumentCaptor<MessageListener> captor = ArgumentCaptor.forClass(MessageListener.class);
+        verify(listenerContainer).addMessageListener(captor.capture(), any(Topic.class));
+        listener = captor.getValue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        breaker.shutdown();
+    }
+
+    @Test
+    void versionIsServedFromNearCache() {
+        when(valueOps.get(KEY)).thenReturn("3");
+
+        assertThat(versions.currentVersion(7L)).isEqualTo(3L);
+        assertThat(versions.currentVersion(7L)).isEqualTo(3L);
+        verify(valueOps, times(1)).get(KEY);
+    }
+
+    @Test
+    void invalidationDuringReadDoesNotCacheOldVersion() {
+        // 读取 Redis 期间其他节点递增了版本号并发出清除通知：读到的旧版本号只返回给本次调用
+        when(valueOps.get(KEY)).thenAnswer(invocation -> {
+            receive("7");
+            return "3";
+        }).thenReturn("4");
+
+        assertThat(versions.currentVersion(7L)).isEqualTo(3L);
+        assertThat(versions.currentVersion(7L)).isEqualTo(4L);
+        assertThat(versions.currentVersion(7L)).isEqualTo(4L);
+        verify(valueOps, times(2)).get(KEY);
+    }
+
+    private void receive(String body) {
+        listener.onMessage(new DefaultMessage("perm:ver:changed".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8)), null);
+    }
+}
@@ -0,0 +1,77 @@
+package com.training.admin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.admin.common.PermissionSet;
+import com.training.admin.common.TokenClaims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReferenceTokenServiceTest {
+
+    private ValueOperations<String, String> valueOps;
+    private ReferenceTokenService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        PermissionDictionary dictionary = mock(PermissionDictionary.class);
+        when(dictionary.toPermissionSet(anyCollection())).thenReturn(PermissionSet.EMPTY);
+
+        service = new ReferenceTokenService(redisTemplate, mock(RedisMessageListenerContainer.class),
+                new ObjectMapper(), dictionary);
+        ReflectionTestUtils.setField(service, "expiration", 60_000L);
+        ReflectionTestUtils.setField(service, "localCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(service, "localCacheTtl", Duration.ofMinutes(1));
+        service.init();
+    }
+
+    @Test
+    void refreshDoesNotResurrectRevokedToken() {
+        String token = service.issue(1L, "admin", List.of(), 0L);
+        TokenClaims claims = service.resolve(token);
+        when(valueOps.setIfPresent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+
+        assertThat(service.update(token, claims, List.of("sys:user:list"), 1L)).isNull();
+        // 本地缓存也已清除：请求按未认证处理
+        assertThat(service.resolve(token)).isNull();
+        verify(valueOps).set(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void resolveRacingWithRevokeDoesNotCacheToken() {
+        AtomicReference<String> stored = new AtomicReference<>();
+        doAnswer(invocation -> {
+            stored.set(invocation.getArgument(1));
+            return null;
+        }).when(valueOps).set(anyString(), anyString(), any(Duration.class));
+        String token = service.issue(1L, "admin", List.of(), 0L);
+        service.revoke(token);
+
+        // 吊销前已从 Redis 读到令牌内容的解析，写入本地缓存后发现已吊销
+        when(valueOps.get(anyString())).thenReturn(stored.get());
+        assertThat(service.resolve(token)).isNull();
+
+        when(valueOps.get(anyString())).thenReturn(null);
+        assertThat(service.resolve(token)).isNull();
+    }
+}
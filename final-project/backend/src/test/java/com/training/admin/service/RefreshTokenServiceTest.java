@@ -0,0 +1,101 @@
+package com.training.admin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.training.admin.cache.RedisCircuitBreaker;
+import com.training.admin.cache.TwoLevelCacheProperties;
+import com.training.admin.exception.BusinessException;
+import com.training.admin.exception.RetryLaterException;
+import com.training.admin.util.DigestUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RefreshTokenServiceTest {
+
+    private static final int FAILURE_THRESHOLD = 2;
+
+    private StringRedisTemplate redisTemplate;
+    private ValueOperations<String, String> valueOps;
+    private RedisCircuitBreaker breaker;
+    private RefreshTokenService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        TwoLevelCacheProperties.CircuitBreaker config = new TwoLevelCacheProperties.CircuitBreaker();
+        config.setFailureThreshold(FAILURE_THRESHOLD);
+        config.setProbeInterval(Duration.ofMinutes(1));
+        breaker = new RedisCircuitBreaker(redisTemplate, config, new SimpleMeterRegistry());
+        service = new RefreshTokenService(redisTemplate, new ObjectMapper(), breaker);
+        ReflectionTestUtils.setField(service, "expiration", Duration.ofDays(7));
+    }
+
+    @AfterEach
+    void tearDown() {
+        breaker.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reusedTokenRevokesFamily() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any()))
+                .thenReturn(List.of("reused", "family-1"));
+
+        assertThatThrownBy(() -> service.rotate("stolen"))
+                .isInstanceOf(BusinessException.class);
+        verify(redisTemplate).delete("auth:refresh:family:family-1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rotationIssuesNewTokenOfSameFamily() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenReturn(List.of("ok",
+                "{\"userId\":1,\"username\":\"admin\",\"familyId\":\"family-1\"}"));
+        when(valueOps.get("auth:refresh:family:family-1"))
+                .thenReturn(DigestUtil.sha256("current"));
+
+        RefreshTokenService.Rotated rotated = service.rotate("current");
+
+        assertThat(rotated.userId()).isEqualTo(1L);
+        assertThat(rotated.refreshToken()).isNotEqualTo("current");
+        verify(valueOps).set(eq("auth:refresh:" + DigestUtil.sha256(rotated.refreshToken())), anyString(),
+                any(Duration.class));
+        verify(valueOps).set(eq("auth:refresh:family:family-1"), eq(DigestUtil.sha256(rotated.refreshToken())),
+                any(Duration.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void redisErrorsBecomeRetryLaterAndTripBreaker() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any()))
+                .thenThrow(new IllegalStateException("Command timed out"));
+
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            assertThatThrownBy(() -> service.rotate("token")).isInstanceOf(RetryLaterException.class);
+        }
+        assertThat(breaker.isOpen()).isTrue();
+        verify(redisTemplate, never()).delete(anyString());
+    }
+}
@@ -0,0 +1,121 @@
+package com.training.admin.service;
+
+import com.training.admin.cache.RedisCircuitBreaker;
+import com.training.admin.common.UserCacheEvictionEvent;
+import com.training.admin.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserCacheEvictionListenerTest {
+
+    private static final List<Long> USER_IDS = List.of(1L, 2L);
+    private static final DataAccessResourceFailureException DB_DOWN = new DataAccessResourceFailureException("db down");
+
+    private UserRepository userRepository;
+    private PermissionCacheService permissionCacheService;
+    private PermissionVersionService permissionVersionService;
+    private Cache profiles;
+    private UserCacheEvictionListener listener;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        permissionCacheService = mock(PermissionCacheService.class);
+        permissionVersionService = mock(PermissionVersionService.class);
+        profiles = mock(Cache.class);
+        CacheManager cacheManager = mock(CacheManager.class);
+        when(cacheManager.getCache("userProfile")).thenReturn(profiles);
+        listener = new UserCacheEvictionListener(userRepository, permissionCacheService, cacheManager,
+                permissionVersionService, new SimpleMeterRegistry(), mock(RedisCircuitBreaker.class));
+        ReflectionTestUtils.setField(listener, "maxAttempts", 3);
+        ReflectionTestUtils.setField(listener, "retryBackoff", Duration.ZERO);
+        listener.init();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void affectedUsers(List<Long> userIds) {
+        when(permissionCacheService.forEachAffectedUserChunk(anyCollection(), anyLong(), anyInt(), any()))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(3, Consumer.class).accept(userIds);
+                    return (long) userIds.size();
+                });
+    }
+
+    @Test
+    void retriesChunkAfterTransientFailure() {
+        affectedUsers(USER_IDS);
+        when(userRepository.findUsernamesByIdIn(USER_IDS))
+                .thenThrow(DB_DOWN)
+                .thenReturn(List.of("alice", "bob"));
+
+        listener.onEviction(UserCacheEvictionEvent.permissionsChanged(List.of(10L), "test"));
+
+        verify(profiles).evict("alice");
+        verify(profiles).evict("bob");
+        verify(profiles, never()).clear();
+        verify(permissionVersionService).bump(USER_IDS);
+    }
+
+    @Test
+    void clearsWholeProfileCacheWhenChunkKeepsFailing() {
+        affectedUsers(USER_IDS);
+        when(userRepository.findUsernamesByIdIn(USER_IDS)).thenThrow(DB_DOWN);
+
+        listener.onEviction(UserCacheEvictionEvent.permissionsChanged(List.of(10L), "test"));
+
+        verify(userRepository, times(3)).findUsernamesByIdIn(USER_IDS);
+        verify(profiles).clear();
+        // 用户ID已知：缓存清空后照常递增权限版本
+        verify(permissionVersionService).bump(USER_IDS);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resumesTraversalAfterLastProcessedUser() {
+        when(userRepository.findUsernamesByIdIn(any())).thenReturn(List.of("alice"));
+        when(permissionCacheService.forEachAffectedUserChunk(anyCollection(), eq(0L), anyInt(), any()))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(3, Consumer.class).accept(USER_IDS);
+                    throw DB_DOWN;
+                });
+        doReturn(0L).when(permissionCacheService).forEachAffectedUserChunk(anyCollection(), eq(2L), anyInt(), any());
+
+        listener.onEviction(UserCacheEvictionEvent.permissionsChanged(List.of(10L), "test"));
+
+        verify(permissionCacheService).forEachAffectedUserChunk(anyCollection(), eq(2L), anyInt(), any());
+        verify(permissionVersionService, times(1)).bump(USER_IDS);
+        verify(profiles, never()).clear();
+    }
+
+    @Test
+    void clearsWholeProfileCacheWhenAffectedUsersCannotBeQueried() {
+        when(permissionCacheService.forEachAffectedUserChunk(anyCollection(), anyLong(), anyInt(), any()))
+                .thenThrow(DB_DOWN);
+
+        listener.onEviction(UserCacheEvictionEvent.menusChanged(List.of(10L), "test"));
+
+        verify(permissionCacheService, times(3)).forEachAffectedUserChunk(anyCollection(), anyLong(), anyInt(), any());
+        verify(profiles).clear();
+    }
+}
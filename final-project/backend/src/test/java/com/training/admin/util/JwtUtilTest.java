@@ -0,0 +1,157 @@
+package com.training.admin.util;
+
+import com.training.admin.common.PermissionSet;
+import com.training.admin.common.TokenClaims;
+import com.training.admin.service.PermissionDictionary;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "testSecretKeyForHS512AlgorithmMustBeAtLeast64BytesLong1234567890123456789012345678";
+
+    private PermissionDictionary permissionDictionary;
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        permissionDictionary = mock(PermissionDictionary.class);
+        when(permissionDictionary.toPermissionSet(anyCollection())).thenReturn(PermissionSet.EMPTY);
+        jwtUtil = new JwtUtil(permissionDictionary);
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 60_000L);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(jwtUtil, "permissionFormat", "list");
+        jwtUtil.init();
+    }
+
+    @Test
+    void parsesEachTokenOnceAndReusesVerifiedClaims() {
+        String token = jwtUtil.generateToken(1L, "admin", List.of("sys:user:list"), 3L);
+
+        TokenClaims first = jwtUtil.parseToken(token);
+        TokenClaims second = jwtUtil.parseToken(token);
+
+        assertThat(first).isNotNull();
+        assertThat(second).isSameAs(first);
+        assertThat(first.getUserId()).isEqualTo(1L);
+        assertThat(first.getUsername()).isEqualTo("admin");
+        assertThat(first.getPermissionVersion()).isEqualTo(3L);
+        // 第二次命中缓存：不再验签，也不再转换权限声明
+        verify(permissionDictionary, times(1)).toPermissionSet(anyCollection());
+    }
+
+    @Test
+    void rejectsTamperedToken() {
+        String token = jwtUtil.generateToken(1L, "admin", List.of(), 0L);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThat(jwtUtil.parseToken(tampered)).isNull();
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        String token = jwtUtil.generateToken(1L, "admin", List.of(), 0L, new Date(System.currentTimeMillis() - 1000));
+
+        assertThat(jwtUtil.parseToken(token)).isNull();
+    }
+
+    @Test
+    void tokenWithoutUserIdKeepsPlainCodeListInBitsetMode() {
+        ReflectionTestUtils.setField(jwtUtil, "permissionFormat", "bitset");
+
+        String token = jwtUtil.generateToken("admin", List.of("sys:user:list"));
+
+        // 没有 uid 的 Token 不能在字典版本变化后重新签发，不使用紧凑格式
+        assertThat(jwtUtil.getPermissionsFromToken(token)).containsExactly("sys:user:list");
+        verify(permissionDictionary, never()).encode(anyCollection());
+    }
+
+    /**
+     * 过滤器路径对比（-Dbenchmark=true 时运行）：
+     * 原路径每个请求调用 validateToken、getUsernameFromToken、getPermissionsFromToken，
+     * 每次都重新构建密钥和解析器、验签并解析 JSON；新路径每个 Token 验签一次，之后命中声明缓存
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @SuppressWarnings("unchecked")
+    void filterPathCost() {
+        List<String> permissions = List.of("sys:user:list", "sys:user:create", "sys:user:update",
+                "sys:role:list", "sys:role:create", "sys:menu:list", "sys:permission:list");
+        String token = jwtUtil.generateToken(1L, "admin", permissions, 3L);
+        int distinct = 20_000;
+        List<String> tokens = new ArrayList<>(distinct);
+        for (int i = 0; i < distinct; i++) {
+            tokens.add(jwtUtil.generateToken((long) i, "user" + i, permissions, 3L));
+        }
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaxSize", (long) distinct);
+        jwtUtil.init();
+
+        ToIntFunction<String> legacy = t -> {
+            int sink = 0;
+            for (int call = 0; call < 3; call++) {
+                Claims claims = Jwts.parserBuilder()
+                        .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                        .build()
+                        .parseClaimsJws(t)
+                        .getBody();
+                sink += call == 2 ? ((List<String>) claims.get("permissions")).size() : claims.getSubject().length();
+            }
+            return sink;
+        };
+        int[] next = {0};
+        ToIntFunction<String> miss = t -> jwtUtil.parseToken(tokens.get(next[0]++ % distinct)).getUsername().length();
+        ToIntFunction<String> hit = t -> jwtUtil.parseToken(t).getUsername().length();
+
+        Measurement old = measure(legacy, token, 20_000);
+        Measurement first = measure(miss, token, distinct / 2);
+        Measurement cached = measure(hit, token, 200_000);
+
+        System.out.printf("jwt filter path, legacy (3 parses):   %8.2f us/op %,10d B/op%n", old.micros, old.bytes);
+        System.out.printf("jwt filter path, single parse (miss): %8.2f us/op %,10d B/op%n", first.micros, first.bytes);
+        System.out.printf("jwt filter path, claims cache hit:    %8.2f us/op %,10d B/op%n", cached.micros, cached.bytes);
+        assertThat(cached.micros).isLessThan(old.micros);
+    }
+
+    private record Measurement(double micros, long bytes) {
+    }
+
+    /**
+     * 先执行同样次数预热，再计时并统计当前线程的分配字节数
+     */
+    private static Measurement measure(ToIntFunction<String> op, String token, int rounds) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long sink = 0;
+        for (int i = 0; i < rounds; i++) {
+            sink += op.applyAsInt(token);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += op.applyAsInt(token);
+        }
+        long nanos = System.nanoTime() - start;
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+        assertThat(sink).isPositive();
+        return new Measurement(nanos / 1_000.0 / rounds, allocated / rounds);
+    }
+}
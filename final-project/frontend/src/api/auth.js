@@ -14,3 +14,11 @@ export function profile() {
     method: 'get'
   })
 }
+
+export function logout(refreshToken) {
+  return request({
+    url: '/api/auth/logout',
+    method: 'post',
+    data: { refreshToken }
+  })
+}
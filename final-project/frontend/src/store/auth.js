@@ -1,5 +1,5 @@
 import { defineStore } from 'pinia'
-import { getToken, setToken, removeToken } from '@/utils/auth'
+import { getToken, setToken, removeToken, setRefreshToken } from '@/utils/auth'
 import { login as loginApi, profile as profileApi } from '@/api/auth'
 
 export const useAuthStore = defineStore('auth', {
@@ -19,6 +19,7 @@ export const useAuthStore = defineStore('auth', {
       this.username = res.data.username
       this.nickname = res.data.nickname
       setToken(res.data.token)
+      setRefreshToken(res.data.refreshToken)
       await this.loadProfile()
       return res
     },
@@ -1,4 +1,5 @@
 const TOKEN_KEY = 'admin_token'
+const REFRESH_TOKEN_KEY = 'admin_refresh_token'
 
 export function getToken() {
   return localStorage.getItem(TOKEN_KEY)
@@ -10,5 +11,14 @@ export function setToken(token) {
 
 export function removeToken() {
   localStorage.removeItem(TOKEN_KEY)
+  localStorage.removeItem(REFRESH_TOKEN_KEY)
+}
+
+export function getRefreshToken() {
+  return localStorage.getItem(REFRESH_TOKEN_KEY)
+}
+
+export function setRefreshToken(token) {
+  localStorage.setItem(REFRESH_TOKEN_KEY, token)
 }
 
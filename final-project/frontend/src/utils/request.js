@@ -1,6 +1,6 @@
 import axios from 'axios'
 import { ElMessage } from 'element-plus'
-import { getToken, removeToken } from './auth'
+import { getToken, setToken, removeToken, getRefreshToken, setRefreshToken } from './auth'
 import router from '../router'
 
 const service = axios.create({
@@ -22,9 +22,36 @@ service.interceptors.request.use(
   }
 )
 
+// 正在进行的刷新请求（并发的 401 请求共用一次刷新）
+let refreshing = null
+
+function refreshAccessToken() {
+  if (!refreshing) {
+    refreshing = axios
+      .post(`${import.meta.env.VITE_API_BASE_URL || ''}/api/auth/refresh`, { refreshToken: getRefreshToken() })
+      .then(({ data }) => {
+        if (data.code !== 200) {
+          throw new Error(data.message || '刷新令牌失败')
+        }
+        setToken(data.data.token)
+        setRefreshToken(data.data.refreshToken)
+        return data.data.token
+      })
+      .finally(() => {
+        refreshing = null
+      })
+  }
+  return refreshing
+}
+
 // 响应拦截器
 service.interceptors.response.use(
   response => {
+    // 权限变更后后端下发的新 Token
+    const refreshedToken = response.headers['x-refreshed-token']
+    if (refreshedToken) {
+      setToken(refreshedToken)
+    }
     const res = response.data
     if (res.code === 200) {
       return res
@@ -33,7 +60,20 @@ service.interceptors.response.use(
       return Promise.reject(new Error(res.message || '请求失败'))
     }
   },
-  error => {
+  async error => {
+    // 访问令牌过期：使用刷新令牌续期后重试一次
+    const config = error.config
+    if (error.response && error.response.status === 401 && config && !config._retried && getRefreshToken()) {
+      config._retried = true
+      try {
+        const token = await refreshAccessToken()
+        config.headers['Authorization'] = `Bearer ${token}`
+        return service(config)
+      } catch {
+        // 刷新失败，按 401 处理
+      }
+    }
+
     // 网络错误或 HTTP 错误：友好的错误提示
     let errorMessage = '请求失败'
     